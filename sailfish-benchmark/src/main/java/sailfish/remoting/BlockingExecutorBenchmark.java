@@ -0,0 +1,114 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import sailfish.remoting.executor.VirtualThreadExecutor;
+
+/**
+ * throughput of blocking request processors, every task blocks {@code blockMillis} like a database call,
+ * {@link #virtualThreads()} against a fixed pool of {@code poolThreads} platform threads, on JDKs without virtual
+ * threads the first one measures the fallback pool of {@link VirtualThreadExecutor}
+ * 
+ * <pre>
+ * java -jar sailfish-benchmark/target/benchmarks.jar BlockingExecutorBenchmark
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: BlockingExecutorBenchmark.java, v 0.1 2016年12月16日 上午11:40:06 spccold Exp $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingExecutorBenchmark {
+	private static final int TASKS = 1000;
+
+	@Param({ "1", "10" })
+	private int blockMillis;
+
+	@Param({ "64" })
+	private int poolThreads;
+
+	private ExecutorService fixedPool;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixedPool = Executors.newFixedThreadPool(poolThreads, new DefaultThreadFactory("benchmark-fixed", true));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixedPool.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASKS)
+	public void virtualThreads() throws InterruptedException {
+		runBlocking(VirtualThreadExecutor.INSTANCE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TASKS)
+	public void fixedPool() throws InterruptedException {
+		runBlocking(fixedPool);
+	}
+
+	private void runBlocking(Executor executor) throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(TASKS);
+		final long blockNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+		for (int i = 0; i < TASKS; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					long deadline = System.nanoTime() + blockNanos;
+					long remaining;
+					while ((remaining = deadline - System.nanoTime()) > 0) {
+						LockSupport.parkNanos(remaining);
+					}
+					done.countDown();
+				}
+			});
+		}
+		done.await();
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import sailfish.remoting.codec.RemotingDecoder;
+import sailfish.remoting.codec.RemotingEncoder;
+import sailfish.remoting.handler.FlushConsolidationHandler;
+import sailfish.remoting.protocol.RequestProtocol;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * request-response over loopback, {@code concurrency} requests in flight per invocation, the server answers from a
+ * worker pool like {@link sailfish.remoting.handler.DefaultMsgHandler} does, {@code maxMessages=0} flushes every
+ * message, otherwise {@link FlushConsolidationHandler} is the first handler on both sides
+ *
+ * <pre>
+ * java -jar sailfish-benchmark/target/benchmarks.jar FlushConsolidationBenchmark
+ * </pre>
+ *
+ * flushes(one writev syscall each) per message of both sides are reported as the {@code flushesPerMessage} secondary
+ * result of each iteration
+ *
+ * @author spccold
+ * @version $Id: FlushConsolidationBenchmark.java, v 0.1 2016年12月17日 下午2:10:33 spccold Exp $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushConsolidationBenchmark {
+	private static final int PORT = 13161;
+	private static final int MAX_BYTES = 64 * 1024;
+
+	@Param({ "0", "16", "64" })
+	private int maxMessages;
+
+	@Param({ "1", "16", "128" })
+	private int concurrency;
+
+	@Param({ "128" })
+	private int messageSize;
+
+	private EventLoopGroup group;
+	private ExecutorService workers;
+	private Channel serverChannel;
+	private Channel clientChannel;
+	private byte[] data;
+
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong messages = new AtomicLong();
+	private volatile CountDownLatch responses;
+
+	@Setup(Level.Trial)
+	public void setup() throws InterruptedException {
+		group = NettyPlatformIndependent.newEventLoopGroup(2, new DefaultThreadFactory("benchmark-io", true));
+		workers = Executors.newFixedThreadPool(4, new DefaultThreadFactory("benchmark-worker", true));
+		data = new byte[messageSize];
+
+		ServerBootstrap serverBoot = new ServerBootstrap();
+		serverBoot.group(group).channel(NettyPlatformIndependent.serverChannelClass());
+		serverBoot.childOption(ChannelOption.TCP_NODELAY, true);
+		serverBoot.childHandler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel ch) throws Exception {
+				initPipeline(ch.pipeline());
+				ch.pipeline().addLast(new EchoHandler());
+			}
+		});
+		serverChannel = serverBoot.bind("localhost", PORT).sync().channel();
+
+		Bootstrap boot = new Bootstrap();
+		boot.group(group).channel(NettyPlatformIndependent.channelClass());
+		boot.option(ChannelOption.TCP_NODELAY, true);
+		boot.handler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel ch) throws Exception {
+				initPipeline(ch.pipeline());
+				ch.pipeline().addLast(new ResponseHandler());
+			}
+		});
+		clientChannel = boot.connect("localhost", PORT).sync().channel();
+	}
+
+	@Setup(Level.Iteration)
+	public void resetCounters() {
+		flushes.set(0);
+		messages.set(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		clientChannel.close().syncUninterruptibly();
+		serverChannel.close().syncUninterruptibly();
+		workers.shutdownNow();
+		group.shutdownGracefully();
+	}
+
+	@Benchmark
+	public void requestResponse(FlushCounters counters) throws InterruptedException {
+		responses = new CountDownLatch(concurrency);
+		RequestControl control = new RequestControl();
+		for (int i = 0; i < concurrency; i++) {
+			RequestProtocol request = RequestProtocol.newRequest(control);
+			request.body(data);
+			clientChannel.writeAndFlush(request, clientChannel.voidPromise());
+		}
+		responses.await();
+		counters.flushes = flushes.get();
+		counters.messages = messages.get();
+	}
+
+	/**
+	 * secondary results, only public members are reported
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class FlushCounters {
+		private long flushes;
+		private long messages;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			flushes = 0;
+			messages = 0;
+		}
+
+		public double flushesPerMessage() {
+			return messages == 0 ? 0 : (double) flushes / messages;
+		}
+	}
+
+	private void initPipeline(ChannelPipeline pipeline) {
+		pipeline.addLast(new FlushCounter());
+		if (maxMessages > 0) {
+			pipeline.addLast(new FlushConsolidationHandler(maxMessages, MAX_BYTES));
+		}
+		pipeline.addLast(RemotingEncoder.INSTANCE, new RemotingDecoder());
+	}
+
+	final class FlushCounter extends ChannelOutboundHandlerAdapter {
+		@Override
+		public void flush(ChannelHandlerContext ctx) throws Exception {
+			flushes.incrementAndGet();
+			ctx.flush();
+		}
+	}
+
+	final class EchoHandler extends ChannelInboundHandlerAdapter {
+		@Override
+		public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+			RequestProtocol request = (RequestProtocol) msg;
+			final int packetId = request.packetId();
+			request.recycle();
+			messages.incrementAndGet();
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					ResponseProtocol response = ResponseProtocol.newInstance();
+					response.packetId(packetId);
+					response.body(data);
+					ctx.channel().writeAndFlush(response, ctx.channel().voidPromise());
+				}
+			});
+		}
+	}
+
+	final class ResponseHandler extends ChannelInboundHandlerAdapter {
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+			((ResponseProtocol) msg).recycle();
+			messages.incrementAndGet();
+			responses.countDown();
+		}
+	}
+}
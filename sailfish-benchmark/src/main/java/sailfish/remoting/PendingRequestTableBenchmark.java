@@ -0,0 +1,144 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sailfish.remoting.channel.EmptyExchangeChannel;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.future.BytesResponseFuture;
+import sailfish.remoting.future.ResponseFuture;
+
+/**
+ * trace + erase of one request with {@code pending} requests in flight, {@link PendingRequestTable} against the
+ * former two boxed {@link ConcurrentHashMap}s of {@link Tracer}
+ * 
+ * <pre>
+ * java -jar sailfish-benchmark/target/benchmarks.jar PendingRequestTableBenchmark -prof gc
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: PendingRequestTableBenchmark.java, v 0.1 2016年12月5日 下午4:32:50 spccold Exp $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class PendingRequestTableBenchmark {
+	private static final AtomicInteger ID_GENERATOR = new AtomicInteger();
+
+	@Param({ "16", "1024" })
+	private int pending;
+
+	private final ExchangeChannel channel = new EmptyExchangeChannel();
+	private final ResponseFuture<?> future = new BytesResponseFuture(0, null);
+
+	private PendingRequestTable table;
+	private LegacyTracer legacy;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		table = new PendingRequestTable();
+		legacy = new LegacyTracer();
+		for (int i = 0; i < pending; i++) {
+			int packetId = ID_GENERATOR.incrementAndGet();
+			table.put(packetId, channel, future, Long.MAX_VALUE);
+			legacy.trace(channel, packetId, future);
+		}
+	}
+
+	@Benchmark
+	public Object pendingRequestTable() {
+		int packetId = ID_GENERATOR.incrementAndGet();
+		table.put(packetId, channel, future, Long.MAX_VALUE);
+		return table.remove(packetId);
+	}
+
+	@Benchmark
+	public Object legacyTracer() {
+		int packetId = ID_GENERATOR.incrementAndGet();
+		legacy.trace(channel, packetId, future);
+		return legacy.erase(packetId);
+	}
+
+	/**
+	 * Tracer before {@link PendingRequestTable}
+	 */
+	static final class LegacyTracer {
+		private static final Object EMPTY_VALUE = new Object();
+
+		private final ConcurrentMap<Integer, TraceContext> traces = new ConcurrentHashMap<>();
+		private final ConcurrentMap<ExchangeChannel, ConcurrentMap<Integer, Object>> singleChannelTraces = new ConcurrentHashMap<>();
+
+		void trace(ExchangeChannel channel, int packageId, ResponseFuture<?> future) {
+			traces.putIfAbsent(packageId, new TraceContext(channel, future));
+
+			ConcurrentMap<Integer, Object> packetIds = singleChannelTraces.get(channel);
+			if (null == packetIds) {
+				ConcurrentMap<Integer, Object> old = singleChannelTraces.putIfAbsent(channel,
+						packetIds = new ConcurrentHashMap<>());
+				if (null != old) {
+					packetIds = old;
+				}
+			}
+			packetIds.put(packageId, EMPTY_VALUE);
+		}
+
+		ResponseFuture<?> erase(int packetId) {
+			TraceContext traceContext = traces.remove(packetId);
+			if (null == traceContext) {
+				return null;
+			}
+			ConcurrentMap<Integer, Object> packetIds = singleChannelTraces.get(traceContext.channel);
+			if (null != packetIds) {
+				packetIds.remove(packetId);
+			}
+			return traceContext.respFuture;
+		}
+	}
+
+	static final class TraceContext {
+		final ExchangeChannel channel;
+		final ResponseFuture<?> respFuture;
+
+		TraceContext(ExchangeChannel channel, ResponseFuture<?> respFuture) {
+			this.channel = channel;
+			this.respFuture = respFuture;
+		}
+	}
+}
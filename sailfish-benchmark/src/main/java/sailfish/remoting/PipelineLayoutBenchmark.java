@@ -0,0 +1,150 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sailfish.remoting.channel.PipelineLayout;
+import sailfish.remoting.configuration.ExchangeClientConfig;
+import sailfish.remoting.configuration.ExchangeServerConfig;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.processors.Request;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.processors.Response;
+
+/**
+ * echo over loopback with both {@link PipelineLayout}s(client and server use the same one), for small and large
+ * messages, {@link #roundTrip()} shows latency of a single request, {@link #pipelined()} shows throughput with
+ * {@code PIPELINED} requests in flight
+ *
+ * <pre>
+ * java -jar sailfish-benchmark/target/benchmarks.jar PipelineLayoutBenchmark
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: PipelineLayoutBenchmark.java, v 0.1 2016年12月16日 下午2:20:17 spccold Exp $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineLayoutBenchmark {
+	private static final short OPCODE = 1;
+	private static final int PIPELINED = 64;
+	private static final int PORT = 13160;
+
+	@Param({ "executor", "io" })
+	private String layout;
+
+	@Param({ "128", "65536" })
+	private int messageSize;
+
+	private DefaultServer server;
+	private DefaultClient client;
+	private RequestControl control;
+	private byte[] data;
+
+	@Setup(Level.Trial)
+	public void setup() throws SailfishException {
+		PipelineLayout pipelineLayout = PipelineLayout.valueOf(layout);
+		ExchangeServerConfig serverConfig = new ExchangeServerConfig();
+		serverConfig.address(new Address("localhost", PORT));
+		serverConfig.pipelineLayout(pipelineLayout);
+		serverConfig.setRequestProcessors(Arrays.<RequestProcessor> asList(new EchoRequestProcessor()));
+		server = Exchanger.bind(serverConfig);
+		server.start();
+
+		ExchangeClientConfig clientConfig = new ExchangeClientConfig();
+		clientConfig.address(new Address("localhost", PORT));
+		clientConfig.connections((short) 1);
+		clientConfig.pipelineLayout(pipelineLayout);
+		client = new DefaultClient(clientConfig);
+
+		control = new RequestControl();
+		control.opcode(OPCODE);
+		control.timeout(5000);
+		data = new byte[messageSize];
+		Arrays.fill(data, (byte) 1);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		client.close();
+		server.close();
+	}
+
+	@Benchmark
+	public byte[] roundTrip() throws Exception {
+		return client.request(data, control).get();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PIPELINED)
+	public void pipelined() throws Exception {
+		@SuppressWarnings("unchecked")
+		ResponseFuture<byte[]>[] futures = new ResponseFuture[PIPELINED];
+		for (int i = 0; i < PIPELINED; i++) {
+			futures[i] = client.request(data, control);
+		}
+		for (int i = 0; i < PIPELINED; i++) {
+			futures[i].get();
+		}
+	}
+
+	static final class EchoRequestProcessor implements RequestProcessor {
+		@Override
+		public Executor executor() {
+			return null;
+		}
+
+		@Override
+		public short opcode() {
+			return OPCODE;
+		}
+
+		@Override
+		public void handleRequest(Request request, Output output) {
+			output.response(new Response(true, request.getRequestData()));
+		}
+
+		@Override
+		public void onRejectedExecutionException(Request request, Output output) {
+			output.response(new Response(false, new byte[0]));
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+import sailfish.remoting.PendingRequestTable.PacketIdCollector;
+import sailfish.remoting.channel.EmptyExchangeChannel;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.future.BytesResponseFuture;
+import sailfish.remoting.future.ResponseFuture;
+
+/**
+ * schedule and complete one request timeout with {@code pending} outstanding requests, deadline in
+ * {@link PendingRequestTable} against a global {@link HashedWheelTimer}(newTimeout + cancel), {@link #sweep()} shows the
+ * cost of one tick of the sweep task when nothing is due, score of {@link #globalHashedWheelTimer()} is capped by
+ * the timer worker which throws 'Queue full' once producers outrun it
+ * 
+ * <pre>
+ * java -Xmx4g -jar sailfish-benchmark/target/benchmarks.jar ResponseTimeoutBenchmark
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: ResponseTimeoutBenchmark.java, v 0.1 2016年12月7日 上午11:12:27 spccold Exp $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ResponseTimeoutBenchmark {
+	private static final TimerTask NOOP = new TimerTask() {
+		@Override
+		public void run(Timeout timeout) throws Exception {
+		}
+	};
+	private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+	private final AtomicInteger idGenerator = new AtomicInteger();
+
+	@Param({ "1000000" })
+	private int pending;
+
+	private final ExchangeChannel channel = new EmptyExchangeChannel();
+	private final ResponseFuture<?> future = new BytesResponseFuture(0, null);
+	private final PacketIdCollector collector = new PacketIdCollector();
+
+	private PendingRequestTable table;
+	private HashedWheelTimer timer;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		table = new PendingRequestTable();
+		timer = new HashedWheelTimer();
+		long deadline = System.nanoTime() + TIMEOUT_NANOS;
+		for (int i = 0; i < pending; i++) {
+			int packetId = idGenerator.incrementAndGet();
+			table.put(packetId, channel, future, deadline);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		timer.stop();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object deadlineInPendingTable() {
+		int packetId = idGenerator.incrementAndGet();
+		table.put(packetId, channel, future, System.nanoTime() + TIMEOUT_NANOS);
+		return table.remove(packetId);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Object globalHashedWheelTimer() {
+		int packetId = idGenerator.incrementAndGet();
+		table.put(packetId, channel, future, Long.MAX_VALUE);
+		try {
+			Timeout timeout = timer.newTimeout(NOOP, TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+			timeout.cancel();
+		} catch (IllegalStateException cause) {
+			// pending timeouts queue is full, the worker only transfers 100000 timeouts per tick
+			Thread.yield();
+		}
+		return table.remove(packetId);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Threads(1)
+	public int sweep() {
+		table.expired(System.nanoTime(), collector);
+		int expired = collector.size();
+		collector.clear();
+		return expired;
+	}
+}
@@ -17,11 +17,16 @@
  */
 package sailfish.remoting;
 
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.channel.ExchangeChannelGroup;
 import sailfish.remoting.configuration.ExchangeClientConfig;
 import sailfish.remoting.exceptions.ExceptionCode;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.future.ResponseStream;
 
 /**
  * 
@@ -51,6 +56,63 @@ public class DefaultClient{
         exchanger.request(data, callback, requestControl);
     }
 
+    /**
+     * zero-copy oneway, the ownership of {@code data} is transferred to sailfish
+     */
+    public void oneway(ByteBuf data, RequestControl requestControl) throws SailfishException{
+        checkAvailable(data);
+        exchanger.oneway(data, requestControl);
+    }
+
+    /**
+     * zero-copy request, the ownership of {@code data} is transferred to sailfish, caller must release the response
+     */
+    public ResponseFuture<ByteBuf> request(ByteBuf data, RequestControl requestControl) throws SailfishException{
+        checkAvailable(data);
+        return exchanger.request(data, requestControl);
+    }
+
+    /**
+     * zero-copy callback request, the ownership of {@code data} is transferred to sailfish, callback must release the response
+     */
+    public void request(ByteBuf data, ResponseCallback<ByteBuf> callback, RequestControl requestControl) throws SailfishException{
+        checkAvailable(data);
+        exchanger.request(data, callback, requestControl);
+    }
+
+    /**
+     * asynchronous request, see {@link RequestControl#inlineCompletion()} for where listeners run
+     */
+    public Future<byte[]> requestAsync(byte[] data, RequestControl requestControl) throws SailfishException{
+        checkAvailable();
+        return exchanger.requestAsync(data, requestControl);
+    }
+
+    /**
+     * send all {@code data} to one server within one frame, futures are in the order of {@code data}
+     */
+    public List<ResponseFuture<byte[]>> requestBatch(List<byte[]> data, RequestControl requestControl) throws SailfishException{
+        checkAvailable();
+        return exchanger.requestBatch(data, requestControl);
+    }
+
+    /**
+     * asynchronous {@link #requestBatch(List, RequestControl)}, completes with all responses or fails with the first failure
+     */
+    public Future<List<byte[]>> requestBatchAsync(List<byte[]> data, RequestControl requestControl) throws SailfishException{
+        checkAvailable();
+        return exchanger.requestBatchAsync(data, requestControl);
+    }
+
+    /**
+     * streaming request, the processor answers with chunks through {@code Output#chunk(Response)}, memory of both
+     * sides is bounded by {@link RequestControl#streamCredits()}
+     */
+    public ResponseStream requestStream(byte[] data, RequestControl requestControl) throws SailfishException{
+        checkAvailable();
+        return exchanger.requestStream(data, requestControl);
+    }
+
     public void close(){
         this.exchanger.close();
     }
@@ -72,4 +134,12 @@ public class DefaultClient{
             throw new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchange channel not available");
         }
     }
+
+    private void checkAvailable(ByteBuf data) throws SailfishException{
+        if(!isAvailable()){
+            // ownership has been transferred, release it even if fail
+            data.release();
+            throw new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchange channel not available");
+        }
+    }
 }
@@ -28,22 +28,20 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.EventExecutorGroup;
+import sailfish.remoting.admission.AdmissionController;
 import sailfish.remoting.channel.ExchangeChannelGroup;
-import sailfish.remoting.codec.RemotingDecoder;
-import sailfish.remoting.codec.RemotingEncoder;
 import sailfish.remoting.configuration.ExchangeServerConfig;
 import sailfish.remoting.constants.ChannelAttrKeys;
 import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.eventgroup.ServerEventGroup;
+import sailfish.remoting.executor.Bulkheads;
+import sailfish.remoting.executor.VirtualThreadExecutor;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.handler.DefaultMsgHandler;
-import sailfish.remoting.handler.HeartbeatChannelHandler;
 import sailfish.remoting.handler.MsgHandler;
 import sailfish.remoting.handler.NegotiateChannelHandler;
-import sailfish.remoting.handler.ConcreteRequestHandler;
 import sailfish.remoting.protocol.Protocol;
 import sailfish.remoting.utils.ChannelUtil;
 import sailfish.remoting.utils.ParameterChecker;
@@ -57,12 +55,20 @@ public class DefaultServer implements Server {
 	
 	private volatile boolean isClosed = false;
 	private final ExchangeServerConfig config;
-	private final MsgHandler<Protocol> msgHandler;
+	private final DefaultMsgHandler msgHandler;
+	private final Bulkheads bulkheads;
 	private Channel channel;
 
 	public DefaultServer(ExchangeServerConfig config) {
 		this.config = ParameterChecker.checkNotNull(config, "ExchangeServerConfig");
-		this.msgHandler = new DefaultMsgHandler(config.getRequestProcessors());
+		AdmissionController admissionController = null;
+		if (config.admissionControl()) {
+			admissionController = new AdmissionController(config.getRequestProcessors(), config.maxConcurrency(),
+					config.maxOpcodeConcurrency());
+		}
+		this.bulkheads = new Bulkheads(config.getBulkheads());
+		this.msgHandler = new DefaultMsgHandler(config.getRequestProcessors(), admissionController, bulkheads,
+				config.virtualThreads() ? VirtualThreadExecutor.INSTANCE : null);
 	}
 
 	public void start() throws SailfishException {
@@ -84,13 +90,7 @@ public class DefaultServer implements Server {
 				ch.attr(ChannelAttrKeys.OneTime.idleTimeout).set(config.idleTimeout());
 				ch.attr(ChannelAttrKeys.maxIdleTimeout).set(config.maxIdleTimeout());
 				ch.attr(ChannelAttrKeys.exchangeServer).set(DefaultServer.this);
-				pipeline.addLast(executor, 
-						RemotingEncoder.INSTANCE, 
-						new RemotingDecoder(), 
-						new IdleStateHandler(config.idleTimeout(), 0, 0), 
-						HeartbeatChannelHandler.INSTANCE,
-						NegotiateChannelHandler.INSTANCE,
-						ConcreteRequestHandler.INSTANCE);
+				config.pipelineLayout().addHandlers(pipeline, executor, config.idleTimeout());
 			}
 		});
 		try {
@@ -133,6 +133,8 @@ public class DefaultServer implements Server {
 			if (isClosed())
 				return;
 			ChannelUtil.closeChannel(channel);
+			bulkheads.shutdown();
+			isClosed = true;
 		}
 	}
 
@@ -145,6 +147,20 @@ public class DefaultServer implements Server {
 		return msgHandler;
 	}
 
+	/**
+	 * @return current limits and rejections of admission control, {@code null} if disabled
+	 */
+	public AdmissionController getAdmissionController() {
+		return msgHandler.getAdmissionController();
+	}
+
+	/**
+	 * @return bulkheads declared by {@link ExchangeServerConfig#addBulkhead}, with their queue and latency histograms
+	 */
+	public Bulkheads getBulkheads() {
+		return bulkheads;
+	}
+
 	@Override
 	public Collection<ExchangeChannelGroup> listChannelGroups() {
 		return NegotiateChannelHandler.uuid2ChannelGroup.values();
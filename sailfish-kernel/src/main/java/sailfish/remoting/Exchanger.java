@@ -17,6 +17,7 @@
  */
 package sailfish.remoting;
 
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.channel.DefaultExchangeChannelGroup;
 import sailfish.remoting.channel.ExchangeChannelGroup;
 import sailfish.remoting.channel.ReadWriteExchangeChannelGroup;
@@ -37,6 +38,19 @@ import sailfish.remoting.utils.ParameterChecker;
 public class Exchanger {
 
 	public static ExchangeChannelGroup connect(ExchangeClientConfig config) throws SailfishException {
+		Future<ExchangeChannelGroup> future = connectAsync(config).awaitUninterruptibly();
+		if (!future.isSuccess()) {
+			Throwable cause = future.cause();
+			throw cause instanceof SailfishException ? (SailfishException) cause : new SailfishException(cause);
+		}
+		return future.getNow();
+	}
+
+	/**
+	 * connect and negotiate all connections concurrently without blocking, the returned {@link Future} succeeds with
+	 * the connected {@link ExchangeChannelGroup}
+	 */
+	public static Future<ExchangeChannelGroup> connectAsync(ExchangeClientConfig config) throws SailfishException {
 		checkConfig(config);
 		MsgHandler<Protocol> msgHandler = new DefaultMsgHandler(config.getRequestProcessors());
 		switch (config.mode()) {
@@ -45,12 +59,13 @@ public class Exchanger {
 			return new DefaultExchangeChannelGroup(msgHandler, config.address(), config.connections(),
 					config.connectTimeout(), config.reconnectInterval(), config.idleTimeout(), config.idleTimeout(),
 					config.isLazyConnection(), config.reversed(), config.getEventLoopGroup(),
-					config.getEventExecutorGroup());
+					config.getEventExecutorGroup(), config.chooserFactory(), config.pipelineLayout()).connectFuture();
 		case readwrite:
 			return new ReadWriteExchangeChannelGroup(msgHandler, config.address(), config.connectTimeout(),
 					config.reconnectInterval(), config.idleTimeout(), config.maxIdleTimeout(),
 					config.isLazyConnection(), config.connections(), config.writeConnections(), config.reversed(),
-					config.getEventLoopGroup(), config.getEventExecutorGroup());
+					config.getEventLoopGroup(), config.getEventExecutorGroup(), config.chooserFactory(),
+					config.pipelineLayout()).connectFuture();
 		default:
 			throw new IllegalArgumentException("invalid channel mode");
 		}
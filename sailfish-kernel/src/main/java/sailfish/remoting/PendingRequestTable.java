@@ -0,0 +1,504 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.internal.MathUtil;
+import sailfish.remoting.channel.AbstractExchangeChannel;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.future.ResponseSink;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * striped open addressing table for packetId -> (future, channel, deadline), no boxing and no node allocation
+ * 
+ * <pre>
+ * --each stripe is a linear probing table guarded by its own monitor, removal uses backward shift instead of tombstone
+ * --stripe is chosen by the low bits of the mixed packetId and slot by the remaining bits, sequential packetIds
+ *   spread well
+ * --owner channel is kept in a parallel array, so pending requests of one channel can be found by scanning
+ *   without a second index, {@link AbstractExchangeChannel#pendingRequests()} is maintained here as well
+ * --trace time of each entry is kept, {@link #erase(int, long)} feeds the latency to
+ *   {@link AbstractExchangeChannel#ewmaLatency()}
+ * --each stripe also owns a timing wheel of packetId buckets, put appends the packetId to the bucket of its deadline
+ *   tick and remove never touches the wheel, {@link #expired(long, PacketIdCollector)} only visits buckets of elapsed
+ *   ticks, so scheduling and cancelling a timeout is nearly free and sweeping is proportional to due requests
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: PendingRequestTable.java, v 0.1 2016年12月5日 下午2:16:08 spccold Exp $
+ */
+public final class PendingRequestTable {
+	static final int DEFAULT_STRIPES = MathUtil
+			.safeFindNextPositivePowerOfTwo(Runtime.getRuntime().availableProcessors() * 2);
+	private static final int DEFAULT_STRIPE_CAPACITY = 16;
+	private static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final int WHEEL_SIZE = 512;
+	// keep ticks positive, System.nanoTime() may be negative
+	private static final long ORIGIN = System.nanoTime();
+
+	private final Stripe[] stripes;
+	private final int stripeMask;
+
+	public PendingRequestTable() {
+		this(DEFAULT_STRIPES);
+	}
+
+	public PendingRequestTable(int stripes) {
+		this(stripes, DEFAULT_TICK_NANOS);
+	}
+
+	/**
+	 * @param tickNanos
+	 *            precision of deadlines
+	 */
+	public PendingRequestTable(int stripes, long tickNanos) {
+		ParameterChecker.checkPositive(stripes, "stripes");
+		ParameterChecker.checkPositive(tickNanos, "tickNanos");
+		this.stripes = new Stripe[MathUtil.safeFindNextPositivePowerOfTwo(stripes)];
+		int stripeBits = Integer.numberOfTrailingZeros(this.stripes.length);
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new Stripe(DEFAULT_STRIPE_CAPACITY, stripeBits, tickNanos);
+		}
+		this.stripeMask = this.stripes.length - 1;
+	}
+
+	/**
+	 * @param deadline
+	 *            in {@link System#nanoTime()}, {@link Long#MAX_VALUE} means never expire
+	 * @return the previous future with the same packetId or {@code null}
+	 */
+	public ResponseSink<?> put(int packetId, ExchangeChannel channel, ResponseSink<?> future, long deadline) {
+		return put(packetId, channel, future, System.nanoTime(), deadline);
+	}
+
+	/**
+	 * @param traceTime
+	 *            {@link System#nanoTime()} when request is traced
+	 * @param deadline
+	 *            in {@link System#nanoTime()}, {@link Long#MAX_VALUE} means never expire
+	 * @return the previous future with the same packetId or {@code null}
+	 */
+	public ResponseSink<?> put(int packetId, ExchangeChannel channel, ResponseSink<?> future, long traceTime,
+			long deadline) {
+		ParameterChecker.checkNotNull(future, "future");
+		int hash = mix(packetId);
+		return stripes[hash & stripeMask].put(packetId, hash, channel, future, traceTime, deadline);
+	}
+
+	public ResponseSink<?> get(int packetId) {
+		int hash = mix(packetId);
+		return stripes[hash & stripeMask].get(packetId, hash);
+	}
+
+	/**
+	 * restart the timeout of a pending request at {@code now}, the deadline moves forward by the timeout it was put
+	 * with, {@code now} becomes its trace time
+	 * 
+	 * @return the future or {@code null} if absent
+	 */
+	public ResponseSink<?> touch(int packetId, long now) {
+		int hash = mix(packetId);
+		return stripes[hash & stripeMask].touch(packetId, hash, now);
+	}
+
+	/**
+	 * @return the removed future or {@code null} if absent
+	 */
+	public ResponseSink<?> remove(int packetId) {
+		int hash = mix(packetId);
+		return stripes[hash & stripeMask].remove(packetId, hash, false, 0);
+	}
+
+	/**
+	 * remove and record {@code now - traceTime} as a latency sample of the owner channel
+	 * 
+	 * @return the removed future or {@code null} if absent
+	 */
+	public ResponseSink<?> erase(int packetId, long now) {
+		int hash = mix(packetId);
+		return stripes[hash & stripeMask].remove(packetId, hash, true, now);
+	}
+
+	public boolean contains(ExchangeChannel channel) {
+		for (Stripe stripe : stripes) {
+			if (stripe.contains(channel)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * snapshot of packetIds which belongs to {@code channel}
+	 */
+	public int[] packetIds(ExchangeChannel channel) {
+		PacketIdCollector collector = new PacketIdCollector();
+		for (Stripe stripe : stripes) {
+			stripe.collect(channel, collector);
+		}
+		return collector.toArray();
+	}
+
+	/**
+	 * collect packetIds whose deadline has passed into {@code collector}, entries are not removed and a touched one may
+	 * be collected more than once, must be invoked by one thread at a time
+	 */
+	public void expired(long now, PacketIdCollector collector) {
+		for (Stripe stripe : stripes) {
+			stripe.expired(now, collector);
+		}
+	}
+
+	/**
+	 * like {@link #expired(long, PacketIdCollector)} but only for the stripe at {@code stripeIndex}, must be invoked
+	 * by one thread at a time for one stripe
+	 */
+	public void expired(int stripeIndex, long now, PacketIdCollector collector) {
+		stripes[stripeIndex].expired(now, collector);
+	}
+
+	/**
+	 * collect packetIds of all pending requests in the stripe at {@code stripeIndex} into {@code collector}
+	 */
+	public void packetIds(int stripeIndex, PacketIdCollector collector) {
+		stripes[stripeIndex].collect(collector);
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	public int size(int stripeIndex) {
+		return stripes[stripeIndex].size();
+	}
+
+	public int stripes() {
+		return stripes.length;
+	}
+
+	/**
+	 * @return index of the stripe which keeps {@code packetId}
+	 */
+	public int stripeIndex(int packetId) {
+		return mix(packetId) & stripeMask;
+	}
+
+	// murmur3 finalizer
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static void updatePendingRequests(ExchangeChannel channel, int delta) {
+		if (channel instanceof AbstractExchangeChannel) {
+			((AbstractExchangeChannel) channel).updatePendingRequests(delta);
+		}
+	}
+
+	private static final class Stripe {
+		private final int stripeBits;
+		private final long tickNanos;
+
+		private int[] keys;
+		private ResponseSink<?>[] futures;
+		private ExchangeChannel[] channels;
+		private long[] traceTimes;
+		private long[] deadlines;
+		private int mask;
+		private int size;
+
+		// timing wheel, buckets may contain packetIds which have been removed
+		private final int[][] buckets = new int[WHEEL_SIZE][];
+		private final int[] bucketSizes = new int[WHEEL_SIZE];
+		private long lastSweptTick;
+
+		Stripe(int capacity, int stripeBits, long tickNanos) {
+			this.stripeBits = stripeBits;
+			this.tickNanos = tickNanos;
+			this.lastSweptTick = tick(System.nanoTime()) - 1;
+			allocate(capacity);
+		}
+
+		private void allocate(int capacity) {
+			keys = new int[capacity];
+			futures = new ResponseSink<?>[capacity];
+			channels = new ExchangeChannel[capacity];
+			traceTimes = new long[capacity];
+			deadlines = new long[capacity];
+			mask = capacity - 1;
+		}
+
+		// low bits already used to choose stripe
+		private int slot(int hash) {
+			return (hash >>> stripeBits) & mask;
+		}
+
+		private long tick(long nanoTime) {
+			return (nanoTime - ORIGIN) / tickNanos;
+		}
+
+		synchronized ResponseSink<?> put(int key, int hash, ExchangeChannel channel, ResponseSink<?> future,
+				long traceTime, long deadline) {
+			if (deadline != Long.MAX_VALUE) {
+				schedule(key, deadline);
+			}
+			int index = slot(hash);
+			for (;;) {
+				if (null == futures[index]) {
+					keys[index] = key;
+					futures[index] = future;
+					channels[index] = channel;
+					traceTimes[index] = traceTime;
+					deadlines[index] = deadline;
+					updatePendingRequests(channel, 1);
+					if (++size > (mask + 1) >>> 1) {
+						rehash();
+					}
+					return null;
+				}
+				if (keys[index] == key) {
+					ResponseSink<?> old = futures[index];
+					updatePendingRequests(channels[index], -1);
+					updatePendingRequests(channel, 1);
+					futures[index] = future;
+					channels[index] = channel;
+					traceTimes[index] = traceTime;
+					deadlines[index] = deadline;
+					return old;
+				}
+				index = (index + 1) & mask;
+			}
+		}
+
+		private void schedule(int key, long deadline) {
+			// never put into a swept bucket, it would wait for a whole round
+			long tick = Math.max(tick(deadline), lastSweptTick + 1);
+			int bucket = (int) (tick & (WHEEL_SIZE - 1));
+			int[] packetIds = buckets[bucket];
+			int bucketSize = bucketSizes[bucket];
+			if (null == packetIds) {
+				packetIds = buckets[bucket] = new int[16];
+			} else if (bucketSize == packetIds.length) {
+				packetIds = buckets[bucket] = Arrays.copyOf(packetIds, bucketSize << 1);
+			}
+			packetIds[bucketSize] = key;
+			bucketSizes[bucket] = bucketSize + 1;
+		}
+
+		synchronized ResponseSink<?> get(int key, int hash) {
+			int index = indexOf(key, hash);
+			return index < 0 ? null : futures[index];
+		}
+
+		synchronized ResponseSink<?> touch(int key, int hash, long now) {
+			int index = indexOf(key, hash);
+			if (index < 0) {
+				return null;
+			}
+			if (deadlines[index] != Long.MAX_VALUE) {
+				long deadline = now + (deadlines[index] - traceTimes[index]);
+				// the old bucket drops it once it finds the deadline belongs to another bucket, or reports it again if
+				// it is due by then
+				if (tick(deadline) != tick(deadlines[index])) {
+					schedule(key, deadline);
+				}
+				deadlines[index] = deadline;
+			}
+			traceTimes[index] = now;
+			return futures[index];
+		}
+
+		synchronized ResponseSink<?> remove(int key, int hash, boolean recordLatency, long now) {
+			int index = indexOf(key, hash);
+			if (index < 0) {
+				return null;
+			}
+			ResponseSink<?> removed = futures[index];
+			if (recordLatency && channels[index] instanceof AbstractExchangeChannel) {
+				((AbstractExchangeChannel) channels[index]).recordLatency(now - traceTimes[index]);
+			}
+			updatePendingRequests(channels[index], -1);
+			size--;
+			shiftBackward(index);
+			return removed;
+		}
+
+		synchronized boolean contains(ExchangeChannel channel) {
+			if (size == 0) {
+				return false;
+			}
+			for (int i = 0; i < channels.length; i++) {
+				if (null != futures[i] && channels[i] == channel) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		synchronized void collect(PacketIdCollector collector) {
+			for (int i = 0; i < futures.length; i++) {
+				if (null != futures[i]) {
+					collector.add(keys[i]);
+				}
+			}
+		}
+
+		synchronized void collect(ExchangeChannel channel, PacketIdCollector collector) {
+			for (int i = 0; i < channels.length; i++) {
+				if (null != futures[i] && channels[i] == channel) {
+					collector.add(keys[i]);
+				}
+			}
+		}
+
+		/**
+		 * visit buckets of fully elapsed ticks only, every packetId in them is due unless its deadline is beyond one
+		 * round of the wheel, or has been moved to another bucket by {@link #touch(int, int, long)}
+		 */
+		synchronized void expired(long now, PacketIdCollector collector) {
+			long lastElapsedTick = tick(now) - 1;
+			long from = Math.max(lastSweptTick + 1, lastElapsedTick - WHEEL_SIZE + 1);
+			for (long tick = from; tick <= lastElapsedTick; tick++) {
+				int bucket = (int) (tick & (WHEEL_SIZE - 1));
+				int[] packetIds = buckets[bucket];
+				int bucketSize = bucketSizes[bucket];
+				int remain = 0;
+				for (int i = 0; i < bucketSize; i++) {
+					int key = packetIds[i];
+					int index = indexOf(key, mix(key));
+					if (index < 0) {// completed
+						continue;
+					}
+					if (deadlines[index] <= now) {
+						collector.add(key);
+					} else if (tick(deadlines[index]) > lastElapsedTick
+							&& (tick(deadlines[index]) & (WHEEL_SIZE - 1)) == bucket) {// next round
+						packetIds[remain++] = key;
+					}
+				}
+				bucketSizes[bucket] = remain;
+			}
+			if (lastElapsedTick > lastSweptTick) {
+				lastSweptTick = lastElapsedTick;
+			}
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		private int indexOf(int key, int hash) {
+			int index = slot(hash);
+			while (null != futures[index]) {
+				if (keys[index] == key) {
+					return index;
+				}
+				index = (index + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * close the gap left by removal so probing never needs tombstones
+		 */
+		private void shiftBackward(int gap) {
+			int index = (gap + 1) & mask;
+			while (null != futures[index]) {
+				int ideal = slot(mix(keys[index]));
+				// move the entry if its ideal slot is not in (gap, index]
+				if (((index - ideal) & mask) >= ((index - gap) & mask)) {
+					keys[gap] = keys[index];
+					futures[gap] = futures[index];
+					channels[gap] = channels[index];
+					traceTimes[gap] = traceTimes[index];
+					deadlines[gap] = deadlines[index];
+					gap = index;
+				}
+				index = (index + 1) & mask;
+			}
+			keys[gap] = 0;
+			futures[gap] = null;
+			channels[gap] = null;
+		}
+
+		private void rehash() {
+			int[] oldKeys = keys;
+			ResponseSink<?>[] oldFutures = futures;
+			ExchangeChannel[] oldChannels = channels;
+			long[] oldTraceTimes = traceTimes;
+			long[] oldDeadlines = deadlines;
+			allocate(oldKeys.length << 1);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (null == oldFutures[i]) {
+					continue;
+				}
+				int index = slot(mix(oldKeys[i]));
+				while (null != futures[index]) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				futures[index] = oldFutures[i];
+				channels[index] = oldChannels[i];
+				traceTimes[index] = oldTraceTimes[i];
+				deadlines[index] = oldDeadlines[i];
+			}
+		}
+	}
+
+	/**
+	 * reusable packetId holder, not thread safe
+	 */
+	public static final class PacketIdCollector {
+		private int[] packetIds = new int[16];
+		private int size;
+
+		void add(int packetId) {
+			if (size == packetIds.length) {
+				packetIds = Arrays.copyOf(packetIds, size << 1);
+			}
+			packetIds[size++] = packetId;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public int get(int index) {
+			return packetIds[index];
+		}
+
+		public void clear() {
+			size = 0;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(packetIds, size);
+		}
+	}
+}
@@ -17,16 +17,33 @@
  */
 package sailfish.remoting;
 
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
 import sailfish.remoting.channel.ExchangeChannel;
 
 /**
+ * reconnect broken {@link ExchangeChannel}s with non-blocking connect scheduled on their own event loops
+ * 
+ * <pre>
+ * --delay of the n-th retry is picked from [d/2, d] where d = min(reconnectInterval * 2^n, maxInterval), retries of
+ *   many connections spread out instead of hitting a recovering server at the same time
+ * --at most {@code maxConcurrentPerAddress} connects are in flight for one remote address, others wait for a jittered
+ *   reconnectInterval without counting as failure
+ * </pre>
  * 
  * @author spccold
  * @version $Id: ReconnectManager.java, v 0.1 2016年11月7日 下午4:26:22 jileng Exp $
@@ -34,44 +51,133 @@ import sailfish.remoting.channel.ExchangeChannel;
 public class ReconnectManager {
     private static final Logger logger = LoggerFactory.getLogger(ReconnectManager.class);
     public static final ReconnectManager INSTANCE = new ReconnectManager();
-    private final ScheduledThreadPoolExecutor reconnectExecutor;
-    private ReconnectManager(){
-        reconnectExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread();
-                t.setName("sailfish-ReconnectManager");
-                t.setDaemon(true);
-                return t;
+
+    private static final int MAX_INTERVAL;
+    private static final int MAX_CONCURRENT_PER_ADDRESS;
+    static {
+        MAX_INTERVAL = Math.max(1, SystemPropertyUtil.getInt("sailfish.reconnect.maxIntervalMillis", 30000));
+        MAX_CONCURRENT_PER_ADDRESS = Math.max(1, SystemPropertyUtil.getInt("sailfish.reconnect.maxConcurrentPerAddress", 2));
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dsailfish.reconnect.maxIntervalMillis: {}", MAX_INTERVAL);
+            logger.debug("-Dsailfish.reconnect.maxConcurrentPerAddress: {}", MAX_CONCURRENT_PER_ADDRESS);
+        }
+    }
+
+    // in-flight connects per address, an entry is retired(-1) and removed once its count drops to zero
+    private final ConcurrentMap<SocketAddress, AtomicInteger> connecting = PlatformDependent.newConcurrentHashMap();
+
+    private ReconnectManager(){ }
+
+    /**
+     * @param loop
+     *            event loop which drives retries of {@code reconnectedChannel}
+     * @param remoteAddress
+     *            key of per address concurrency limit
+     */
+    public void addReconnectTask(ExchangeChannel reconnectedChannel, EventLoop loop, SocketAddress remoteAddress,
+            int reconnectInterval){
+        new ReconnectTask(reconnectedChannel, loop, remoteAddress, reconnectInterval).schedule(0);
+    }
+
+    static long backoff(int reconnectInterval, int attempts) {
+        long interval = Math.min((long) reconnectInterval << Math.min(attempts, 20), MAX_INTERVAL);
+        return jitter(interval);
+    }
+
+    private static long jitter(long interval) {
+        long half = interval >>> 1;
+        return half + ThreadLocalRandom.current().nextLong(interval - half + 1);
+    }
+
+    boolean tryAcquire(SocketAddress remoteAddress) {
+        for (;;) {
+            AtomicInteger inFlight = connecting.get(remoteAddress);
+            if (null == inFlight) {
+                AtomicInteger newInFlight = new AtomicInteger();
+                inFlight = connecting.putIfAbsent(remoteAddress, newInFlight);
+                if (null == inFlight) {
+                    inFlight = newInFlight;
+                }
+            }
+            int current;
+            while ((current = inFlight.get()) >= 0) {
+                if (current >= MAX_CONCURRENT_PER_ADDRESS) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
             }
-        });
-        reconnectExecutor.setKeepAliveTime(1, TimeUnit.MINUTES);
+            // retired by release, help removing it and start over with a new entry
+            connecting.remove(remoteAddress, inFlight);
+        }
     }
-    
-    public void addReconnectTask(ExchangeChannel reconnectedChannel, int reconnectInterval){
-        reconnectExecutor.schedule(new ReconnectTask(reconnectedChannel, reconnectInterval), 0, TimeUnit.MILLISECONDS);
+
+    void release(SocketAddress remoteAddress) {
+        AtomicInteger inFlight = connecting.get(remoteAddress);
+        if (inFlight.decrementAndGet() == 0 && inFlight.compareAndSet(0, -1)) {
+            connecting.remove(remoteAddress, inFlight);
+        }
+    }
+
+    boolean connecting(SocketAddress remoteAddress) {
+        return connecting.containsKey(remoteAddress);
     }
-    
-    private class ReconnectTask implements Runnable{
+
+    private class ReconnectTask implements Runnable, FutureListener<Channel> {
         private final ExchangeChannel reconnectedChannel;
+        private final EventLoop loop;
+        private final SocketAddress remoteAddress;
         private final int reconnectInterval;
-        public ReconnectTask(ExchangeChannel reconnectedChannel, int reconnectInterval) {
+        private int attempts;
+
+        ReconnectTask(ExchangeChannel reconnectedChannel, EventLoop loop, SocketAddress remoteAddress,
+                int reconnectInterval) {
             this.reconnectedChannel = reconnectedChannel;
+            this.loop = loop;
+            this.remoteAddress = remoteAddress;
             this.reconnectInterval = reconnectInterval;
         }
 
         @Override
         public void run() {
-            if(reconnectedChannel.isClosed()){
+            if (reconnectedChannel.isClosed()) {
+                return;
+            }
+            if (!tryAcquire(remoteAddress)) {
+                schedule(jitter(reconnectInterval));
                 return;
             }
-            try{
-                reconnectedChannel.update(reconnectedChannel.doConnect());
-            }catch(Throwable cause){
-                String msg = "reconnect to remoteAddress[%s] fail";
-                logger.error(String.format(msg, reconnectedChannel.remoteAdress().toString(), cause));
-                //reconnect next time
-                ReconnectManager.this.reconnectExecutor.schedule(this, reconnectInterval, TimeUnit.MILLISECONDS);
+            boolean submitted = false;
+            try {
+                reconnectedChannel.connectAsync().addListener(this);
+                submitted = true;
+            } finally {
+                if (!submitted) {
+                    release(remoteAddress);
+                }
+            }
+        }
+
+        @Override
+        public void operationComplete(Future<Channel> future) throws Exception {
+            release(remoteAddress);
+            if (future.isSuccess()) {
+                reconnectedChannel.update(future.getNow());
+                return;
+            }
+            long delay = backoff(reconnectInterval, attempts++);
+            logger.error(String.format("reconnect to remoteAddress[%s] fail, retry after %dms", remoteAddress, delay),
+                    future.cause());
+            schedule(delay);
+        }
+
+        void schedule(long delay) {
+            try {
+                loop.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException cause) {
+                logger.warn(String.format("event loop is shutting down, give up reconnecting to remoteAddress[%s]",
+                        remoteAddress), cause);
             }
         }
     }
@@ -17,6 +17,8 @@
  */
 package sailfish.remoting;
 
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.protocol.RequestProtocol;
 import sailfish.remoting.utils.ParameterChecker;
 
 /**
@@ -26,12 +28,24 @@ import sailfish.remoting.utils.ParameterChecker;
  */
 public class RequestControl {
 	/**
-	 * response timeout or write timeout if {@code sent} is true
+	 * response timeout or write timeout if {@code sent} is true, a traced request is always failed with
+	 * {@link sailfish.remoting.exceptions.ExceptionCode#RESPONSE_TIMEOUT} after it, however long its future is waited,
+	 * for a response stream it bounds the silence between chunks instead of the whole stream
 	 */
     private int     timeout = 2000;
     private short   opcode;
     private byte    serializeType;
     private byte    compressType;
+    /**
+     * body will be compressed by {@code compressType} only if its length reaches this threshold
+     */
+    private int     compressThreshold = RemotingConstants.COMPRESS_THRESHOLD;
+    /**
+     * request frame will be compressed and encoded into a pooled {@link io.netty.buffer.ByteBuf} by the calling
+     * thread if its length reaches this threshold, instead of by event loop, negative(default) disables it, ignored
+     * when {@code preferHighPerformanceWriter} is true
+     */
+    private int     encodeThreshold = RemotingConstants.NO_ENCODE_THRESHOLD;
     //wait write success or not
     private boolean sent;
 
@@ -39,6 +53,38 @@ public class RequestControl {
      * {@code sent} will be ignored when {@code preferHighPerformanceWriter} is true
      */
     private boolean preferHighPerformanceWriter;
+
+    /**
+     * when the bounded {@link sailfish.remoting.channel.HighPerformanceChannelWriter} is full, wait up to
+     * {@code timeout} for capacity instead of failing at once, only valid when {@code preferHighPerformanceWriter}
+     * is true
+     */
+    private boolean awaitWriterCapacity;
+
+    /**
+     * complete {@link DefaultClient#requestAsync(byte[], RequestControl)} and run its listeners on the io thread
+     * which reads the response, listeners must not block, otherwise listeners run on
+     * {@link sailfish.remoting.executor.SimpleExecutor}
+     */
+    private boolean inlineCompletion;
+
+    /**
+     * requests with equal routing key(by {@link Object#hashCode()}) go through the same connection while it is
+     * available, so they are delivered in order, {@code null} means no affinity
+     */
+    private Object routingKey;
+
+    /**
+     * send {@code timeout} along with two-way requests, so the server can drop requests which have been given up by
+     * caller, only enable it when the server understands the timeout extension of {@link RequestProtocol}
+     */
+    private boolean propagateTimeout;
+
+    /**
+     * chunks of {@link DefaultClient#requestStream(byte[], RequestControl)} which may be buffered by client before
+     * being consumed, the server pauses when they are used up
+     */
+    private int     streamCredits = RemotingConstants.DEFAULT_STREAM_CREDITS;
     
     public RequestControl(){
     	this(false);
@@ -79,6 +125,22 @@ public class RequestControl {
         this.compressType = compressType;
     }
 
+    public int compressThreshold() {
+        return compressThreshold;
+    }
+
+    public void compressThreshold(int compressThreshold) {
+        this.compressThreshold = ParameterChecker.checkNotNegative(compressThreshold, "compressThreshold");
+    }
+
+    public int encodeThreshold() {
+        return encodeThreshold;
+    }
+
+    public void encodeThreshold(int encodeThreshold) {
+        this.encodeThreshold = encodeThreshold;
+    }
+
     public boolean sent() {
         return sent;
     }
@@ -87,7 +149,47 @@ public class RequestControl {
         this.sent = sent;
     }
     
+    public boolean inlineCompletion() {
+        return inlineCompletion;
+    }
+
+    public void inlineCompletion(boolean inlineCompletion) {
+        this.inlineCompletion = inlineCompletion;
+    }
+
+    public Object routingKey() {
+        return routingKey;
+    }
+
+    public void routingKey(Object routingKey) {
+        this.routingKey = routingKey;
+    }
+
+    public boolean propagateTimeout() {
+        return propagateTimeout;
+    }
+
+    public void propagateTimeout(boolean propagateTimeout) {
+        this.propagateTimeout = propagateTimeout;
+    }
+
+    public int streamCredits() {
+        return streamCredits;
+    }
+
+    public void streamCredits(int streamCredits) {
+        this.streamCredits = ParameterChecker.checkPositive(streamCredits, "streamCredits");
+    }
+
     public boolean preferHighPerformanceWriter(){
     	return preferHighPerformanceWriter;
     }
+
+    public boolean awaitWriterCapacity() {
+        return awaitWriterCapacity;
+    }
+
+    public void awaitWriterCapacity(boolean awaitWriterCapacity) {
+        this.awaitWriterCapacity = awaitWriterCapacity;
+    }
 }
@@ -0,0 +1,48 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.Executor;
+
+import sailfish.remoting.future.ResponseStream;
+
+/**
+ * push style consumer of a {@link ResponseStream}, see {@link ResponseStream#subscribe(StreamCallback)}
+ *
+ * <pre>
+ * --callbacks of one stream never run concurrently and arrive in order, chunks first, then exactly one of
+ *   {@link #handleEnd()} or {@link #handleException(Exception)}
+ * --credits are granted back after {@link #handleChunk(byte[])} returns, so a slow callback slows the server down,
+ *   the executor must not be one whose threads wait for credits of the same stream(e.g. a server in process)
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: StreamCallback.java, v 0.1 2016年12月19日 上午10:32:16 spccold Exp $
+ */
+public interface StreamCallback {
+	/**
+	 * {@code null} means {@link sailfish.remoting.executor.SimpleExecutor}
+	 */
+	Executor getExecutor();
+
+	void handleChunk(byte[] chunk);
+
+	void handleEnd();
+
+	void handleException(Exception cause);
+}
@@ -17,21 +17,46 @@
  */
 package sailfish.remoting;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.PendingRequestTable.PacketIdCollector;
 import sailfish.remoting.channel.ExchangeChannel;
-import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.future.ResponseSink;
 import sailfish.remoting.protocol.ResponseProtocol;
-import sailfish.remoting.utils.CollectionUtils;
-import sailfish.remoting.utils.ParameterChecker;
 
 /**
- * tcp communication tracer
+ * tcp communication tracer, pending requests are kept in {@link PendingRequestTable}, trace and erase are allocation
+ * free
+ * 
+ * <pre>
+ * --response timeout is a deadline stored with the pending request, sweep tasks check deadlines every tick, so there
+ *   is no global timer thread and completing a request never cancels anything
+ * --every stripe of {@link PendingRequestTable} with pending requests is owned by the sweep task of the event loop
+ *   which traced into it while it had no owner, so every event loop which traces sweeps its share, a sweep task
+ *   gives up stripes which become empty and stops itself when it owns none
+ * --a sweep task whose event loop terminates or rejects it hands its stripes to a live sweep task, or fails their
+ *   pending requests with {@link ExceptionCode#UNFINISHED_REQUEST} if there is none, so nothing waits forever
+ * --every traced request times out with {@link RequestControl#timeout()}, including futures waited by
+ *   {@link sailfish.remoting.future.ResponseFuture#get()} without timeout, a longer
+ *   {@link sailfish.remoting.future.ResponseFuture#get(long, TimeUnit)} can't extend it
+ * --a response stream restarts its timeout on every chunk and credit grant, so the timeout bounds the silence of a
+ *   stream rather than its length
+ * </pre>
  * 
  * @author spccold
  * @version $Id: Tracer.java, v 0.1 2016年10月26日 下午2:46:38 jileng Exp $
@@ -39,31 +64,58 @@ import sailfish.remoting.utils.ParameterChecker;
 public class Tracer {
 	
 	private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
-	private static final Object EMPTY_VALUE = new Object();
+	
+	private static final long TICK_NANOS;
+	static {
+		int tickMillis = SystemPropertyUtil.getInt("sailfish.tracer.tickMillis", 10);
+		TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.tracer.tickMillis: {}", tickMillis);
+		}
+	}
 
-	private final ConcurrentMap<Integer, TraceContext> traces = new ConcurrentHashMap<>();
-	private final ConcurrentMap<ExchangeChannel, ConcurrentMap<Integer, Object>> singleChannelTraces = new ConcurrentHashMap<>();
+	private final PendingRequestTable traces = new PendingRequestTable(PendingRequestTable.DEFAULT_STRIPES, TICK_NANOS);
+	// stripe index -> sweep task which owns it, null if nobody
+	private final AtomicReferenceArray<SweepTask> owners = new AtomicReferenceArray<>(traces.stripes());
+	private final ConcurrentMap<EventExecutor, SweepTask> sweeps = new ConcurrentHashMap<>();
 
-	public Map<Integer, Object> popPendingRequests(ExchangeChannel channel) {
-		return singleChannelTraces.remove(channel);
+	/**
+	 * @return packetIds of pending requests which sent by {@code channel}
+	 */
+	public int[] pendingRequests(ExchangeChannel channel) {
+		return traces.packetIds(channel);
 	}
 
-	public Map<Integer, Object> peekPendingRequests(ExchangeChannel channel) {
-		return singleChannelTraces.get(channel);
+	public boolean hasPendingRequests(ExchangeChannel channel) {
+		return traces.contains(channel);
 	}
 
-	public void trace(ExchangeChannel channel, int packageId, ResponseFuture<byte[]> future) {
-		traces.putIfAbsent(packageId, new TraceContext(channel, future));
-
-		ConcurrentMap<Integer, Object> packetIds = singleChannelTraces.get(channel);
-		if (null == packetIds) {
-			ConcurrentMap<Integer, Object> old = singleChannelTraces.putIfAbsent(channel,
-					packetIds = new ConcurrentHashMap<>());
-			if (null != old) {
-				packetIds = old;
+	/**
+	 * @param executor
+	 *            event loop of {@code channel}, sweeps the stripe of {@code packageId} if it has no owner
+	 * @param timeout
+	 *            response timeout in milliseconds
+	 */
+	public void trace(ExchangeChannel channel, EventExecutor executor, int packageId, ResponseSink<?> future,
+			int timeout) {
+		long now = System.nanoTime();
+		traces.put(packageId, channel, future, now, now + TimeUnit.MILLISECONDS.toNanos(timeout));
+		int stripeIndex = traces.stripeIndex(packageId);
+		if (null != owners.get(stripeIndex)) {
+			return;
+		}
+		SweepTask sweep = sweeps.get(executor);
+		if (null == sweep) {
+			SweepTask created = new SweepTask(executor);
+			sweep = sweeps.putIfAbsent(executor, created);
+			if (null == sweep) {
+				sweep = created;
+				sweep.watchTermination();
 			}
 		}
-		packetIds.put(packageId, EMPTY_VALUE);
+		if (owners.compareAndSet(stripeIndex, null, sweep)) {
+			sweep.start();
+		}
 	}
 
 	public void erase(ResponseProtocol protocol) {
@@ -71,37 +123,196 @@ public class Tracer {
 			protocol.recycle();
 			return;
 		}
-		TraceContext traceContext = traces.remove(protocol.packetId());
-		if (null == traceContext) {
-			logger.info("trace no exist for packageId[{}]", protocol.packetId());
+		if (protocol.stream()) {
+			// chunk of a response stream, keep tracing until the final response
+			ResponseSink<?> respFuture = traces.touch(protocol.packetId(), System.nanoTime());
+			if (null == respFuture) {
+				logger.info("trace no exist for stream chunk, packageId[{}]", protocol.packetId());
+			} else {
+				respFuture.putResponse(protocol);
+			}
 			protocol.recycle();
 			return;
 		}
-		traceContext.respFuture.putResponse(protocol.body(), protocol.result(), protocol.cause());
-		ConcurrentMap<Integer, Object> packetIds = singleChannelTraces.get(traceContext.channel);
-		if (CollectionUtils.isNotEmpty(packetIds)) {
-			packetIds.remove(protocol.packetId());
+		ResponseSink<?> respFuture = traces.erase(protocol.packetId(), System.nanoTime());
+		if (null == respFuture) {
+			logger.info("trace no exist for packageId[{}]", protocol.packetId());
+			protocol.recycle();
+			return;
 		}
+		respFuture.putResponse(protocol);
 		protocol.recycle();
 	}
 	
+	/**
+	 * restart the timeout of a pending response stream, see {@link PendingRequestTable#touch(int, long)}
+	 */
+	public void touch(int packetId) {
+		traces.touch(packetId, System.nanoTime());
+	}
+
 	public void remove(int packetId){
-		TraceContext traceContext = traces.remove(packetId);
-		if(null != traceContext){
-			ConcurrentMap<Integer, Object> packetIds = singleChannelTraces.get(traceContext.channel);
-			if (CollectionUtils.isNotEmpty(packetIds)) {
-				packetIds.remove(packetId);
+		traces.remove(packetId);
+	}
+
+	private void sweep(int stripeIndex, PacketIdCollector expired) {
+		long now = System.nanoTime();
+		traces.expired(stripeIndex, now, expired);
+		try {
+			for (int i = 0; i < expired.size(); i++) {
+				int packetId = expired.get(i);
+				// timeout counts as a latency sample, slow channel should not look fast
+				ResponseSink<?> respFuture = traces.erase(packetId, now);
+				if (null == respFuture) {// completed meanwhile
+					continue;
+				}
+				String msg = String.format("wait response for packetId[%d] timeout", packetId);
+				try {
+					respFuture.putResponse(null, RemotingConstants.RESULT_FAIL,
+							new SailfishException(ExceptionCode.RESPONSE_TIMEOUT, msg));
+				} catch (Throwable cause) {
+					logger.error("complete timeout response error", cause);
+				}
 			}
+		} finally {
+			expired.clear();
 		}
 	}
-	
-	static class TraceContext {
-		ExchangeChannel channel;
-		ResponseFuture<byte[]> respFuture;
 
-		public TraceContext(ExchangeChannel channel, ResponseFuture<byte[]> respFuture) {
-			this.channel = ParameterChecker.checkNotNull(channel, "channel");
-			this.respFuture = ParameterChecker.checkNotNull(respFuture, "respFuture");
+	final class SweepTask implements Runnable {
+		private final EventExecutor executor;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		// only accessed by this task
+		private final PacketIdCollector expired = new PacketIdCollector();
+
+		SweepTask(EventExecutor executor) {
+			this.executor = executor;
+		}
+
+		/**
+		 * scheduled tasks of a terminated event loop are dropped silently, so this task would never run again
+		 */
+		void watchTermination() {
+			try {
+				executor.terminationFuture().addListener(new FutureListener<Object>() {
+					@Override
+					public void operationComplete(Future<Object> future) throws Exception {
+						if (executor.isTerminated()) {
+							abandon();
+						}
+					}
+				});
+			} catch (UnsupportedOperationException cause) {
+				// e.g. EmbeddedEventLoop, which never terminates by itself
+			}
+		}
+
+		void start() {
+			if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+				schedule();
+			}
+		}
+
+		@Override
+		public void run() {
+			if (sweepOwned()) {
+				schedule();
+				return;
+			}
+			scheduled.set(false);
+			// recheck, a concurrent trace may have seen this task as scheduled
+			if (owns() && scheduled.compareAndSet(false, true)) {
+				schedule();
+			}
+		}
+
+		/**
+		 * @return {@code true} if this task still owns some stripes
+		 */
+		private boolean sweepOwned() {
+			boolean owns = false;
+			for (int i = 0; i < owners.length(); i++) {
+				if (owners.get(i) != this) {
+					continue;
+				}
+				sweep(i, expired);
+				if (traces.size(i) != 0) {
+					owns = true;
+					continue;
+				}
+				owners.set(i, null);
+				// recheck, a concurrent trace may have seen this task as owner
+				if (traces.size(i) != 0 && owners.compareAndSet(i, null, this)) {
+					owns = true;
+				}
+			}
+			return owns;
+		}
+
+		private boolean owns() {
+			for (int i = 0; i < owners.length(); i++) {
+				if (owners.get(i) == this) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void schedule() {
+			try {
+				executor.schedule(this, TICK_NANOS, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException cause) {
+				abandon();
+			}
+		}
+
+		/**
+		 * event loop is gone, next traces will pick other event loops
+		 */
+		private void abandon() {
+			sweeps.remove(executor, this);
+			scheduled.set(false);
+			for (int i = 0; i < owners.length(); i++) {
+				if (owners.get(i) == this) {
+					handOver(i);
+				}
+			}
+		}
+
+		/**
+		 * move the stripe to a live sweep task, fail its pending requests if there is none
+		 */
+		private void handOver(int stripeIndex) {
+			for (SweepTask other : sweeps.values()) {
+				if (other.executor.isShuttingDown()) {
+					continue;
+				}
+				if (!owners.compareAndSet(stripeIndex, this, other)) {
+					return;
+				}
+				other.start();
+				return;
+			}
+			if (!owners.compareAndSet(stripeIndex, this, null)) {
+				return;
+			}
+			// not the collector of this task, termination is noticed by another thread
+			PacketIdCollector unfinished = new PacketIdCollector();
+			traces.packetIds(stripeIndex, unfinished);
+			for (int i = 0; i < unfinished.size(); i++) {
+				int packetId = unfinished.get(i);
+				ResponseSink<?> respFuture = traces.remove(packetId);
+				if (null == respFuture) {// completed meanwhile
+					continue;
+				}
+				String msg = String.format("no event loop left to time out packetId[%d]", packetId);
+				try {
+					respFuture.putResponse(null, RemotingConstants.RESULT_FAIL,
+							new SailfishException(ExceptionCode.UNFINISHED_REQUEST, msg));
+				} catch (Throwable cause) {
+					logger.error("complete unfinished response error", cause);
+				}
+			}
 		}
 	}
 }
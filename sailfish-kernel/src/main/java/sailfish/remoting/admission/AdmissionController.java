@@ -0,0 +1,135 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.admission;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * server side admission control, a request is admitted only if both the global {@link ConcurrencyLimiter} and the
+ * {@link ConcurrencyLimiter} of its opcode have a free permit, otherwise it is rejected before being queued
+ *
+ * <pre>
+ * --limiters of opcodes are indexed by unsigned opcode in an array, like {@link sailfish.remoting.processors.Processors}
+ * --opcodes without {@link RequestProcessor} only go through the global limiter
+ * --latency is measured from admission to response, so queueing delay shrinks the limits
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: AdmissionController.java, v 0.1 2016年12月14日 下午3:02:45 spccold Exp $
+ */
+public class AdmissionController {
+	private static final int INITIAL_LIMIT = 20;
+	private static final int MIN_LIMIT = 1;
+
+	private final ConcurrencyLimiter global;
+	private final ConcurrencyLimiter[] opcodes;
+	private final AtomicLong rejected = new AtomicLong();
+
+	public AdmissionController(List<RequestProcessor> requestProcessors, int maxGlobalLimit, int maxOpcodeLimit) {
+		ParameterChecker.checkNotNull(requestProcessors, "requestProcessors");
+		ParameterChecker.checkPositive(maxGlobalLimit, "maxGlobalLimit");
+		ParameterChecker.checkPositive(maxOpcodeLimit, "maxOpcodeLimit");
+		this.global = new ConcurrencyLimiter(Math.min(INITIAL_LIMIT, maxGlobalLimit), MIN_LIMIT, maxGlobalLimit);
+		int length = 0;
+		for (RequestProcessor processor : requestProcessors) {
+			length = Math.max(length, index(processor.opcode()) + 1);
+		}
+		this.opcodes = new ConcurrencyLimiter[length];
+		for (RequestProcessor processor : requestProcessors) {
+			int index = index(processor.opcode());
+			if (null == opcodes[index]) {
+				opcodes[index] = new ConcurrencyLimiter(Math.min(INITIAL_LIMIT, maxOpcodeLimit), MIN_LIMIT,
+						maxOpcodeLimit);
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if admitted, {@link #release(int, long)} or {@link #release(int)} must be invoked later
+	 */
+	public boolean tryAcquire(int opcode) {
+		if (!global.tryAcquire()) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		ConcurrencyLimiter limiter = limiter(opcode);
+		if (null != limiter && !limiter.tryAcquire()) {
+			global.release();
+			rejected.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * release the permits of a processed request
+	 */
+	public void release(int opcode, long latencyNanos) {
+		ConcurrencyLimiter limiter = limiter(opcode);
+		if (null != limiter) {
+			limiter.release(latencyNanos);
+		}
+		global.release(latencyNanos);
+	}
+
+	/**
+	 * release the permits of a request which was not processed
+	 */
+	public void release(int opcode) {
+		ConcurrencyLimiter limiter = limiter(opcode);
+		if (null != limiter) {
+			limiter.release();
+		}
+		global.release();
+	}
+
+	/**
+	 * @return current global concurrency limit
+	 */
+	public int limit() {
+		return global.limit();
+	}
+
+	/**
+	 * @return current concurrency limit of {@code opcode}, {@code -1} if it is only limited globally
+	 */
+	public int limit(int opcode) {
+		ConcurrencyLimiter limiter = limiter(opcode);
+		return null == limiter ? -1 : limiter.limit();
+	}
+
+	/**
+	 * @return number of rejected requests
+	 */
+	public long rejected() {
+		return rejected.get();
+	}
+
+	private ConcurrencyLimiter limiter(int opcode) {
+		int index = index(opcode);
+		return index < opcodes.length ? opcodes[index] : null;
+	}
+
+	private static int index(int opcode) {
+		return opcode & 0xFFFF;
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * adaptive concurrency limit, similar to
+ * <a href="https://github.com/Netflix/concurrency-limits">Gradient2Limit In Netflix concurrency-limits</a>
+ *
+ * <pre>
+ * --every completed request is a latency sample, a long-term EWMA of latency is the baseline
+ * --samples are taken without lock, a sample arriving while another one is being applied is dropped
+ * --gradient = min(1, tolerance * baseline / sample), sample growing over baseline(queueing) shrinks the limit
+ * --limit grows by sqrt(limit) while latency stays around baseline and the limit is actually used
+ * --limit moves towards the new value smoothly, and stays in [minLimit, maxLimit]
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: ConcurrencyLimiter.java, v 0.1 2016年12月14日 下午2:31:08 spccold Exp $
+ */
+public class ConcurrencyLimiter {
+	// latency up to tolerance * baseline is not treated as queueing
+	private static final double TOLERANCE = 1.5;
+	private static final double MIN_GRADIENT = 0.5;
+	private static final double SMOOTHING = 0.2;
+	private static final double BASELINE_ALPHA = 0.01;
+	// forget baseline faster once latency drops a lot, e.g. after warm up
+	private static final double BASELINE_DECAY = 0.95;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final AtomicInteger inflight = new AtomicInteger();
+	private volatile int limit;
+
+	// owner of the estimation below, taken by CAS and never waited for
+	private final AtomicBoolean sampling = new AtomicBoolean();
+	// guarded by sampling
+	private double estimatedLimit;
+	private double baselineNanos;
+
+	public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = ParameterChecker.checkPositive(minLimit, "minLimit");
+		this.maxLimit = ParameterChecker.checkPositive(maxLimit, "maxLimit");
+		if (minLimit > maxLimit) {
+			throw new IllegalArgumentException("maxLimit must be greater than minLimit");
+		}
+		if (initialLimit < minLimit || initialLimit > maxLimit) {
+			throw new IllegalArgumentException(
+					"initialLimit: " + initialLimit + " (expected: " + minLimit + " <= initialLimit <= " + maxLimit + ")");
+		}
+		this.limit = initialLimit;
+		this.estimatedLimit = initialLimit;
+	}
+
+	/**
+	 * @return {@code true} if a permit has been taken, must be given back by {@link #release()} or
+	 *         {@link #release(long)}
+	 */
+	public boolean tryAcquire() {
+		for (;;) {
+			int current = inflight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inflight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * give back the permit without latency sample, e.g. request was not processed at all
+	 */
+	public void release() {
+		inflight.decrementAndGet();
+	}
+
+	/**
+	 * give back the permit of a completed request which took {@code latencyNanos}
+	 */
+	public void release(long latencyNanos) {
+		int current = inflight.getAndDecrement();
+		if (sampling.compareAndSet(false, true)) {
+			try {
+				onSample(Math.max(1, latencyNanos), current);
+			} finally {
+				sampling.set(false);
+			}
+		}
+	}
+
+	private void onSample(long latencyNanos, int inflight) {
+		if (baselineNanos == 0) {
+			baselineNanos = latencyNanos;
+		} else {
+			baselineNanos = baselineNanos * (1 - BASELINE_ALPHA) + latencyNanos * BASELINE_ALPHA;
+			if (baselineNanos / latencyNanos > 2) {
+				baselineNanos *= BASELINE_DECAY;
+			}
+		}
+
+		double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * baselineNanos / latencyNanos));
+		// not limited by us, don't grow the limit blindly
+		if (gradient >= 1.0 && inflight < estimatedLimit / 2) {
+			return;
+		}
+		double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+		newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+		estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+		limit = (int) estimatedLimit;
+	}
+
+	/**
+	 * @return current concurrency limit
+	 */
+	public int limit() {
+		return limit;
+	}
+
+	/**
+	 * @return requests holding a permit
+	 */
+	public int inflight() {
+		return inflight.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter [limit=" + limit + ", inflight=" + inflight.get() + ", minLimit=" + minLimit
+				+ ", maxLimit=" + maxLimit + "]";
+	}
+}
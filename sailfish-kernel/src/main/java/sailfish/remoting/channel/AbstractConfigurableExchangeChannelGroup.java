@@ -18,7 +18,6 @@
 package sailfish.remoting.channel;
 
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
 
 import static sailfish.remoting.constants.ChannelAttrKeys.OneTime;
 
@@ -30,18 +29,12 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.EventExecutorGroup;
 import sailfish.remoting.Address;
 import sailfish.remoting.NettyPlatformIndependent;
-import sailfish.remoting.codec.RemotingDecoder;
-import sailfish.remoting.codec.RemotingEncoder;
 import sailfish.remoting.configuration.NegotiateConfig;
 import sailfish.remoting.constants.ChannelAttrKeys;
 import sailfish.remoting.eventgroup.ClientEventGroup;
-import sailfish.remoting.handler.HeartbeatChannelHandler;
-import sailfish.remoting.handler.NegotiateChannelHandler;
-import sailfish.remoting.handler.ConcreteRequestHandler;
 
 /**
  * @author spccold
@@ -55,7 +48,8 @@ public abstract class AbstractConfigurableExchangeChannelGroup extends AbstractE
 	}
 
 	protected Bootstrap configureBoostrap(Address remoteAddress, int connectTimeout, NegotiateConfig config,
-			ExchangeChannelGroup channelGroup, EventLoopGroup loopGroup, EventExecutorGroup executorGroup) {
+			ExchangeChannelGroup channelGroup, EventLoopGroup loopGroup, EventExecutorGroup executorGroup,
+			PipelineLayout layout) {
 		Bootstrap boot = newBootstrap();
 		if (null == loopGroup) {
 			loopGroup = ClientEventGroup.INSTANCE.getLoopGroup();
@@ -66,7 +60,7 @@ public abstract class AbstractConfigurableExchangeChannelGroup extends AbstractE
 		boot.group(loopGroup);
 		boot.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
 		boot.remoteAddress(remoteAddress.host(), remoteAddress.port());
-		boot.handler(newChannelInitializer(config, channelGroup, executorGroup));
+		boot.handler(newChannelInitializer(config, channelGroup, executorGroup, layout));
 		return boot;
 	}
 
@@ -92,7 +86,7 @@ public abstract class AbstractConfigurableExchangeChannelGroup extends AbstractE
 	}
 
 	private ChannelInitializer<SocketChannel> newChannelInitializer(final NegotiateConfig config,
-			final ExchangeChannelGroup channelGroup, final EventExecutorGroup executorGroup) {
+			final ExchangeChannelGroup channelGroup, final EventExecutorGroup executorGroup, final PipelineLayout layout) {
 		return new ChannelInitializer<SocketChannel>() {
 			@Override
 			protected void initChannel(SocketChannel ch) throws Exception {
@@ -100,16 +94,11 @@ public abstract class AbstractConfigurableExchangeChannelGroup extends AbstractE
 				ch.attr(ChannelAttrKeys.maxIdleTimeout).set(config.maxIdleTimeout());
 				ch.attr(ChannelAttrKeys.channelGroup).set(channelGroup);
 				ch.attr(ChannelAttrKeys.clientSide).set(true);
-				ch.attr(OneTime.awaitNegotiate).set(new CountDownLatch(1));
+				ch.attr(OneTime.awaitNegotiate).set(ch.newPromise());
 				ch.attr(OneTime.channelConfig).set(config);
-				// TODO should increase ioRatio when every ChannelHandler bind to executorGroup?
-				pipeline.addLast(executorGroup, 
-						RemotingEncoder.INSTANCE, 
-						new RemotingDecoder(), 
-						new IdleStateHandler(config.idleTimeout(), 0, 0), 
-						HeartbeatChannelHandler.INSTANCE,
-						NegotiateChannelHandler.INSTANCE,
-						ConcreteRequestHandler.INSTANCE);
+				// ioRatio is left to netty's default: it belongs to the event loops, which are shared by channels of
+				// every layout (ClientEventGroup or user supplied loopGroup), so one channel's layout can't decide it
+				layout.addHandlers(pipeline, executorGroup, config.idleTimeout());
 			}
 		};
 	}
@@ -18,29 +18,50 @@
 package sailfish.remoting.channel;
 
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import sailfish.remoting.RequestControl;
 import sailfish.remoting.ResponseCallback;
+import sailfish.remoting.codec.DefaultRemotingCodec;
 import sailfish.remoting.exceptions.ExceptionCode;
 import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.executor.SimpleEventExecutor;
+import sailfish.remoting.future.AggregatePromise;
+import sailfish.remoting.future.ByteBufResponseFuture;
+import sailfish.remoting.future.BytesPromiseResponseFuture;
 import sailfish.remoting.future.BytesResponseFuture;
 import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.future.ResponseSink;
+import sailfish.remoting.future.ResponseStream;
+import sailfish.remoting.protocol.Protocol;
 import sailfish.remoting.protocol.RequestProtocol;
 import sailfish.remoting.protocol.ResponseProtocol;
+import sailfish.remoting.utils.PacketIdGenerator;
 
 /**
  * @author spccold
  * @version $Id: AbstractExchangeChannel.java, v 0.1 2016年11月21日 下午10:49:12 spccold Exp $
  */
 public abstract class AbstractExchangeChannel implements ExchangeChannel {
+	private static final AtomicIntegerFieldUpdater<AbstractExchangeChannel> PENDING_REQUESTS_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(AbstractExchangeChannel.class, "pendingRequests");
+
 	/** underlying channel */
 	protected volatile Channel channel;
 	protected volatile boolean closed = false;
 
 	private final ExchangeChannelGroup parent;
+	private volatile int pendingRequests;
+	private volatile long ewmaLatency;
 
 	protected AbstractExchangeChannel(ExchangeChannelGroup parent) {
 		this.parent = parent;
@@ -56,6 +77,11 @@ public abstract class AbstractExchangeChannel implements ExchangeChannel {
 		return this;
 	}
 
+	@Override
+	public ExchangeChannel next(Object routingKey) {
+		return this;
+	}
+
 	@Override
 	public UUID id() {
 		return null;
@@ -85,6 +111,38 @@ public abstract class AbstractExchangeChannel implements ExchangeChannel {
 	protected boolean isWritable(){
 		return (null != channel && channel.isWritable());
 	}
+
+	@Override
+	public int pendingRequests() {
+		return pendingRequests;
+	}
+
+	/**
+	 * maintained by {@link sailfish.remoting.PendingRequestTable} when request of this channel is traced or erased
+	 */
+	public final void updatePendingRequests(int delta) {
+		PENDING_REQUESTS_UPDATER.addAndGet(this, delta);
+	}
+
+	@Override
+	public long ewmaLatency() {
+		return ewmaLatency;
+	}
+
+	/**
+	 * ewma = ewma + (sample - ewma) / 8 like srtt of tcp, concurrent samples may get lost which is harmless for a
+	 * moving average
+	 */
+	public final void recordLatency(long latency) {
+		long ewma = this.ewmaLatency;
+		this.ewmaLatency = (ewma == 0 ? latency : ewma + ((latency - ewma) >> 3));
+	}
+
+	@Override
+	public long bytesBeforeUnwritable() {
+		Channel channel = this.channel;
+		return null == channel ? 0 : channel.bytesBeforeUnwritable();
+	}
 	
 	@Override
 	public void close() {
@@ -99,83 +157,268 @@ public abstract class AbstractExchangeChannel implements ExchangeChannel {
 	@Override
 	public void oneway(byte[] data, RequestControl requestControl) throws SailfishException {
 		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
-		protocol.oneway(true);
 		protocol.body(data);
-		
-		if(requestControl.preferHighPerformanceWriter()){
-			HighPerformanceChannelWriter.write(channel, protocol);
-			return;
-		}
-		
-		if (requestControl.sent() && requestControl.timeout() > 0) {
-			ChannelFuture future = channel.writeAndFlush(protocol);
-			waitWriteDone(future, requestControl.timeout(), protocol, false);
-			return;
-		}
-		// reduce memory consumption
-		channel.writeAndFlush(protocol, channel.voidPromise());
+		oneway(protocol, requestControl);
+	}
+
+	@Override
+	public void oneway(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		oneway(protocol, requestControl);
 	}
 
 	@Override
 	public ResponseFuture<byte[]> request(byte[] data, RequestControl requestControl) throws SailfishException {
-		return requestWithFuture(data, null, requestControl);
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		return requestWithFuture(protocol, new BytesResponseFuture(protocol.packetId(), getTracer()), null,
+				requestControl);
 	}
 
 	@Override
 	public void request(byte[] data, ResponseCallback<byte[]> callback, RequestControl requestControl)
 			throws SailfishException {
-		requestWithFuture(data, callback, requestControl);
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		requestWithFuture(protocol, new BytesResponseFuture(protocol.packetId(), getTracer()), callback,
+				requestControl);
+	}
+
+	@Override
+	public ResponseFuture<ByteBuf> request(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		return requestWithFuture(protocol, new ByteBufResponseFuture(protocol.packetId(), getTracer()), null,
+				requestControl);
+	}
+
+	@Override
+	public void request(ByteBuf data, ResponseCallback<ByteBuf> callback, RequestControl requestControl)
+			throws SailfishException {
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		requestWithFuture(protocol, new ByteBufResponseFuture(protocol.packetId(), getTracer()), callback,
+				requestControl);
+	}
+
+	@Override
+	public Future<byte[]> requestAsync(byte[] data, RequestControl requestControl) throws SailfishException {
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		EventExecutor executor = requestControl.inlineCompletion() ? ImmediateEventExecutor.INSTANCE
+				: SimpleEventExecutor.INSTANCE;
+		BytesPromiseResponseFuture respFuture = new BytesPromiseResponseFuture(protocol.packetId(), getTracer(),
+				executor);
+		requestWithFuture(protocol, respFuture, null, requestControl);
+		return respFuture.promise();
+	}
+
+	@Override
+	public List<ResponseFuture<byte[]>> requestBatch(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		int[] packetIds = newPacketIds(data.size());
+		List<ResponseFuture<byte[]>> respFutures = new ArrayList<>(packetIds.length);
+		for (int packetId : packetIds) {
+			respFutures.add(new BytesResponseFuture(packetId, getTracer()));
+		}
+		requestBatch(data, packetIds, respFutures, requestControl);
+		return respFutures;
+	}
+
+	@Override
+	public Future<List<byte[]>> requestBatchAsync(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		int[] packetIds = newPacketIds(data.size());
+		EventExecutor executor = requestControl.inlineCompletion() ? ImmediateEventExecutor.INSTANCE
+				: SimpleEventExecutor.INSTANCE;
+		AggregatePromise<byte[]> aggregate = new AggregatePromise<>(executor, packetIds.length);
+		List<ResponseFuture<byte[]>> respFutures = new ArrayList<>(packetIds.length);
+		for (int i = 0; i < packetIds.length; i++) {
+			BytesPromiseResponseFuture respFuture = new BytesPromiseResponseFuture(packetIds[i], getTracer(),
+					executor);
+			aggregate.add(i, respFuture.promise());
+			respFutures.add(respFuture);
+		}
+		requestBatch(data, packetIds, respFutures, requestControl);
+		return aggregate;
+	}
+
+	@Override
+	public ResponseStream requestStream(byte[] data, RequestControl requestControl) throws SailfishException {
+		RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+		protocol.body(data);
+		ResponseStream stream = new ResponseStream(protocol.packetId(), getTracer(), this,
+				requestControl.streamCredits());
+		try {
+			// the server must know the stream before the request arrives
+			stream.open();
+		} catch (SailfishException cause) {
+			protocol.recycle();
+			throw cause;
+		}
+		requestWithTrace(protocol, stream, requestControl);
+		return stream;
 	}
 
 	@Override
 	public void response(ResponseProtocol response) throws SailfishException {
-		channel.writeAndFlush(response, channel.voidPromise());
+		channel.writeAndFlush(encodeIfNeeded(response), channel.voidPromise());
 	}
 
-	private ResponseFuture<byte[]> requestWithFuture(byte[] data, ResponseCallback<byte[]> callback,
-			RequestControl requestControl) throws SailfishException {
-		final RequestProtocol protocol = RequestProtocol.newRequest(requestControl);
+	private void oneway(RequestProtocol protocol, RequestControl requestControl) throws SailfishException {
+		protocol.oneway(true);
+		
+		if(requestControl.preferHighPerformanceWriter()){
+			writeByHighPerformanceWriter(protocol, requestControl, false);
+			return;
+		}
+		
+		int packetId = protocol.packetId();
+		Object msg = encodeIfNeeded(protocol);
+		if (requestControl.sent() && requestControl.timeout() > 0) {
+			ChannelFuture future = channel.writeAndFlush(msg);
+			waitWriteDone(future, requestControl.timeout(), packetId, false);
+			return;
+		}
+		// reduce memory consumption
+		channel.writeAndFlush(msg, channel.voidPromise());
+	}
+
+	private <T> ResponseFuture<T> requestWithFuture(RequestProtocol protocol, ResponseFuture<T> respFuture,
+			ResponseCallback<T> callback, RequestControl requestControl) throws SailfishException {
+		respFuture.setCallback(callback);
+		requestWithTrace(protocol, respFuture, requestControl);
+		return respFuture;
+	}
+
+	private void requestWithTrace(RequestProtocol protocol, ResponseSink<?> sink, RequestControl requestControl)
+			throws SailfishException {
 		protocol.oneway(false);
-		protocol.body(data);
+		if (requestControl.propagateTimeout()) {
+			protocol.timeout(requestControl.timeout());
+		}
 		
-		ResponseFuture<byte[]> respFuture = new BytesResponseFuture(protocol.packetId(), getTracer());
-		respFuture.setCallback(callback, requestControl.timeout());
 		// trace before write
-		getTracer().trace(this, protocol.packetId(), respFuture);
+		getTracer().trace(this, channel.eventLoop(), protocol.packetId(), sink, requestControl.timeout());
 		
 		if(requestControl.preferHighPerformanceWriter()){
-			HighPerformanceChannelWriter.write(channel, protocol);
-			return respFuture;
+			writeByHighPerformanceWriter(protocol, requestControl, true);
+			return;
 		}
 		
+		// protocol will be recycled after written or encoded
+		int packetId = protocol.packetId();
+		Object msg = null;
+		try {
+			msg = encodeIfNeeded(protocol);
+		} catch (SailfishException cause) {
+			getTracer().remove(packetId);
+			throw cause;
+		}
 		if (requestControl.sent()) {
-			ChannelFuture future = channel.writeAndFlush(protocol);
-			waitWriteDone(future, requestControl.timeout(), protocol, true);
-			return respFuture;
+			ChannelFuture future = channel.writeAndFlush(msg);
+			waitWriteDone(future, requestControl.timeout(), packetId, true);
+			return;
 		}
 
-		channel.writeAndFlush(protocol, channel.voidPromise());
-		return respFuture;
+		channel.writeAndFlush(msg, channel.voidPromise());
+	}
+
+	private void requestBatch(List<byte[]> data, int[] packetIds, List<ResponseFuture<byte[]>> respFutures,
+			RequestControl requestControl) throws SailfishException {
+		RequestProtocol protocol = RequestProtocol.newBatch(requestControl, packetIds, data, channel.alloc());
+		if (requestControl.propagateTimeout()) {
+			protocol.timeout(requestControl.timeout());
+		}
+
+		// trace every item before write, the batch itself is never responded
+		for (int i = 0; i < packetIds.length; i++) {
+			getTracer().trace(this, channel.eventLoop(), packetIds[i], respFutures.get(i), requestControl.timeout());
+		}
+		try {
+			if (requestControl.preferHighPerformanceWriter()) {
+				writeByHighPerformanceWriter(protocol, requestControl, false);
+				return;
+			}
+			int packetId = protocol.packetId();
+			Object msg = encodeIfNeeded(protocol);
+			if (requestControl.sent()) {
+				ChannelFuture future = channel.writeAndFlush(msg);
+				waitWriteDone(future, requestControl.timeout(), packetId, false);
+				return;
+			}
+			channel.writeAndFlush(msg, channel.voidPromise());
+		} catch (SailfishException cause) {
+			for (int packetId : packetIds) {
+				getTracer().remove(packetId);
+			}
+			throw cause;
+		}
+	}
+
+	private static int[] newPacketIds(int size) {
+		int[] packetIds = new int[size];
+		for (int i = 0; i < size; i++) {
+			packetIds[i] = PacketIdGenerator.nextId();
+		}
+		return packetIds;
+	}
+
+	/**
+	 * compress and encode {@code protocol} into a pooled {@link ByteBuf} in the calling thread if its frame reaches
+	 * {@link Protocol#encodeThreshold()}, so large bodies don't cost cpu of event loop,
+	 * {@link sailfish.remoting.codec.RemotingEncoder} lets encoded frames pass through
+	 * 
+	 * <pre>
+	 * --a {@link ByteBuf} body is always encoded here, it is wrapped without copy, and netty releases the frame
+	 *   when a write fails before reaching the encoder(e.g. closed channel), while a {@link Protocol} is not
+	 *   reference counted and its body would leak
+	 * </pre>
+	 */
+	private Object encodeIfNeeded(Protocol protocol) throws SailfishException {
+		int encodeThreshold = protocol.encodeThreshold();
+		if (null == protocol.bodyBuf() && (encodeThreshold < 0 || protocol.frameLength() < encodeThreshold)) {
+			return protocol;
+		}
+		return DefaultRemotingCodec.INSTANCE.encode(protocol, channel.alloc());
 	}
 	
-	private void waitWriteDone(ChannelFuture future, int timeout, RequestProtocol request, boolean needRemoveTrace)
+	private void writeByHighPerformanceWriter(RequestProtocol protocol, RequestControl requestControl,
+			boolean needRemoveTrace) throws SailfishException {
+		boolean written = requestControl.awaitWriterCapacity()
+				? HighPerformanceChannelWriter.write(channel, protocol, requestControl.timeout())
+				: HighPerformanceChannelWriter.tryWrite(channel, protocol);
+		if (written) {
+			return;
+		}
+		int packetId = protocol.packetId();
+		protocol.recycle();
+		if (needRemoveTrace) {
+			getTracer().remove(packetId);
+		}
+		throw new SailfishException(ExceptionCode.WRITE_OVERFLOW, String.format(
+				"too many pending writes to remote[%s], packetId[%d]", channel.remoteAddress(), packetId));
+	}
+
+	private void waitWriteDone(ChannelFuture future, int timeout, int packetId, boolean needRemoveTrace)
 			throws SailfishException {
 		boolean done = future.awaitUninterruptibly(timeout);
 		if (!done) {
 			// useless at most of time when do writeAndFlush(...) invoke
 			future.cancel(true);
 			if (needRemoveTrace) {
-				getTracer().remove(request.packetId());
+				getTracer().remove(packetId);
 			}
 			throw new SailfishException(ExceptionCode.WRITE_TIMEOUT,
-					String.format("write to remote[%s] timeout, protocol[%s]", channel.remoteAddress(), request));
+					String.format("write to remote[%s] timeout, packetId[%d]", channel.remoteAddress(), packetId));
 		}
 		if (!future.isSuccess()) {
 			if (needRemoveTrace) {
-				getTracer().remove(request.packetId());
+				getTracer().remove(packetId);
 			}
 			throw new SailfishException(ExceptionCode.CHANNEL_WRITE_FAIL,
-					String.format("write to remote[%s] fail, protocol[%s]", channel.remoteAddress(), request),
+					String.format("write to remote[%s] fail, packetId[%d]", channel.remoteAddress(), packetId),
 					future.cause());
 		}
 	}
@@ -0,0 +1,116 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+
+/**
+ * base of all {@link ExchangeChannelChooserFactory.ExchangeChannelChooser}s, owns the {@link ConsistentHashRing} for
+ * routing keys and checks every candidate by {@link #available(int)} which keeps {@code deadChannels} up to date
+ * 
+ * @author spccold
+ * @version $Id: AbstractExchangeChannelChooser.java, v 0.1 2016年12月8日 上午10:21:35 spccold Exp $
+ */
+abstract class AbstractExchangeChannelChooser implements ExchangeChannelChooserFactory.ExchangeChannelChooser {
+	protected final ExchangeChannel[] channels;
+	private final ExchangeChannel[] deadChannels;
+	private final ConsistentHashRing ring;
+
+	protected AbstractExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+		this.channels = channels;
+		this.deadChannels = deadChannels;
+		this.ring = new ConsistentHashRing(channels, deadChannels);
+	}
+
+	/**
+	 * key affinity wins over load
+	 */
+	@Override
+	public ExchangeChannel next(Object routingKey) throws SailfishException {
+		return ring.next(routingKey);
+	}
+
+	@Override
+	public ExchangeChannel next() throws SailfishException {
+		if (channels.length == 1) {// one connection check
+			ExchangeChannel channel = available(0);
+			if (null == channel) {
+				throw notAvailable();
+			}
+			return channel;
+		}
+		ExchangeChannel channel = choose();
+		if (null == channel) {
+			throw notAvailable();
+		}
+		return channel;
+	}
+
+	/**
+	 * @return the chosen channel or {@code null} if no channel is available
+	 */
+	protected abstract ExchangeChannel choose();
+
+	/**
+	 * choose the available channel with the lowest {@link #load(ExchangeChannel)}, scanning from
+	 * {@code start} so that channels with equal load take turns
+	 */
+	protected final ExchangeChannel leastLoaded(int start) {
+		ExchangeChannel chosen = null;
+		long minLoad = Long.MAX_VALUE;
+		for (int i = 0; i < channels.length; i++) {
+			ExchangeChannel channel = available((start + i) % channels.length);
+			if (null == channel) {
+				continue;
+			}
+			long load = load(channel);
+			if (load < minLoad) {
+				chosen = channel;
+				minLoad = load;
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * lower is better
+	 */
+	protected long load(ExchangeChannel channel) {
+		return channel.pendingRequests();
+	}
+
+	/**
+	 * @return channel at {@code index} if it is available, otherwise record it as dead and return {@code null}
+	 */
+	protected final ExchangeChannel available(int index) {
+		ExchangeChannel channel = channels[index];
+		if (null != channel && channel.isAvailable()) {
+			if (null != deadChannels[index]) {
+				deadChannels[index] = null;
+			}
+			return channel;
+		}
+		deadChannels[index] = channel;
+		return null;
+	}
+
+	private static SailfishException notAvailable() {
+		return new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchanger is not available!");
+	}
+}
@@ -17,12 +17,16 @@
  */
 package sailfish.remoting.channel;
 
+import java.util.List;
 import java.util.UUID;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.RequestControl;
 import sailfish.remoting.ResponseCallback;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.future.ResponseStream;
 import sailfish.remoting.protocol.ResponseProtocol;
 
 /**
@@ -52,24 +56,75 @@ public abstract class AbstractExchangeChannelGroup implements ExchangeChannelGro
 		return closed;
 	}
 
+	/**
+	 * no affinity by default
+	 */
+	@Override
+	public ExchangeChannel next(Object routingKey) throws SailfishException {
+		return next();
+	}
+
 	@Override
 	public void oneway(byte[] data, RequestControl requestControl) throws SailfishException {
-		next().oneway(data, requestControl);
+		next(requestControl).oneway(data, requestControl);
 	}
 
 	@Override
 	public ResponseFuture<byte[]> request(byte[] data, RequestControl requestControl) throws SailfishException {
-		return next().request(data, requestControl);
+		return next(requestControl).request(data, requestControl);
 	}
 
 	@Override
 	public void request(byte[] data, ResponseCallback<byte[]> callback, RequestControl requestControl)
 			throws SailfishException {
-		next().request(data, callback, requestControl);
+		next(requestControl).request(data, callback, requestControl);
+	}
+
+	@Override
+	public void oneway(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		next(requestControl).oneway(data, requestControl);
+	}
+
+	@Override
+	public ResponseFuture<ByteBuf> request(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		return next(requestControl).request(data, requestControl);
+	}
+
+	@Override
+	public void request(ByteBuf data, ResponseCallback<ByteBuf> callback, RequestControl requestControl)
+			throws SailfishException {
+		next(requestControl).request(data, callback, requestControl);
+	}
+
+	@Override
+	public Future<byte[]> requestAsync(byte[] data, RequestControl requestControl) throws SailfishException {
+		return next(requestControl).requestAsync(data, requestControl);
+	}
+
+	@Override
+	public List<ResponseFuture<byte[]>> requestBatch(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		return next(requestControl).requestBatch(data, requestControl);
+	}
+
+	@Override
+	public Future<List<byte[]>> requestBatchAsync(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		return next(requestControl).requestBatchAsync(data, requestControl);
+	}
+
+	@Override
+	public ResponseStream requestStream(byte[] data, RequestControl requestControl) throws SailfishException {
+		return next(requestControl).requestStream(data, requestControl);
 	}
 
 	@Override
 	public void response(ResponseProtocol response) throws SailfishException {
 		next().response(response);
 	}
+
+	private ExchangeChannel next(RequestControl requestControl) throws SailfishException {
+		Object routingKey = requestControl.routingKey();
+		return null == routingKey ? next() : next(routingKey);
+	}
 }
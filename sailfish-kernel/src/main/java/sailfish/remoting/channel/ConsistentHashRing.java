@@ -0,0 +1,112 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import java.util.Arrays;
+
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+
+/**
+ * consistent hash ring over indexes of {@code channels}, each channel owns {@link #VIRTUAL_NODES} points of the ring
+ * and a routing key goes to the first available owner clockwise from its hash
+ * 
+ * <pre>
+ * --points only depend on channel index, so the ring never changes during the life of its group
+ * --keys of an unavailable channel move to the next owners on the ring, other keys stay where they are, and come
+ *   back once the channel recovers
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: ConsistentHashRing.java, v 0.1 2016年12月10日 上午10:26:41 spccold Exp $
+ */
+final class ConsistentHashRing {
+	static final int VIRTUAL_NODES = 128;
+
+	private final ExchangeChannel[] channels;
+	private final ExchangeChannel[] deadChannels;
+	// sorted
+	private final int[] points;
+	private final int[] owners;
+
+	ConsistentHashRing(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+		this.channels = channels;
+		this.deadChannels = deadChannels;
+
+		long[] nodes = new long[channels.length * VIRTUAL_NODES];
+		for (int index = 0; index < channels.length; index++) {
+			for (int i = 0; i < VIRTUAL_NODES; i++) {
+				int point = mix(index * VIRTUAL_NODES + i);
+				// sort by point, owner in low bits
+				nodes[index * VIRTUAL_NODES + i] = ((long) point << 32) | index;
+			}
+		}
+		Arrays.sort(nodes);
+		this.points = new int[nodes.length];
+		this.owners = new int[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			points[i] = (int) (nodes[i] >> 32);
+			owners[i] = (int) nodes[i];
+		}
+	}
+
+	ExchangeChannel next(Object routingKey) throws SailfishException {
+		int start = Arrays.binarySearch(points, mix(routingKey.hashCode()));
+		if (start < 0) {
+			start = -start - 1;
+		}
+		// owners found dead, each is checked once, bits for the first 64 and an array beyond
+		long deadMask = 0;
+		boolean[] dead = null;
+		int deadCount = 0;
+		for (int i = 0; i < points.length && deadCount < channels.length; i++) {
+			int owner = owners[(start + i) % points.length];
+			if (owner < 64 ? (deadMask & (1L << owner)) != 0 : (null != dead && dead[owner])) {
+				continue;
+			}
+			ExchangeChannel channel = channels[owner];
+			if (null != channel && channel.isAvailable()) {
+				if (null != deadChannels[owner]) {
+					deadChannels[owner] = null;
+				}
+				return channel;
+			}
+			deadChannels[owner] = channel;
+			deadCount++;
+			if (owner < 64) {
+				deadMask |= 1L << owner;
+			} else {
+				if (null == dead) {
+					dead = new boolean[channels.length];
+				}
+				dead[owner] = true;
+			}
+		}
+		throw new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchanger is not available!");
+	}
+
+	// murmur3 finalizer
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -19,13 +19,11 @@ package sailfish.remoting.channel;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
-import sailfish.remoting.exceptions.ExceptionCode;
-import sailfish.remoting.exceptions.SailfishException;
-
 /**
  * Default implementation which uses simple round-robin to choose next
  * {@link ExchangeChannel} until which {@link ExchangeChannel#isAvailable()}
- * return true or all children has been chosen.
+ * return true or all children has been chosen, requests with routing key
+ * are chosen by {@link ConsistentHashRing}.
  * 
  * @author spccold
  * @version $Id: DefaultExchangeChannelChooserFactory.java, v 0.1 2016年11月22日
@@ -50,66 +48,43 @@ public class DefaultExchangeChannelChooserFactory implements ExchangeChannelChoo
 		return (val & -val) == val;
 	}
 
-	private static final class PowerOfTowExchangeChannelChooser implements ExchangeChannelChooser {
+	private static final class PowerOfTowExchangeChannelChooser extends AbstractExchangeChannelChooser {
 		private final AtomicInteger idx = new AtomicInteger();
-		private final ExchangeChannel[] channels;
-		private final ExchangeChannel[] deadChannels;
 
 		PowerOfTowExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
-			this.channels = channels;
-			this.deadChannels = deadChannels;
+			super(channels, deadChannels);
 		}
 
 		@Override
-		public ExchangeChannel next() throws SailfishException {
-			if(channels.length == 1){//one connection check
-				if(null == channels[0]  || !channels[0].isAvailable()){
-					throw new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchanger is not available!");
-				}
-				return channels[0];
-			}
-			
-			int arrayIndex = 0;
+		protected ExchangeChannel choose() {
 			int currentIndex = idx.getAndIncrement();
 			for (int i = 0; i < channels.length; i++) {
-				ExchangeChannel currentChannel = channels[arrayIndex = ((currentIndex++) & channels.length - 1)];
-				if (null != currentChannel && currentChannel.isAvailable()) {
-					if (null != deadChannels[arrayIndex]) {
-						deadChannels[arrayIndex] = null;
-					}
+				ExchangeChannel currentChannel = available((currentIndex++) & channels.length - 1);
+				if (null != currentChannel) {
 					return currentChannel;
 				}
-				deadChannels[arrayIndex] = currentChannel;
 			}
-			throw new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchanger is not available!");
+			return null;
 		}
 	}
 
-	private static final class GenericExchangeChannelChooser implements ExchangeChannelChooser {
+	private static final class GenericExchangeChannelChooser extends AbstractExchangeChannelChooser {
 		private final AtomicInteger idx = new AtomicInteger();
-		private final ExchangeChannel[] channels;
-		private final ExchangeChannel[] deadChannels;
 
 		GenericExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
-			this.channels = channels;
-			this.deadChannels = deadChannels;
+			super(channels, deadChannels);
 		}
 
 		@Override
-		public ExchangeChannel next() throws SailfishException {
-			int arrayIndex = 0;
+		protected ExchangeChannel choose() {
 			int currentIndex = idx.getAndIncrement();
 			for (int i = 0; i < channels.length; i++) {
-				ExchangeChannel currentChannel = channels[arrayIndex = Math.abs((currentIndex++) % channels.length)];
-				if (null != currentChannel && currentChannel.isAvailable()) {
-					if (null != deadChannels[arrayIndex]) {
-						deadChannels[arrayIndex] = null;
-					}
+				ExchangeChannel currentChannel = available(Math.abs((currentIndex++) % channels.length));
+				if (null != currentChannel) {
 					return currentChannel;
 				}
-				deadChannels[arrayIndex] = currentChannel;
 			}
-			throw new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE, "exchanger is not available!");
+			return null;
 		}
 	}
 }
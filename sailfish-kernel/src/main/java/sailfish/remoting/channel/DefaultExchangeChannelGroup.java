@@ -36,16 +36,33 @@ public final class DefaultExchangeChannelGroup extends MultiConnectionsExchangeC
 	public DefaultExchangeChannelGroup(MsgHandler<Protocol> msgHandler, Address address, short connections,
 			int connectTimeout, int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut, boolean lazy,
 			boolean reverseIndex, EventLoopGroup loopGroup, EventExecutorGroup executorGroup) throws SailfishException {
+		this(msgHandler, address, connections, connectTimeout, reconnectInterval, idleTimeout, maxIdleTimeOut, lazy,
+				reverseIndex, loopGroup, executorGroup, DefaultExchangeChannelChooserFactory.INSTANCE);
+	}
+
+	public DefaultExchangeChannelGroup(MsgHandler<Protocol> msgHandler, Address address, short connections,
+			int connectTimeout, int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut, boolean lazy,
+			boolean reverseIndex, EventLoopGroup loopGroup, EventExecutorGroup executorGroup,
+			ExchangeChannelChooserFactory chooserFactory) throws SailfishException {
+		this(msgHandler, address, connections, connectTimeout, reconnectInterval, idleTimeout, maxIdleTimeOut, lazy,
+				reverseIndex, loopGroup, executorGroup, chooserFactory, PipelineLayout.executor);
+	}
+
+	public DefaultExchangeChannelGroup(MsgHandler<Protocol> msgHandler, Address address, short connections,
+			int connectTimeout, int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut, boolean lazy,
+			boolean reverseIndex, EventLoopGroup loopGroup, EventExecutorGroup executorGroup,
+			ExchangeChannelChooserFactory chooserFactory, PipelineLayout layout) throws SailfishException {
 		super(new Tracer(), msgHandler, address, connections, connectTimeout, reconnectInterval, idleTimeout,
-				maxIdleTimeOut, lazy, reverseIndex, null, null, loopGroup, executorGroup);
+				maxIdleTimeOut, lazy, reverseIndex, null, null, loopGroup, executorGroup, chooserFactory, layout);
 	}
 
 	public DefaultExchangeChannelGroup(Tracer tracer, MsgHandler<Protocol> msgHandler, Address address,
 			short connections, int connectTimeout, int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut,
 			boolean lazy, boolean reverseIndex, NegotiateConfig config, ExchangeChannelGroup parentGroup,
-			EventLoopGroup loopGroup, EventExecutorGroup executorGroup) throws SailfishException {
+			EventLoopGroup loopGroup, EventExecutorGroup executorGroup, ExchangeChannelChooserFactory chooserFactory,
+			PipelineLayout layout) throws SailfishException {
 		super(tracer, msgHandler, address, connections, connectTimeout, reconnectInterval, idleTimeout, maxIdleTimeOut,
-				lazy, reverseIndex, config, parentGroup, loopGroup, executorGroup);
+				lazy, reverseIndex, config, parentGroup, loopGroup, executorGroup, chooserFactory, layout);
 	}
 
 	/**
@@ -26,9 +26,14 @@ import sailfish.remoting.exceptions.SailfishException;
  */
 public final class EagerExchangeChannel extends SingleConnctionExchangeChannel {
 
+	/**
+	 * connect by {@link MultiConnectionsExchangeChannelGroup} together with its siblings
+	 */
 	EagerExchangeChannel(Bootstrap bootstrap, ExchangeChannelGroup parent, int reconnectInterval)
 			throws SailfishException {
-		super(bootstrap, parent, reconnectInterval, true);
+		super(bootstrap, parent, reconnectInterval, false);
+		// the initial connect is in flight until the parent updates this channel
+		connecting();
 	}
 
 	@Override
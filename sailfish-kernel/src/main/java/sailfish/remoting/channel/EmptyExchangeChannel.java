@@ -18,14 +18,18 @@
 package sailfish.remoting.channel;
 
 import java.net.SocketAddress;
+import java.util.List;
 import java.util.UUID;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.RequestControl;
 import sailfish.remoting.ResponseCallback;
 import sailfish.remoting.Tracer;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.future.ResponseStream;
 import sailfish.remoting.handler.MsgHandler;
 import sailfish.remoting.protocol.Protocol;
 import sailfish.remoting.protocol.ResponseProtocol;
@@ -84,6 +88,42 @@ public class EmptyExchangeChannel implements ExchangeChannel{
 			throws SailfishException {
 	}
 
+	@Override
+	public void oneway(ByteBuf data, RequestControl requestControl) throws SailfishException {
+	}
+
+	@Override
+	public ResponseFuture<ByteBuf> request(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		return null;
+	}
+
+	@Override
+	public void request(ByteBuf data, ResponseCallback<ByteBuf> callback, RequestControl requestControl)
+			throws SailfishException {
+	}
+
+	@Override
+	public Future<byte[]> requestAsync(byte[] data, RequestControl requestControl) throws SailfishException {
+		return null;
+	}
+
+	@Override
+	public List<ResponseFuture<byte[]>> requestBatch(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		return null;
+	}
+
+	@Override
+	public Future<List<byte[]>> requestBatchAsync(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		return null;
+	}
+
+	@Override
+	public ResponseStream requestStream(byte[] data, RequestControl requestControl) throws SailfishException {
+		return null;
+	}
+
 	@Override
 	public void response(ResponseProtocol response) throws SailfishException {
 	}
@@ -93,6 +133,11 @@ public class EmptyExchangeChannel implements ExchangeChannel{
 		return this;
 	}
 
+	@Override
+	public ExchangeChannel next(Object routingKey) {
+		return this;
+	}
+
 	@Override
 	public ExchangeChannelGroup parent() {
 		return null;
@@ -108,6 +153,11 @@ public class EmptyExchangeChannel implements ExchangeChannel{
 		return null;
 	}
 
+	@Override
+	public Future<Channel> connectAsync() {
+		return null;
+	}
+
 	@Override
 	public void recover() {
 	}
@@ -121,4 +171,19 @@ public class EmptyExchangeChannel implements ExchangeChannel{
 	public SocketAddress remoteAdress() {
 		return null;
 	}
+
+	@Override
+	public int pendingRequests() {
+		return 0;
+	}
+
+	@Override
+	public long bytesBeforeUnwritable() {
+		return 0;
+	}
+
+	@Override
+	public long ewmaLatency() {
+		return 0;
+	}
 }
@@ -0,0 +1,118 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.util.internal.MathUtil;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * choose the available {@link ExchangeChannel} with the lowest {@link ExchangeChannel#ewmaLatency()} weighted by its
+ * pending requests, one of every {@code probeInterval} choices goes round-robin, so a slow channel keeps getting
+ * latency samples and can win again after it recovers
+ * 
+ * <pre>
+ * --latency is sampled from Tracer.trace to Tracer.erase, a timed out request counts as its timeout
+ * --channel never sampled is assumed to be as fast as the mean of sampled ones, so a new or reconnected channel
+ *   doesn't take all traffic before its first samples arrive
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: EwmaLatencyExchangeChannelChooserFactory.java, v 0.1 2016年12月9日 下午2:12:06 spccold Exp $
+ */
+public class EwmaLatencyExchangeChannelChooserFactory implements ExchangeChannelChooserFactory {
+	private static final int DEFAULT_PROBE_INTERVAL = 64;
+
+	public static final EwmaLatencyExchangeChannelChooserFactory INSTANCE = new EwmaLatencyExchangeChannelChooserFactory(
+			DEFAULT_PROBE_INTERVAL);
+
+	private final int probeInterval;
+
+	/**
+	 * @param probeInterval
+	 *            rounded up to power of two
+	 */
+	public EwmaLatencyExchangeChannelChooserFactory(int probeInterval) {
+		ParameterChecker.checkPositive(probeInterval, "probeInterval");
+		this.probeInterval = MathUtil.safeFindNextPositivePowerOfTwo(probeInterval);
+	}
+
+	@Override
+	public ExchangeChannelChooser newChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+		return new EwmaLatencyExchangeChannelChooser(channels, deadChannels, probeInterval);
+	}
+
+	private static final class EwmaLatencyExchangeChannelChooser extends AbstractExchangeChannelChooser {
+		private final AtomicInteger idx = new AtomicInteger();
+		private final AtomicInteger probeIdx = new AtomicInteger();
+		private final int probeMask;
+
+		EwmaLatencyExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels,
+				int probeInterval) {
+			super(channels, deadChannels);
+			this.probeMask = probeInterval - 1;
+		}
+
+		@Override
+		protected ExchangeChannel choose() {
+			int current = idx.getAndIncrement();
+			if ((current & probeMask) == 0) {
+				ExchangeChannel probe = available((probeIdx.getAndIncrement() & Integer.MAX_VALUE) % channels.length);
+				if (null != probe) {
+					return probe;
+				}
+			}
+			return leastLoaded((current & Integer.MAX_VALUE) % channels.length, meanLatency());
+		}
+
+		private ExchangeChannel leastLoaded(int start, long meanLatency) {
+			ExchangeChannel chosen = null;
+			long minLoad = Long.MAX_VALUE;
+			for (int i = 0; i < channels.length; i++) {
+				ExchangeChannel channel = available((start + i) % channels.length);
+				if (null == channel) {
+					continue;
+				}
+				long latency = channel.ewmaLatency();
+				long load = (latency > 0 ? latency : meanLatency) * (channel.pendingRequests() + 1);
+				if (load < minLoad) {
+					chosen = channel;
+					minLoad = load;
+				}
+			}
+			return chosen;
+		}
+
+		/**
+		 * @return mean latency of sampled channels, {@code 0} if none is sampled
+		 */
+		private long meanLatency() {
+			long sum = 0;
+			int sampled = 0;
+			for (ExchangeChannel channel : channels) {
+				long latency = (null != channel ? channel.ewmaLatency() : 0);
+				if (latency > 0) {
+					sum += latency;
+					sampled++;
+				}
+			}
+			return sampled == 0 ? 0 : sum / sampled;
+		}
+	}
+}
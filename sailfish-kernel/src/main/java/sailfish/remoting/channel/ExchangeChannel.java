@@ -20,6 +20,7 @@ package sailfish.remoting.channel;
 import java.net.SocketAddress;
 
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.exceptions.SailfishException;
 
 /**
@@ -33,6 +34,12 @@ public interface ExchangeChannel extends ExchangeChannelGroup{
     @Override
     ExchangeChannel next();
 
+    /**
+     * Returns a reference to itself.
+     */
+    @Override
+    ExchangeChannel next(Object routingKey);
+
     /**
      * Return the {@link ExchangeChannelGroup} which is the parent of this {@link ExchangeChannel},
      */
@@ -52,11 +59,32 @@ public interface ExchangeChannel extends ExchangeChannelGroup{
      */
     Channel doConnect() throws SailfishException;
     
+    /**
+     * connect to remote peer without blocking, the returned {@link Future} succeeds with the negotiated
+     * {@link Channel} which is not yet bound to this {@link ExchangeChannel}, See {@link #update(Channel)}
+     */
+    Future<Channel> connectAsync();
+    
     /**
      * recover this {@link ExchangeChannel} if {@link #isAvailable()} return false
      */
     void recover();
     
+    /**
+     * number of requests sent by this {@link ExchangeChannel} which are still waiting for response
+     */
+    int pendingRequests();
+    
+    /**
+     * bytes can be written until underlying {@link Channel#isWritable()} returns false, zero if not writable
+     */
+    long bytesBeforeUnwritable();
+    
+    /**
+     * exponentially weighted moving average of response latency in nanoseconds, zero if never sampled
+     */
+    long ewmaLatency();
+    
     SocketAddress localAddress();
     SocketAddress remoteAdress();
 }
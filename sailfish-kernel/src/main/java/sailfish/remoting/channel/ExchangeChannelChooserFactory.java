@@ -40,5 +40,11 @@ public interface ExchangeChannelChooserFactory {
          * Returns the new {@link ExchangeChannel} to use.
          */
         ExchangeChannel next() throws SailfishException;
+
+        /**
+         * Returns the {@link ExchangeChannel} for {@code routingKey}, requests with the same key go to the same
+         * {@link ExchangeChannel} as long as it is available.
+         */
+        ExchangeChannel next(Object routingKey) throws SailfishException;
     }
 }
@@ -53,6 +53,12 @@ public interface ExchangeChannelGroup extends Endpoint, MessageExchangePattern{
      */
     ExchangeChannel next() throws SailfishException;
     
+    /**
+     * Returns the {@link ExchangeChannel} for {@code routingKey}, same key maps to same {@link ExchangeChannel} while
+     * it is available, {@code null} key means no affinity.
+     */
+    ExchangeChannel next(Object routingKey) throws SailfishException;
+    
     /**
      * Return the {@link MsgHandler} of this {@link ExchangeChannelGroup} which used for process {@link ResponseProtocol} 
      * sent by the {@link ExchangeChannelGroup}
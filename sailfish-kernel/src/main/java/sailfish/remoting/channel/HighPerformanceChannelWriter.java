@@ -18,24 +18,58 @@
 package sailfish.remoting.channel;
 
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.netty.channel.Channel;
 import io.netty.util.Attribute;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
 import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.SystemPropertyUtil;
 import sailfish.remoting.constants.ChannelAttrKeys;
 import sailfish.remoting.protocol.Protocol;
+import sailfish.remoting.utils.ParameterChecker;
 
 /**
  * <pre>
  * 	<a href="https://github.com/netty/netty/issues/1759">Optimize writeAndFlush</a>
  * 	<a href="https://github.com/stepancheg/netty-td">netty-td</a>
  * </pre>
- * 
+ *
+ * flow control
+ * <pre>
+ * --pending protocols are bounded by {@code maxPendingMessages} and {@code maxPendingBytes}(by
+ *   {@link Protocol#frameLength()}), {@link #tryWrite(Channel, Protocol)} fails once the bound is reached, a single
+ *   protocol larger than {@code maxPendingBytes} is accepted only when nothing is pending
+ * --draining stops while the channel is not writable and resumes on {@link #writabilityChanged(Channel)}, so a slow
+ *   peer fills this writer instead of the outbound buffer of netty
+ * --{@link #capacityFuture(int)} completes once the writer accepts protocols again, {@link #write(Channel, Protocol, long)}
+ *   waits on it
+ * </pre>
+ *
  * @author spccold
  * @version $Id: HighPerformanceChannelWriter.java, v 0.1 2016年11月30日 下午10:10:40 spccold Exp $
  */
 public class HighPerformanceChannelWriter {
+	private static final Logger logger = LoggerFactory.getLogger(HighPerformanceChannelWriter.class);
+
+	private static final int DEFAULT_MAX_PENDING_MESSAGES;
+	private static final long DEFAULT_MAX_PENDING_BYTES;
+	static {
+		DEFAULT_MAX_PENDING_MESSAGES = Math.max(1,
+				SystemPropertyUtil.getInt("sailfish.highPerformanceWriter.maxPendingMessages", 8192));
+		DEFAULT_MAX_PENDING_BYTES = Math.max(1,
+				SystemPropertyUtil.getLong("sailfish.highPerformanceWriter.maxPendingBytes", 8 * 1024 * 1024));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.highPerformanceWriter.maxPendingMessages: {}", DEFAULT_MAX_PENDING_MESSAGES);
+			logger.debug("-Dsailfish.highPerformanceWriter.maxPendingBytes: {}", DEFAULT_MAX_PENDING_BYTES);
+		}
+	}
 
 	/**
 	 *  task for "merge" all pending flushes
@@ -45,22 +79,70 @@ public class HighPerformanceChannelWriter {
 	private final AtomicInteger state = new AtomicInteger();
 	// lock free(See https://github.com/spccold/JCTools)
 	private final Queue<Protocol> queue = PlatformDependent.newMpscQueue();
+	// callers waiting for capacity
+	private final Queue<Promise<Void>> waiters = PlatformDependent.newMpscQueue();
+
+	private final AtomicInteger pendingMessages = new AtomicInteger();
+	private final AtomicLong pendingBytes = new AtomicLong();
+	private final int maxPendingMessages;
+	private final long maxPendingBytes;
 
 	private final Channel channel;
 
 	public HighPerformanceChannelWriter(Channel channel) {
-		this.channel = channel;
+		this(channel, DEFAULT_MAX_PENDING_MESSAGES, DEFAULT_MAX_PENDING_BYTES);
+	}
+
+	public HighPerformanceChannelWriter(Channel channel, int maxPendingMessages, long maxPendingBytes) {
+		this.channel = ParameterChecker.checkNotNull(channel, "channel");
+		this.maxPendingMessages = ParameterChecker.checkPositive(maxPendingMessages, "maxPendingMessages");
+		this.maxPendingBytes = ParameterChecker.checkPositive(maxPendingBytes, "maxPendingBytes");
+	}
+
+	/**
+	 * @return {@code false} if the writer of {@code channel} is full, {@code protocol} is still owned by caller
+	 */
+	public static boolean tryWrite(Channel channel, Protocol protocol) {
+		return getWriter(channel).tryWrite(protocol);
 	}
 
-	public static void write(Channel channel, Protocol protocol) {
+	/**
+	 * wait up to {@code timeoutMillis} for capacity if the writer of {@code channel} is full, must not be invoked in
+	 * the event loop of {@code channel}
+	 *
+	 * @return {@code false} if still full after {@code timeoutMillis}, {@code protocol} is still owned by caller
+	 */
+	public static boolean write(Channel channel, Protocol protocol, long timeoutMillis) {
 		final HighPerformanceChannelWriter highPerformanceWriter = getWriter(channel);
-		highPerformanceWriter.queue.add(protocol);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (;;) {
+			if (highPerformanceWriter.tryWrite(protocol)) {
+				return true;
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0
+					|| !highPerformanceWriter.capacityFuture(protocol.frameLength()).awaitUninterruptibly(remaining,
+							TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * resume draining once {@code channel} becomes writable again, invoked by
+	 * {@link io.netty.channel.ChannelInboundHandler#channelWritabilityChanged}
+	 */
+	public static void writabilityChanged(Channel channel) {
+		HighPerformanceChannelWriter highPerformanceWriter = channel.attr(ChannelAttrKeys.highPerformanceWriter).get();
+		if (null == highPerformanceWriter || !channel.isWritable() || highPerformanceWriter.queue.isEmpty()) {
+			return;
+		}
 		if (highPerformanceWriter.addTask()) {
 			channel.eventLoop().execute(highPerformanceWriter.writeAndFlushTask);
 		}
 	}
 
-	private static HighPerformanceChannelWriter getWriter(Channel channel) {
+	public static HighPerformanceChannelWriter getWriter(Channel channel) {
 		Attribute<HighPerformanceChannelWriter> attr = channel.attr(ChannelAttrKeys.highPerformanceWriter);
 		HighPerformanceChannelWriter writer = attr.get();
 		if (null == writer) {
@@ -72,14 +154,108 @@ public class HighPerformanceChannelWriter {
 		return writer;
 	}
 
+	public boolean tryWrite(Protocol protocol) {
+		int length = protocol.frameLength();
+		int messages = pendingMessages.incrementAndGet();
+		long bytes = pendingBytes.addAndGet(length);
+		if (messages > 1 && (messages > maxPendingMessages || bytes > maxPendingBytes)) {
+			release(length);
+			return false;
+		}
+		queue.add(protocol);
+		if (addTask()) {
+			channel.eventLoop().execute(writeAndFlushTask);
+		}
+		return true;
+	}
+
+	/**
+	 * @return a {@link Future} which succeeds once this writer has capacity
+	 */
+	public Future<Void> capacityFuture() {
+		return capacityFuture(0);
+	}
+
+	/**
+	 * @return a {@link Future} which succeeds once this writer has capacity for a frame of {@code frameLength}
+	 */
+	public Future<Void> capacityFuture(int frameLength) {
+		if (hasCapacity(frameLength)) {
+			return channel.eventLoop().newSucceededFuture(null);
+		}
+		Promise<Void> promise = channel.eventLoop().newPromise();
+		waiters.add(promise);
+		// draining may have finished before promise was added
+		if (hasCapacity(frameLength)) {
+			promise.trySuccess(null);
+		}
+		return promise;
+	}
+
+	/**
+	 * @return protocols waiting to be written to channel
+	 */
+	public int pendingMessages() {
+		return pendingMessages.get();
+	}
+
+	/**
+	 * @return total frame length of protocols waiting to be written to channel
+	 */
+	public long pendingBytes() {
+		return pendingBytes.get();
+	}
+
+	private boolean hasCapacity(int frameLength) {
+		int messages = pendingMessages.get();
+		return messages == 0 || (messages < maxPendingMessages && pendingBytes.get() + frameLength <= maxPendingBytes);
+	}
+
+	private void release(int length) {
+		pendingMessages.decrementAndGet();
+		pendingBytes.addAndGet(-length);
+	}
+
 	private void writeAndFlush() {
 		while (fetchTask()) {
 			Protocol protocol = null;
-			while (null != (protocol = queue.poll())) {
-				channel.write(protocol, channel.voidPromise());
+			while (writable() && null != (protocol = queue.poll())) {
+				int length = protocol.frameLength();
+				if (channel.isActive()) {
+					// protocol will be recycled after written
+					channel.write(protocol, channel.voidPromise());
+				} else {
+					// netty would drop it without recycling, its ByteBuf body leaks
+					protocol.recycle();
+				}
+				release(length);
+			}
+			if (!writable()) {
+				// wait for channelWritabilityChanged, recheck in case it has been missed while running
+				state.set(State.WAITING.ordinal());
+				writabilityChanged(channel);
+				break;
 			}
 		}
 		channel.flush();
+		notifyWaiters();
+	}
+
+	/**
+	 * closed channel is treated as writable, pending protocols will be recycled at once
+	 */
+	private boolean writable() {
+		return channel.isWritable() || !channel.isActive();
+	}
+
+	private void notifyWaiters() {
+		if (waiters.isEmpty() || !hasCapacity(0)) {
+			return;
+		}
+		Promise<Void> promise = null;
+		while (null != (promise = waiters.poll())) {
+			promise.trySuccess(null);
+		}
 	}
 
 	/**
@@ -110,6 +286,13 @@ public class HighPerformanceChannelWriter {
 		return old == State.WAITING.ordinal();
 	}
 
+	@Override
+	public String toString() {
+		return "HighPerformanceChannelWriter [pendingMessages=" + pendingMessages() + ", pendingBytes="
+				+ pendingBytes() + ", maxPendingMessages=" + maxPendingMessages + ", maxPendingBytes="
+				+ maxPendingBytes + "]";
+	}
+
 	static final class WriteAndFlushTask implements Runnable {
 
 		private final HighPerformanceChannelWriter writer;
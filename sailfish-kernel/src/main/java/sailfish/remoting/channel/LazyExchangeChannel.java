@@ -17,11 +17,16 @@
  */
 package sailfish.remoting.channel;
 
+import java.util.List;
+
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.RequestControl;
 import sailfish.remoting.ResponseCallback;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.future.ResponseStream;
 
 /**
  * @author spccold
@@ -55,6 +60,51 @@ public final class LazyExchangeChannel extends SingleConnctionExchangeChannel {
 		super.request(data, callback, requestControl);
 	}
 
+	@Override
+	public void oneway(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		initChannel();
+		super.oneway(data, requestControl);
+	}
+
+	@Override
+	public ResponseFuture<ByteBuf> request(ByteBuf data, RequestControl requestControl) throws SailfishException {
+		initChannel();
+		return super.request(data, requestControl);
+	}
+
+	@Override
+	public void request(ByteBuf data, ResponseCallback<ByteBuf> callback, RequestControl requestControl)
+			throws SailfishException {
+		initChannel();
+		super.request(data, callback, requestControl);
+	}
+
+	@Override
+	public Future<byte[]> requestAsync(byte[] data, RequestControl requestControl) throws SailfishException {
+		initChannel();
+		return super.requestAsync(data, requestControl);
+	}
+
+	@Override
+	public List<ResponseFuture<byte[]>> requestBatch(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		initChannel();
+		return super.requestBatch(data, requestControl);
+	}
+
+	@Override
+	public Future<List<byte[]>> requestBatchAsync(List<byte[]> data, RequestControl requestControl)
+			throws SailfishException {
+		initChannel();
+		return super.requestBatchAsync(data, requestControl);
+	}
+
+	@Override
+	public ResponseStream requestStream(byte[] data, RequestControl requestControl) throws SailfishException {
+		initChannel();
+		return super.requestStream(data, requestControl);
+	}
+
 	private void initChannel() throws SailfishException {
 		if (null != channel) {
 			return;
@@ -0,0 +1,52 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * choose the available {@link ExchangeChannel} with the least pending requests, so a connection stuck behind slow
+ * responses stops taking new traffic, ties are broken by round-robin
+ * 
+ * @author spccold
+ * @version $Id: LeastPendingExchangeChannelChooserFactory.java, v 0.1 2016年12月8日 上午10:40:12 spccold Exp $
+ */
+public class LeastPendingExchangeChannelChooserFactory implements ExchangeChannelChooserFactory {
+
+	public static final LeastPendingExchangeChannelChooserFactory INSTANCE = new LeastPendingExchangeChannelChooserFactory();
+
+	private LeastPendingExchangeChannelChooserFactory() { }
+
+	@Override
+	public ExchangeChannelChooser newChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+		return new LeastPendingExchangeChannelChooser(channels, deadChannels);
+	}
+
+	private static final class LeastPendingExchangeChannelChooser extends AbstractExchangeChannelChooser {
+		private final AtomicInteger idx = new AtomicInteger();
+
+		LeastPendingExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+			super(channels, deadChannels);
+		}
+
+		@Override
+		protected ExchangeChannel choose() {
+			return leastLoaded((idx.getAndIncrement() & Integer.MAX_VALUE) % channels.length);
+		}
+	}
+}
@@ -17,10 +17,15 @@
  */
 package sailfish.remoting.channel;
 
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.RequestControl;
 import sailfish.remoting.ResponseCallback;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.future.ResponseStream;
 import sailfish.remoting.protocol.ResponseProtocol;
 
 /**
@@ -30,6 +35,9 @@ import sailfish.remoting.protocol.ResponseProtocol;
  * <a href="https://en.wikipedia.org/wiki/Request%E2%80%93response">Request–response</a>
  * </pre>
  * 
+ * methods with {@link ByteBuf} data are zero-copy variants, the ownership of data is transferred to sailfish
+ * and it will be released after written to remote peer, response {@link ByteBuf} belongs to caller
+ * 
  * @author spccold
  * @version $Id: MessageExchangePattern.java, v 0.1 2016年11月24日 下午5:45:03 spccold Exp $
  */
@@ -50,5 +58,44 @@ public interface MessageExchangePattern {
      */
     void request(byte[] data, ResponseCallback<byte[]> callback, RequestControl requestControl) throws SailfishException;
     
+    /**
+     * zero-copy one-way pattern
+     */
+    void oneway(ByteBuf data, RequestControl requestControl) throws SailfishException;
+    
+    /**
+     * zero-copy request–response pattern, caller must release the response {@link ByteBuf}
+     */
+    ResponseFuture<ByteBuf> request(ByteBuf data, RequestControl requestControl) throws SailfishException;
+    
+    /**
+     * zero-copy callback request via request–response pattern, callback must release the response {@link ByteBuf}
+     */
+    void request(ByteBuf data, ResponseCallback<ByteBuf> callback, RequestControl requestControl) throws SailfishException;
+    
+    /**
+     * asynchronous request–response pattern, returned {@link Future} is completed without monitor and can be
+     * composed by listeners, listeners run on the io thread if {@link RequestControl#inlineCompletion()}
+     */
+    Future<byte[]> requestAsync(byte[] data, RequestControl requestControl) throws SailfishException;
+    
+    /**
+     * batched request–response pattern, all items are written to one channel within one frame, the returned
+     * futures are in the order of {@code data}
+     */
+    List<ResponseFuture<byte[]>> requestBatch(List<byte[]> data, RequestControl requestControl) throws SailfishException;
+    
+    /**
+     * asynchronous batched request–response pattern, returned {@link Future} completes with responses in the order
+     * of {@code data}, or fails as soon as any item fails
+     */
+    Future<List<byte[]>> requestBatchAsync(List<byte[]> data, RequestControl requestControl) throws SailfishException;
+    
+    /**
+     * request–stream pattern, the server answers with chunks pulled by {@link ResponseStream#next()}, at most
+     * {@link RequestControl#streamCredits()} chunks are buffered
+     */
+    ResponseStream requestStream(byte[] data, RequestControl requestControl) throws SailfishException;
+    
     void response(ResponseProtocol response) throws SailfishException;
 }
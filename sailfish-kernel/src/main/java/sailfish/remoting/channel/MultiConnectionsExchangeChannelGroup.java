@@ -17,9 +17,17 @@
  */
 package sailfish.remoting.channel;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import sailfish.remoting.Address;
 import sailfish.remoting.Tracer;
 import sailfish.remoting.configuration.NegotiateConfig;
@@ -39,11 +47,13 @@ public abstract class MultiConnectionsExchangeChannelGroup extends AbstractConfi
 	private final ExchangeChannelChooserFactory.ExchangeChannelChooser chooser;
 	private final MsgHandler<Protocol> msgHandler;
 	private final Tracer tracer;
+	private final Future<ExchangeChannelGroup> connectFuture;
 
 	protected MultiConnectionsExchangeChannelGroup(Tracer tracer, MsgHandler<Protocol> msgHandler, Address address,
 			short connections, int connectTimeout, int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut,
 			boolean lazy, boolean reverseIndex, NegotiateConfig config, ExchangeChannelGroup parentGroup,
-			EventLoopGroup loopGroup, EventExecutorGroup executorGroup) throws SailfishException {
+			EventLoopGroup loopGroup, EventExecutorGroup executorGroup, ExchangeChannelChooserFactory chooserFactory,
+			PipelineLayout layout) throws SailfishException {
 
 		this.tracer = tracer;
 		this.msgHandler = msgHandler;
@@ -61,7 +71,8 @@ public abstract class MultiConnectionsExchangeChannelGroup extends AbstractConfi
 			boolean success = false;
 			final NegotiateConfig deepCopy = config.deepCopy().index(i);
 			parentGroup = (null == parentGroup ? this : parentGroup);
-			bootstrap = configureBoostrap(address, connectTimeout, deepCopy, parentGroup, loopGroup, executorGroup);
+			bootstrap = configureBoostrap(address, connectTimeout, deepCopy, parentGroup, loopGroup, executorGroup,
+					layout);
 			try {
 				children[i] = newChild(parentGroup, bootstrap, reconnectInterval, lazy, deepCopy.isRead());
 				success = true;
@@ -74,7 +85,58 @@ public abstract class MultiConnectionsExchangeChannelGroup extends AbstractConfi
 			}
 		}
 
-		chooser = DefaultExchangeChannelChooserFactory.INSTANCE.newChooser(children, deadChildren);
+		chooser = chooserFactory.newChooser(children, deadChildren);
+		connectFuture = connectChildren();
+	}
+
+	/**
+	 * connect and negotiate all eager children concurrently, startup costs about one round trip instead of one per
+	 * connection
+	 */
+	private Future<ExchangeChannelGroup> connectChildren() {
+		final Promise<ExchangeChannelGroup> promise = GlobalEventExecutor.INSTANCE.newPromise();
+		final AtomicInteger remain = new AtomicInteger(children.length);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		for (final ExchangeChannel child : children) {
+			if (child instanceof LazyExchangeChannel) {
+				connected(promise, remain, failure);
+				continue;
+			}
+			child.connectAsync().addListener(new FutureListener<Channel>() {
+				@Override
+				public void operationComplete(Future<Channel> future) throws Exception {
+					if (future.isSuccess()) {
+						child.update(future.getNow());
+					} else {
+						failure.compareAndSet(null, future.cause());
+					}
+					connected(promise, remain, failure);
+				}
+			});
+		}
+		return promise;
+	}
+
+	private void connected(Promise<ExchangeChannelGroup> promise, AtomicInteger remain,
+			AtomicReference<Throwable> failure) {
+		if (remain.decrementAndGet() != 0) {
+			return;
+		}
+		Throwable cause = failure.get();
+		if (null == cause) {
+			promise.setSuccess(this);
+			return;
+		}
+		// close connected siblings
+		close(0);
+		promise.setFailure(cause instanceof SailfishException ? cause : new SailfishException(cause));
+	}
+
+	/**
+	 * succeeds with this group once all eager children are connected, or fails after the group is closed
+	 */
+	public Future<ExchangeChannelGroup> connectFuture() {
+		return connectFuture;
 	}
 
 	@Override
@@ -82,6 +144,14 @@ public abstract class MultiConnectionsExchangeChannelGroup extends AbstractConfi
 		return chooser.next();
 	}
 
+	@Override
+	public ExchangeChannel next(Object routingKey) throws SailfishException {
+		if (null == routingKey) {
+			return chooser.next();
+		}
+		return chooser.next(routingKey);
+	}
+
 	/**
 	 * Return the number of {@link ExchangeChannel} this implementation uses. This number is the
 	 * maps 1:1 to the connections it use.
@@ -0,0 +1,96 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
+import sailfish.remoting.codec.FragmentEncoder;
+import sailfish.remoting.codec.RemotingDecoder;
+import sailfish.remoting.codec.RemotingEncoder;
+import sailfish.remoting.handler.ConcreteRequestHandler;
+import sailfish.remoting.handler.FlushConsolidationHandler;
+import sailfish.remoting.handler.HeartbeatChannelHandler;
+import sailfish.remoting.handler.NegotiateChannelHandler;
+
+/**
+ * where the handlers of client and server side pipeline run
+ *
+ * @author spccold
+ * @version $Id: PipelineLayout.java, v 0.1 2016年12月16日 上午10:12:40 spccold Exp $
+ */
+public enum PipelineLayout {
+	/**
+	 * every handler bind to executorGroup, every read and write hops between event loop and executorGroup
+	 */
+	executor {
+		@Override
+		public void addHandlers(ChannelPipeline pipeline, EventExecutorGroup executorGroup, byte idleTimeout) {
+			addFlushConsolidation(pipeline);
+			addFragmentEncoder(pipeline);
+			pipeline.addLast(executorGroup,
+					RemotingEncoder.INSTANCE,
+					new RemotingDecoder(),
+					new IdleStateHandler(idleTimeout, 0, 0),
+					HeartbeatChannelHandler.INSTANCE,
+					NegotiateChannelHandler.INSTANCE,
+					ConcreteRequestHandler.INSTANCE);
+		}
+	},
+	/**
+	 * framing, decoding, encoding, heartbeat and negotiation run on event loop, only dispatch of decoded
+	 * request/response crosses to executorGroup
+	 */
+	io {
+		@Override
+		public void addHandlers(ChannelPipeline pipeline, EventExecutorGroup executorGroup, byte idleTimeout) {
+			addFlushConsolidation(pipeline);
+			addFragmentEncoder(pipeline);
+			pipeline.addLast(
+					RemotingEncoder.INSTANCE,
+					new RemotingDecoder(),
+					new IdleStateHandler(idleTimeout, 0, 0),
+					HeartbeatChannelHandler.INSTANCE,
+					NegotiateChannelHandler.INSTANCE);
+			pipeline.addLast(executorGroup, ConcreteRequestHandler.INSTANCE);
+		}
+	},
+	;
+
+	public abstract void addHandlers(ChannelPipeline pipeline, EventExecutorGroup executorGroup, byte idleTimeout);
+
+	/**
+	 * first handler on event loop, so it sees every encoded frame and flush of the channel
+	 */
+	private static void addFlushConsolidation(ChannelPipeline pipeline) {
+		FlushConsolidationHandler flushConsolidation = FlushConsolidationHandler.newDefault();
+		if (null != flushConsolidation) {
+			pipeline.addLast(flushConsolidation);
+		}
+	}
+
+	/**
+	 * on event loop and before encoder, so it cuts encoded frames and its rounds interleave with other writes
+	 */
+	private static void addFragmentEncoder(ChannelPipeline pipeline) {
+		FragmentEncoder fragmentEncoder = FragmentEncoder.newDefault();
+		if (null != fragmentEncoder) {
+			pipeline.addLast(fragmentEncoder);
+		}
+	}
+}
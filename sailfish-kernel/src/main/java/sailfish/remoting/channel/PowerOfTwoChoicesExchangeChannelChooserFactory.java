@@ -0,0 +1,63 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * pick two random {@link ExchangeChannel}s and take the one with less pending requests, nearly as good as least
+ * pending but reads only two counters, falls back to scanning all channels when neither sample is available
+ * 
+ * @author spccold
+ * @version $Id: PowerOfTwoChoicesExchangeChannelChooserFactory.java, v 0.1 2016年12月8日 上午10:52:47 spccold Exp $
+ */
+public class PowerOfTwoChoicesExchangeChannelChooserFactory implements ExchangeChannelChooserFactory {
+
+	public static final PowerOfTwoChoicesExchangeChannelChooserFactory INSTANCE = new PowerOfTwoChoicesExchangeChannelChooserFactory();
+
+	private PowerOfTwoChoicesExchangeChannelChooserFactory() { }
+
+	@Override
+	public ExchangeChannelChooser newChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+		return new PowerOfTwoChoicesExchangeChannelChooser(channels, deadChannels);
+	}
+
+	private static final class PowerOfTwoChoicesExchangeChannelChooser extends AbstractExchangeChannelChooser {
+
+		PowerOfTwoChoicesExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+			super(channels, deadChannels);
+		}
+
+		@Override
+		protected ExchangeChannel choose() {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(channels.length);
+			// distinct from first
+			int second = (first + 1 + random.nextInt(channels.length - 1)) % channels.length;
+			ExchangeChannel a = available(first);
+			ExchangeChannel b = available(second);
+			if (null == a) {
+				return null != b ? b : leastLoaded(first);
+			}
+			if (null == b) {
+				return a;
+			}
+			return load(b) < load(a) ? b : a;
+		}
+	}
+}
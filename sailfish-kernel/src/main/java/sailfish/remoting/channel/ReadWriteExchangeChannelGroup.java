@@ -24,6 +24,10 @@ import org.slf4j.LoggerFactory;
 
 import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import sailfish.remoting.Address;
 import sailfish.remoting.Tracer;
 import sailfish.remoting.configuration.NegotiateConfig;
@@ -43,26 +47,78 @@ public class ReadWriteExchangeChannelGroup extends AbstractExchangeChannelGroup
 
 	private final MsgHandler<Protocol> msgHandler;
 	private final Tracer tracer;
+	private final Future<ExchangeChannelGroup> connectFuture;
 
 	public ReadWriteExchangeChannelGroup(MsgHandler<Protocol> msgHandler, Address address, int connectTimeout,
 			int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut, boolean lazy, short connections,
 			short writeConnections, boolean reverseIndex, EventLoopGroup loopGroup, EventExecutorGroup executorGroup)
 			throws SailfishException {
+		this(msgHandler, address, connectTimeout, reconnectInterval, idleTimeout, maxIdleTimeOut, lazy, connections,
+				writeConnections, reverseIndex, loopGroup, executorGroup, DefaultExchangeChannelChooserFactory.INSTANCE);
+	}
+
+	public ReadWriteExchangeChannelGroup(MsgHandler<Protocol> msgHandler, Address address, int connectTimeout,
+			int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut, boolean lazy, short connections,
+			short writeConnections, boolean reverseIndex, EventLoopGroup loopGroup, EventExecutorGroup executorGroup,
+			ExchangeChannelChooserFactory chooserFactory) throws SailfishException {
+		this(msgHandler, address, connectTimeout, reconnectInterval, idleTimeout, maxIdleTimeOut, lazy, connections,
+				writeConnections, reverseIndex, loopGroup, executorGroup, chooserFactory, PipelineLayout.executor);
+	}
+
+	public ReadWriteExchangeChannelGroup(MsgHandler<Protocol> msgHandler, Address address, int connectTimeout,
+			int reconnectInterval, byte idleTimeout, byte maxIdleTimeOut, boolean lazy, short connections,
+			short writeConnections, boolean reverseIndex, EventLoopGroup loopGroup, EventExecutorGroup executorGroup,
+			ExchangeChannelChooserFactory chooserFactory, PipelineLayout layout) throws SailfishException {
 		super(UUID.randomUUID());
 		this.msgHandler = msgHandler;
 		this.tracer = new Tracer();
 
 		NegotiateConfig readConfig = new NegotiateConfig(idleTimeout, maxIdleTimeOut, id(), ChannelType.read.code(),
 				connections, writeConnections, (short) 0, reverseIndex);
-		this.readGroup = new DefaultExchangeChannelGroup(tracer, msgHandler, address,
+		DefaultExchangeChannelGroup readGroup = new DefaultExchangeChannelGroup(tracer, msgHandler, address,
 				(short) (connections - writeConnections), connectTimeout, reconnectInterval, idleTimeout,
-				maxIdleTimeOut, lazy, reverseIndex, readConfig, this, loopGroup, executorGroup);
+				maxIdleTimeOut, lazy, reverseIndex, readConfig, this, loopGroup, executorGroup,
+				chooserFactory, layout);
 
 		NegotiateConfig writeConfig = new NegotiateConfig(idleTimeout, maxIdleTimeOut, id(), ChannelType.write.code(),
 				connections, writeConnections, (short) 0, reverseIndex);
-		this.writeGroup = new DefaultExchangeChannelGroup(tracer, msgHandler, address, writeConnections, connectTimeout,
+		DefaultExchangeChannelGroup writeGroup = new DefaultExchangeChannelGroup(tracer, msgHandler, address, writeConnections, connectTimeout,
 				reconnectInterval, idleTimeout, maxIdleTimeOut, lazy, reverseIndex, writeConfig, this, loopGroup,
-				executorGroup);
+				executorGroup, chooserFactory, layout);
+		this.readGroup = readGroup;
+		this.writeGroup = writeGroup;
+		this.connectFuture = connectFuture(readGroup.connectFuture(), writeGroup.connectFuture());
+	}
+
+	private Future<ExchangeChannelGroup> connectFuture(Future<ExchangeChannelGroup> readConnected,
+			final Future<ExchangeChannelGroup> writeConnected) {
+		final Promise<ExchangeChannelGroup> promise = GlobalEventExecutor.INSTANCE.newPromise();
+		readConnected.addListener(new FutureListener<ExchangeChannelGroup>() {
+			@Override
+			public void operationComplete(final Future<ExchangeChannelGroup> readFuture) throws Exception {
+				writeConnected.addListener(new FutureListener<ExchangeChannelGroup>() {
+					@Override
+					public void operationComplete(Future<ExchangeChannelGroup> writeFuture) throws Exception {
+						if (readFuture.isSuccess() && writeFuture.isSuccess()) {
+							promise.setSuccess(ReadWriteExchangeChannelGroup.this);
+							return;
+						}
+						// failed group has been closed by itself
+						close(0);
+						promise.setFailure(readFuture.isSuccess() ? writeFuture.cause() : readFuture.cause());
+					}
+				});
+			}
+		});
+		return promise;
+	}
+
+	/**
+	 * succeeds with this group once both read and write connections are connected, or fails after the group is
+	 * closed
+	 */
+	public Future<ExchangeChannelGroup> connectFuture() {
+		return connectFuture;
 	}
 
 	@Override
@@ -76,6 +132,19 @@ public class ReadWriteExchangeChannelGroup extends AbstractExchangeChannelGroup
 		return readGroup.next();
 	}
 
+	@Override
+	public ExchangeChannel next(Object routingKey) throws SailfishException {
+		if (null == routingKey) {
+			return next();
+		}
+		try {
+			return writeGroup.next(routingKey);
+		} catch (SailfishException cause) {
+			logger.warn("writeGroup not available, try to choose readGroup", cause);
+		}
+		return readGroup.next(routingKey);
+	}
+
 	@Override
 	public boolean isAvailable() {
 		if (writeGroup.isAvailable()) {
@@ -25,7 +25,9 @@ import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import io.netty.util.IllegalReferenceCountException;
 import io.netty.util.internal.PlatformDependent;
 import sailfish.remoting.configuration.NegotiateConfig;
+import sailfish.remoting.handler.MsgHandler;
 import sailfish.remoting.handler.NegotiateChannelHandler;
+import sailfish.remoting.protocol.Protocol;
 
 /**
  * @author spccold
@@ -97,6 +99,10 @@ public abstract class ReferenceCountedServerExchangeChannelGroup extends Abstrac
 
 	private void deallocate(){
 		NegotiateChannelHandler.uuid2ChannelGroup.remove(id().toString());
+		MsgHandler<Protocol> msgHandler = getMsgHander();
+		if (null != msgHandler) {
+			msgHandler.onClosed(this);
+		}
 	}
 	
 	public abstract void addChild(ExchangeChannel channel, NegotiateConfig config);
@@ -18,6 +18,7 @@
 package sailfish.remoting.channel;
 
 import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
 import sailfish.remoting.Tracer;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.handler.MsgHandler;
@@ -44,6 +45,11 @@ public final class ServerExchangeChannel extends AbstractExchangeChannel {
 		throw new UnsupportedOperationException("doConnect");
 	}
 
+	@Override
+	public Future<Channel> connectAsync() {
+		throw new UnsupportedOperationException("connectAsync");
+	}
+
 	@Override
 	public void recover() {
 		throw new UnsupportedOperationException("recover");
@@ -59,6 +59,14 @@ public final class ServerExchangeChannelGroup extends ReferenceCountedServerExch
 		return chooser.next();
 	}
 
+	@Override
+	public ExchangeChannel next(Object routingKey) throws SailfishException {
+		if (null == routingKey) {
+			return chooser.next();
+		}
+		return chooser.next(routingKey);
+	}
+
 	@Override
 	public boolean isAvailable() {
 		if(children.length == 1){//one connection check
@@ -17,11 +17,17 @@
  */
 package sailfish.remoting.channel;
 
-import java.util.Map;
 import java.util.concurrent.locks.LockSupport;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
 import io.netty.handler.timeout.IdleStateHandler;
 import sailfish.remoting.ReconnectManager;
 import sailfish.remoting.Tracer;
@@ -32,7 +38,6 @@ import sailfish.remoting.handler.MsgHandler;
 import sailfish.remoting.protocol.Protocol;
 import sailfish.remoting.protocol.ResponseProtocol;
 import sailfish.remoting.utils.ChannelUtil;
-import sailfish.remoting.utils.CollectionUtils;
 import sailfish.remoting.utils.ParameterChecker;
 
 /**
@@ -54,7 +59,7 @@ public abstract class SingleConnctionExchangeChannel extends AbstractExchangeCha
 	 * @param connectTimeout
 	 *            connect timeout in milliseconds
 	 * @param reconnectInterval
-	 *            reconnect interval in milliseconds for {@link ReconnectManager}
+	 *            base reconnect interval in milliseconds for {@link ReconnectManager}
 	 * @param idleTimeout
 	 *            idle timeout in seconds for {@link IdleStateHandler}
 	 * @param maxIdleTimeOut
@@ -72,23 +77,68 @@ public abstract class SingleConnctionExchangeChannel extends AbstractExchangeCha
 		}
 	}
 
-	@SuppressWarnings("deprecation")
 	@Override
 	public Channel doConnect() throws SailfishException {
-		try {
-			Channel channel = reusedBootstrap.connect().syncUninterruptibly().channel();
-			channel.attr(OneTime.awaitNegotiate).get().await();
-			channel.attr(OneTime.awaitNegotiate).remove();
-			return channel;
-		} catch (Throwable cause) {
-			throw new SailfishException(cause);
+		Future<Channel> future = connectAsync().awaitUninterruptibly();
+		if (!future.isSuccess()) {
+			throw new SailfishException(future.cause());
 		}
+		return future.getNow();
+	}
+
+	@Override
+	public Future<Channel> connectAsync() {
+		final Promise<Channel> promise = GlobalEventExecutor.INSTANCE.newPromise();
+		reusedBootstrap.connect().addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (!future.isSuccess()) {
+					promise.tryFailure(future.cause());
+					return;
+				}
+				final Channel channel = future.channel();
+				// set by ChannelInitializer which runs before connect
+				final ChannelPromise negotiated = channel.attr(OneTime.awaitNegotiate).get();
+				negotiated.addListener(new ChannelFutureListener() {
+					@SuppressWarnings("deprecation")
+					@Override
+					public void operationComplete(ChannelFuture future) throws Exception {
+						channel.attr(OneTime.awaitNegotiate).remove();
+						if (future.isSuccess()) {
+							promise.trySuccess(channel);
+						} else {
+							promise.tryFailure(future.cause());
+						}
+					}
+				});
+				// never negotiated if closed before active
+				channel.closeFuture().addListener(new ChannelFutureListener() {
+					@Override
+					public void operationComplete(ChannelFuture future) throws Exception {
+						negotiated.tryFailure(new SailfishException(ExceptionCode.EXCHANGER_NOT_AVAILABLE,
+								"channel closed before negotiate: " + channel));
+					}
+				});
+			}
+		});
+		return promise;
 	}
 
 	@Override
 	public void recover() {
-		// add reconnect task
-		ReconnectManager.INSTANCE.addReconnectTask(this, reconnectInterval);
+		// add reconnect task, retries run on the event loop of the broken channel
+		Channel channel = this.channel;
+		EventLoop loop = (null != channel ? channel.eventLoop() : reusedBootstrap.config().group().next());
+		ReconnectManager.INSTANCE.addReconnectTask(this, loop, reusedBootstrap.config().remoteAddress(),
+				reconnectInterval);
+	}
+
+	/**
+	 * mark this channel as connecting until {@link #update(Channel)}, {@link #isAvailable()} won't start another
+	 * connect meanwhile
+	 */
+	protected final void connecting() {
+		this.reconnectting = true;
 	}
 
 	@Override
@@ -101,6 +151,10 @@ public abstract class SingleConnctionExchangeChannel extends AbstractExchangeCha
 			}
 			Channel old = channel;
 			this.channel = newChannel;
+			// never leak the replaced connection
+			if (null != old && old != newChannel && old.isOpen()) {
+				ChannelUtil.closeChannel(old);
+			}
 			return old;
 		}
 	}
@@ -132,17 +186,13 @@ public abstract class SingleConnctionExchangeChannel extends AbstractExchangeCha
 			this.closed = true;
 			// deal unfinished requests, response with channel closed exception
 			long start = System.currentTimeMillis();
-			while (CollectionUtils.isNotEmpty(getTracer().peekPendingRequests(this))
-					&& (System.currentTimeMillis() - start < timeout)) {
+			while (getTracer().hasPendingRequests(this) && (System.currentTimeMillis() - start < timeout)) {
 				LockSupport.parkNanos(1000 * 1000 * 10L);
 			}
-			Map<Integer, Object> pendingRequests = getTracer().popPendingRequests(this);
-			if (CollectionUtils.isNotEmpty(pendingRequests)) {
-				for (Integer packetId : pendingRequests.keySet()) {
-					getTracer().erase(ResponseProtocol.newErrorResponse(packetId,
-							new SailfishException(ExceptionCode.UNFINISHED_REQUEST,
-									"unfinished request because of channel:" + channel.toString() + " be closed")));
-				}
+			for (int packetId : getTracer().pendingRequests(this)) {
+				getTracer().erase(ResponseProtocol.newErrorResponse(packetId,
+						new SailfishException(ExceptionCode.UNFINISHED_REQUEST,
+								"unfinished request because of channel:" + channel.toString() + " be closed")));
 			}
 			ChannelUtil.closeChannel(channel);
 		}
@@ -0,0 +1,70 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.channel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * channels above the high {@link io.netty.channel.WriteBufferWaterMark}({@link ExchangeChannel#bytesBeforeUnwritable()}
+ * is zero) are only chosen when no channel is writable, among the writable ones choose the one with the least
+ * {@link ExchangeChannel#pendingRequests()}, ties are broken by round-robin
+ * 
+ * <pre>
+ * --free outbound buffer space is not a load signal, a fast channel with a large buffer would attract every request
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: WritabilityAwareExchangeChannelChooserFactory.java, v 0.1 2016年12月8日 上午11:05:20 spccold Exp $
+ */
+public class WritabilityAwareExchangeChannelChooserFactory implements ExchangeChannelChooserFactory {
+
+	public static final WritabilityAwareExchangeChannelChooserFactory INSTANCE = new WritabilityAwareExchangeChannelChooserFactory();
+
+	private WritabilityAwareExchangeChannelChooserFactory() { }
+
+	@Override
+	public ExchangeChannelChooser newChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+		return new WritabilityAwareExchangeChannelChooser(channels, deadChannels);
+	}
+
+	private static final class WritabilityAwareExchangeChannelChooser extends AbstractExchangeChannelChooser {
+		private static final long UNWRITABLE = Integer.MAX_VALUE + 1L;
+		private final AtomicInteger idx = new AtomicInteger();
+
+		WritabilityAwareExchangeChannelChooser(ExchangeChannel[] channels, ExchangeChannel[] deadChannels) {
+			super(channels, deadChannels);
+		}
+
+		@Override
+		protected ExchangeChannel choose() {
+			return leastLoaded((idx.getAndIncrement() & Integer.MAX_VALUE) % channels.length);
+		}
+
+		/**
+		 * unwritable channels rank after every writable one, and by pending requests among themselves
+		 */
+		@Override
+		protected long load(ExchangeChannel channel) {
+			long pendingRequests = channel.pendingRequests();
+			if (channel.bytesBeforeUnwritable() > 0) {
+				return pendingRequests;
+			}
+			return UNWRITABLE + pendingRequests;
+		}
+	}
+}
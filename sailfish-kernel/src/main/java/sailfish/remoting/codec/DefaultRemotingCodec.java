@@ -18,6 +18,8 @@
 package sailfish.remoting.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import sailfish.remoting.compress.Compressors;
 import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.exceptions.ExceptionCode;
 import sailfish.remoting.exceptions.SailfishException;
@@ -26,6 +28,7 @@ import sailfish.remoting.protocol.ResponseProtocol;
 import sailfish.remoting.protocol.Protocol;
 
 /**
+ * bodies are compressed/decompressed transparently by {@link Compressors}
  * 
  * @author spccold
  * @version $Id: DefaultRemotingCodec.java, v 0.1 2016年10月15日 下午4:52:20 jileng Exp $
@@ -38,9 +41,16 @@ public class DefaultRemotingCodec implements RemotingCodec{
     
     @Override
     public void encode(Protocol protocol, ByteBuf buffer) throws SailfishException {
+        Compressors.compress(protocol, buffer.alloc());
         protocol.serialize(buffer);
     }
 
+    @Override
+    public ByteBuf encode(Protocol protocol, ByteBufAllocator allocator) throws SailfishException {
+        Compressors.compress(protocol, allocator);
+        return protocol.serialize(allocator);
+    }
+
     @Override
     public Protocol decode(ByteBuf buffer) throws SailfishException {
         short magic = buffer.readShort();
@@ -61,6 +71,7 @@ public class DefaultRemotingCodec implements RemotingCodec{
             protocol = ResponseProtocol.newInstance();
         }
         protocol.deserialize(buffer, totalLength);
+        Compressors.decompress(protocol, buffer.alloc());
         return protocol;
     }
 }
@@ -0,0 +1,230 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * cut encoded frames longer than {@code threshold} into fragments of at most {@code fragmentSize} bytes, so
+ * messages beyond {@link RemotingConstants#DEFAULT_PAYLOAD_LENGTH} can be sent, {@link RemotingDecoder} reassembles
+ * them
+ * 
+ * <pre>
+ * fragment frame
+ * 1-- fragment magic(2 bytes)
+ * 2-- total length(header length + payload length, 4 bytes)
+ * 3-- header (8 bytes)
+ *    3.1-- fragmentId, unique in the connection (4 bytes)
+ *    3.2-- length of the whole original frame (4 bytes)
+ * 4-- payload, next part of the original frame ((total length - header length) bytes)
+ * </pre>
+ * 
+ * <pre>
+ * --one fragment of every pending large frame is written per round, then the next round is queued behind the tasks
+ *   of event loop, writes queued meanwhile go in between, so a large message doesn't block small ones
+ * --rounds pause while the channel is not writable, at most one fragment per large frame sits in the outbound buffer
+ * --must be before the encoder and on the event loop, so it sees encoded frames
+ * --{@code -Dsailfish.fragment.threshold}(default {@link RemotingConstants#DEFAULT_PAYLOAD_LENGTH}, frames peers
+ *   without fragment support could not read anyway), {@code 0} disables fragmentation
+ * --{@code -Dsailfish.fragment.size}(default 1MB)
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: FragmentEncoder.java, v 0.1 2016年12月19日 上午10:02:51 spccold Exp $
+ */
+public class FragmentEncoder extends ChannelDuplexHandler {
+	private static final Logger logger = LoggerFactory.getLogger(FragmentEncoder.class);
+
+	public static final short FRAGMENT_MAGIC = ByteBuffer.wrap("SF".getBytes()).getShort();
+	public static final int HEADER_LENGTH = 8;
+	// the largest payload the frame decoder accepts
+	public static final int MAX_FRAGMENT_SIZE = RemotingConstants.DEFAULT_PAYLOAD_LENGTH
+			- RemotingConstants.PROTOCOL_PREFIX_LENGTH - HEADER_LENGTH;
+
+	private static final int DEFAULT_THRESHOLD;
+	private static final int DEFAULT_FRAGMENT_SIZE;
+	static {
+		DEFAULT_THRESHOLD = Math.max(0,
+				SystemPropertyUtil.getInt("sailfish.fragment.threshold", RemotingConstants.DEFAULT_PAYLOAD_LENGTH));
+		DEFAULT_FRAGMENT_SIZE = Math.min(MAX_FRAGMENT_SIZE,
+				Math.max(1, SystemPropertyUtil.getInt("sailfish.fragment.size", 1024 * 1024)));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.fragment.threshold: {}", DEFAULT_THRESHOLD);
+			logger.debug("-Dsailfish.fragment.size: {}", DEFAULT_FRAGMENT_SIZE);
+		}
+	}
+
+	private final int threshold;
+	private final int fragmentSize;
+	private final ArrayDeque<PendingFrame> pendings = new ArrayDeque<>();
+	private final Runnable writeTask = new Runnable() {
+		@Override
+		public void run() {
+			writeScheduled = false;
+			writeFragments();
+		}
+	};
+
+	private ChannelHandlerContext ctx;
+	private int nextFragmentId;
+	private boolean writeScheduled;
+
+	/**
+	 * @return {@code null} if fragmentation is disabled by system properties
+	 */
+	public static FragmentEncoder newDefault() {
+		return DEFAULT_THRESHOLD > 0 ? new FragmentEncoder(DEFAULT_THRESHOLD, DEFAULT_FRAGMENT_SIZE) : null;
+	}
+
+	public FragmentEncoder(int threshold, int fragmentSize) {
+		this.threshold = ParameterChecker.checkPositive(threshold, "threshold");
+		this.fragmentSize = ParameterChecker.checkPositive(fragmentSize, "fragmentSize");
+		if (fragmentSize > MAX_FRAGMENT_SIZE) {
+			throw new IllegalArgumentException(
+					"fragmentSize: " + fragmentSize + " (expected: fragmentSize <= " + MAX_FRAGMENT_SIZE + ")");
+		}
+	}
+
+	/**
+	 * @return {@code true} if {@code frame} is a fragment frame, its reader index is not changed
+	 */
+	public static boolean isFragment(ByteBuf frame) {
+		return frame.getShort(frame.readerIndex()) == FRAGMENT_MAGIC;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		if (!(msg instanceof ByteBuf) || ((ByteBuf) msg).readableBytes() <= threshold) {
+			ctx.write(msg, promise);
+			return;
+		}
+		pendings.add(new PendingFrame(nextFragmentId++, (ByteBuf) msg, promise));
+		scheduleWrite();
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (ctx.channel().isWritable()) {
+			scheduleWrite();
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+		failPendings();
+		ctx.fireChannelInactive();
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		failPendings();
+	}
+
+	private void scheduleWrite() {
+		if (!writeScheduled && !pendings.isEmpty()) {
+			writeScheduled = true;
+			ctx.executor().execute(writeTask);
+		}
+	}
+
+	private void writeFragments() {
+		// one fragment of every pending frame per round
+		int rounds = pendings.size();
+		while (rounds-- > 0 && ctx.channel().isWritable()) {
+			PendingFrame pending = pendings.poll();
+			if (!pending.writeFragment(ctx, fragmentSize)) {
+				pendings.add(pending);
+			}
+		}
+		ctx.flush();
+		if (ctx.channel().isWritable()) {
+			scheduleWrite();
+		} else if (!ctx.channel().isActive()) {
+			failPendings();
+		}
+		// otherwise resumed by channelWritabilityChanged
+	}
+
+	private void failPendings() {
+		PendingFrame pending = null;
+		while (null != (pending = pendings.poll())) {
+			pending.fail(new ClosedChannelException());
+		}
+	}
+
+	static final class PendingFrame {
+		private final int fragmentId;
+		private final int frameLength;
+		private final ByteBuf frame;
+		private final ChannelPromise promise;
+
+		PendingFrame(int fragmentId, ByteBuf frame, ChannelPromise promise) {
+			this.fragmentId = fragmentId;
+			this.frameLength = frame.readableBytes();
+			this.frame = frame;
+			this.promise = promise;
+		}
+
+		/**
+		 * @return {@code true} if the last fragment has been written
+		 */
+		boolean writeFragment(ChannelHandlerContext ctx, int fragmentSize) {
+			int payloadLength = Math.min(fragmentSize, frame.readableBytes());
+			ByteBuf header = ctx.alloc().ioBuffer(RemotingConstants.PROTOCOL_PREFIX_LENGTH + HEADER_LENGTH);
+			header.writeShort(FRAGMENT_MAGIC);
+			header.writeInt(HEADER_LENGTH + payloadLength);
+			header.writeInt(fragmentId);
+			header.writeInt(frameLength);
+			CompositeByteBuf fragment = ctx.alloc().compositeBuffer(2);
+			fragment.addComponent(true, header).addComponent(true, frame.readRetainedSlice(payloadLength));
+			if (frame.isReadable()) {
+				// failures of middle fragments go to exceptionCaught
+				ctx.write(fragment, ctx.voidPromise());
+				return false;
+			}
+			frame.release();
+			ctx.write(fragment, promise);
+			return true;
+		}
+
+		void fail(Throwable cause) {
+			frame.release();
+			promise.tryFailure(cause);
+		}
+	}
+}
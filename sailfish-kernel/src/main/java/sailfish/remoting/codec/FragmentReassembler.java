@@ -0,0 +1,200 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.codec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * reassemble fragments written by {@link FragmentEncoder} into original frames, one instance per connection, not
+ * thread safe
+ * 
+ * <pre>
+ * --the buffer of a frame starts with the size of its first fragment and grows up to the declared length as
+ *   fragments are copied into it in order, so a declared length costs nothing until the bytes really arrive
+ * --bytes and frames under reassembly of a connection are bounded, exceeding either is a bad package which closes
+ *   the connection
+ * --frames longer than {@code spillThreshold} are reassembled into a memory-mapped temp file instead of memory,
+ *   the file is deleted once mapped, pages are reclaimed when the mapping is collected
+ * --{@code -Dsailfish.fragment.maxFrameLength}(default 512MB) bounds a reassembled frame
+ * --{@code -Dsailfish.fragment.maxPendingBytes}(default 512MB) bounds bytes under reassembly of a connection
+ * --{@code -Dsailfish.fragment.maxPendingFrames}(default 16) bounds frames under reassembly of a connection
+ * --{@code -Dsailfish.fragment.spillThreshold}(default 0, never spill)
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: FragmentReassembler.java, v 0.1 2016年12月19日 上午11:15:37 spccold Exp $
+ */
+public final class FragmentReassembler {
+	private static final Logger logger = LoggerFactory.getLogger(FragmentReassembler.class);
+
+	private static final int DEFAULT_MAX_FRAME_LENGTH;
+	private static final long DEFAULT_MAX_PENDING_BYTES;
+	private static final int DEFAULT_MAX_PENDING_FRAMES;
+	private static final int DEFAULT_SPILL_THRESHOLD;
+	static {
+		DEFAULT_MAX_FRAME_LENGTH = Math.max(RemotingConstants.DEFAULT_PAYLOAD_LENGTH,
+				SystemPropertyUtil.getInt("sailfish.fragment.maxFrameLength", 512 * 1024 * 1024));
+		DEFAULT_MAX_PENDING_BYTES = Math.max(1,
+				SystemPropertyUtil.getLong("sailfish.fragment.maxPendingBytes", 512 * 1024 * 1024));
+		DEFAULT_MAX_PENDING_FRAMES = Math.max(1, SystemPropertyUtil.getInt("sailfish.fragment.maxPendingFrames", 16));
+		DEFAULT_SPILL_THRESHOLD = Math.max(0, SystemPropertyUtil.getInt("sailfish.fragment.spillThreshold", 0));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.fragment.maxFrameLength: {}", DEFAULT_MAX_FRAME_LENGTH);
+			logger.debug("-Dsailfish.fragment.maxPendingBytes: {}", DEFAULT_MAX_PENDING_BYTES);
+			logger.debug("-Dsailfish.fragment.maxPendingFrames: {}", DEFAULT_MAX_PENDING_FRAMES);
+			logger.debug("-Dsailfish.fragment.spillThreshold: {}", DEFAULT_SPILL_THRESHOLD);
+		}
+	}
+
+	private final int maxFrameLength;
+	private final long maxPendingBytes;
+	private final int maxPendingFrames;
+	private final int spillThreshold;
+	// fragmentId -> partial frame, whose max capacity is the frame length
+	private final Map<Integer, ByteBuf> frames = new HashMap<>(4);
+	// bytes received of partial frames
+	private long pendingBytes;
+
+	public FragmentReassembler() {
+		this(DEFAULT_MAX_FRAME_LENGTH, DEFAULT_MAX_PENDING_BYTES, DEFAULT_MAX_PENDING_FRAMES, DEFAULT_SPILL_THRESHOLD);
+	}
+
+	/**
+	 * @param spillThreshold
+	 *            {@code 0} means never spill
+	 */
+	public FragmentReassembler(int maxFrameLength, long maxPendingBytes, int maxPendingFrames, int spillThreshold) {
+		this.maxFrameLength = ParameterChecker.checkPositive(maxFrameLength, "maxFrameLength");
+		this.maxPendingBytes = ParameterChecker.checkPositive(maxPendingBytes, "maxPendingBytes");
+		this.maxPendingFrames = ParameterChecker.checkPositive(maxPendingFrames, "maxPendingFrames");
+		this.spillThreshold = ParameterChecker.checkNotNegative(spillThreshold, "spillThreshold");
+	}
+
+	/**
+	 * @param fragment
+	 *            a whole fragment frame, read but not released by this method
+	 * @return the original frame if {@code fragment} is the last one of it, otherwise {@code null}
+	 */
+	public ByteBuf add(ByteBuf fragment, ByteBufAllocator allocator) throws SailfishException {
+		fragment.skipBytes(RemotingConstants.PROTOCOL_PREFIX_LENGTH);
+		int fragmentId = fragment.readInt();
+		int frameLength = fragment.readInt();
+		ByteBuf frame = frames.get(fragmentId);
+		if (null == frame) {
+			if (frameLength <= 0 || frameLength > maxFrameLength) {
+				throw new SailfishException(ExceptionCode.BAD_PACKAGE, String.format(
+						"frame length[%d] of fragmentId[%d] exceeds[%d]", frameLength, fragmentId, maxFrameLength));
+			}
+			if (frames.size() >= maxPendingFrames) {
+				throw new SailfishException(ExceptionCode.BAD_PACKAGE,
+						String.format("too many frames under reassembly, limit[%d]", maxPendingFrames));
+			}
+			frame = newFrame(frameLength, fragment.readableBytes(), allocator);
+			frames.put(fragmentId, frame);
+		}
+		int length = fragment.readableBytes();
+		if (frame.maxCapacity() != frameLength || length > frame.maxWritableBytes()) {
+			remove(fragmentId, frame);
+			throw new SailfishException(ExceptionCode.BAD_PACKAGE,
+					String.format("fragments of fragmentId[%d] overflow frame length[%d]", fragmentId, frameLength));
+		}
+		if (pendingBytes + length > maxPendingBytes) {
+			remove(fragmentId, frame);
+			throw new SailfishException(ExceptionCode.BAD_PACKAGE,
+					String.format("too many bytes under reassembly, limit[%d]", maxPendingBytes));
+		}
+		frame.writeBytes(fragment);
+		pendingBytes += length;
+		if (frame.maxWritableBytes() > 0) {
+			return null;
+		}
+		frames.remove(fragmentId);
+		pendingBytes -= frame.writerIndex();
+		return frame;
+	}
+
+	/**
+	 * release partial frames, invoked when the connection is gone
+	 */
+	public void release() {
+		for (ByteBuf frame : frames.values()) {
+			frame.release();
+		}
+		frames.clear();
+		pendingBytes = 0;
+	}
+
+	/**
+	 * @return bytes received of frames under reassembly
+	 */
+	public long pendingBytes() {
+		return pendingBytes;
+	}
+
+	private void remove(int fragmentId, ByteBuf frame) {
+		frames.remove(fragmentId);
+		pendingBytes -= frame.writerIndex();
+		frame.release();
+	}
+
+	private ByteBuf newFrame(int frameLength, int initialCapacity, ByteBufAllocator allocator)
+			throws SailfishException {
+		if (spillThreshold == 0 || frameLength <= spillThreshold) {
+			// grows with arriving fragments
+			return allocator.buffer(Math.min(initialCapacity, frameLength), frameLength);
+		}
+		try {
+			ByteBuf frame = Unpooled.wrappedBuffer(map(frameLength));
+			frame.clear();
+			return frame;
+		} catch (IOException cause) {
+			throw new SailfishException(String.format("spill frame of length[%d] fail", frameLength), cause);
+		}
+	}
+
+	private static MappedByteBuffer map(int frameLength) throws IOException {
+		File file = File.createTempFile("sailfish-fragment-", ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = raf.getChannel();
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, frameLength);
+		} finally {
+			// the mapping outlives the file on most platforms
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+}
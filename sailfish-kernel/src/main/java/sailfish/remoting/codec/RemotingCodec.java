@@ -18,6 +18,7 @@
 package sailfish.remoting.codec;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.protocol.Protocol;
 
@@ -28,5 +29,9 @@ import sailfish.remoting.protocol.Protocol;
  */
 public interface RemotingCodec {
     public void encode(Protocol protocol, ByteBuf buffer) throws SailfishException;
+    /**
+     * encode {@code protocol} to a frame allocated from {@code allocator}, body backed by {@link ByteBuf} will not be copied
+     */
+    public ByteBuf encode(Protocol protocol, ByteBufAllocator allocator) throws SailfishException;
     public Protocol decode(ByteBuf buffer) throws SailfishException;
 }
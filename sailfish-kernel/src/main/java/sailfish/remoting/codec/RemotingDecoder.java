@@ -29,6 +29,8 @@ import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.utils.ChannelUtil;
 
 /**
+ * frames are at most {@link RemotingConstants#DEFAULT_PAYLOAD_LENGTH} long, larger ones arrive as fragments
+ * written by {@link FragmentEncoder} and are reassembled by {@link FragmentReassembler} first
  * 
  * @author spccold
  * @version $Id: RemotingDecoder.java, v 0.1 2016年10月15日 上午11:20:55 jileng Exp $
@@ -37,6 +39,8 @@ public class RemotingDecoder extends LengthFieldBasedFrameDecoder {
 
 	private static final Logger logger = LoggerFactory.getLogger(RemotingDecoder.class);
 
+	private final FragmentReassembler reassembler = new FragmentReassembler();
+
 	public RemotingDecoder() {
 		super(RemotingConstants.DEFAULT_PAYLOAD_LENGTH, 2, 4);
 	}
@@ -49,6 +53,18 @@ public class RemotingDecoder extends LengthFieldBasedFrameDecoder {
 			return null;
 		}
 		try {
+			if (FragmentEncoder.isFragment(buffer)) {
+				ByteBuf fragment = buffer;
+				buffer = null;
+				try {
+					buffer = reassembler.add(fragment, ctx.alloc());
+				} finally {
+					fragment.release();
+				}
+				if (null == buffer) {
+					return null;
+				}
+			}
 			return DefaultRemotingCodec.INSTANCE.decode(buffer);
 		} catch (SailfishException cause) {
 			if (cause.code() == ExceptionCode.BAD_PACKAGE) {
@@ -60,7 +76,14 @@ public class RemotingDecoder extends LengthFieldBasedFrameDecoder {
 			}
 			throw cause;
 		} finally {
-			buffer.release();
+			if (null != buffer) {
+				buffer.release();
+			}
 		}
 	}
+
+	@Override
+	protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+		reassembler.release();
+	}
 }
@@ -17,19 +17,22 @@
  */
 package sailfish.remoting.codec;
 
-import io.netty.buffer.ByteBuf;
+import java.util.List;
+
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import sailfish.remoting.protocol.Protocol;
 
 /**
+ * encode {@link Protocol} to a frame which is allocated exactly once, body backed by {@link io.netty.buffer.ByteBuf}
+ * will be wrapped into a {@link io.netty.buffer.CompositeByteBuf} without copy
  * 
  * @author spccold
  * @version $Id: RemotingEncoder.java, v 0.1 2016年10月9日 下午9:44:43 jileng Exp $
  */
 @ChannelHandler.Sharable
-public class RemotingEncoder extends MessageToByteEncoder<Protocol>{
+public class RemotingEncoder extends MessageToMessageEncoder<Protocol>{
 	
 	public static final RemotingEncoder INSTANCE = new RemotingEncoder();
 	
@@ -37,7 +40,7 @@ public class RemotingEncoder extends MessageToByteEncoder<Protocol>{
 	
     //all write exceptions will be manage by Promise
     @Override
-    protected void encode(ChannelHandlerContext ctx, Protocol msg, ByteBuf out) throws Exception {
-        DefaultRemotingCodec.INSTANCE.encode(msg, out);
+    protected void encode(ChannelHandlerContext ctx, Protocol msg, List<Object> out) throws Exception {
+        out.add(DefaultRemotingCodec.INSTANCE.encode(msg, ctx.alloc()));
     }
 }
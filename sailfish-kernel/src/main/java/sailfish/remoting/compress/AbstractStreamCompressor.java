@@ -0,0 +1,96 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+
+/**
+ * compressor based on jdk streams, reads from and writes to {@link ByteBuf} directly without intermediate byte[] of
+ * whole body
+ * 
+ * @author spccold
+ * @version $Id: AbstractStreamCompressor.java, v 0.1 2016年12月4日 上午10:35:02 spccold Exp $
+ */
+public abstract class AbstractStreamCompressor implements Compressor {
+	private static final int READ_CHUNK = 8 * 1024;
+
+	@Override
+	public ByteBuf compress(ByteBuf input, ByteBufAllocator allocator) throws SailfishException {
+		// most of payloads compress to less than half
+		ByteBuf output = allocator.buffer(Math.max(64, input.readableBytes() >>> 1));
+		try {
+			OutputStream out = newOutputStream(new ByteBufOutputStream(output));
+			try {
+				input.getBytes(input.readerIndex(), out, input.readableBytes());
+			} finally {
+				out.close();
+			}
+			return output;
+		} catch (IOException cause) {
+			output.release();
+			throw new SailfishException(ExceptionCode.COMPRESS_FAIL, "compress fail", cause);
+		}
+	}
+
+	@Override
+	public ByteBuf decompress(ByteBuf input, ByteBufAllocator allocator) throws SailfishException {
+		int maxLength = Compressors.MAX_DECOMPRESSED_LENGTH;
+		ByteBuf output = allocator.buffer(Math.min(maxLength, input.readableBytes() << 1), maxLength);
+		boolean success = false;
+		try {
+			InputStream in = newInputStream(new ByteBufInputStream(input.duplicate()));
+			try {
+				int chunk;
+				while ((chunk = Math.min(READ_CHUNK, output.maxWritableBytes())) > 0) {
+					if (output.writeBytes(in, chunk) == -1) {
+						success = true;
+						return output;
+					}
+				}
+				// bounded, a small malicious body may inflate to gigabytes
+				if (in.read() != -1) {
+					throw new SailfishException(ExceptionCode.COMPRESS_FAIL,
+							String.format("decompressed length exceeds[%d]", maxLength));
+				}
+			} finally {
+				in.close();
+			}
+			success = true;
+			return output;
+		} catch (IOException cause) {
+			throw new SailfishException(ExceptionCode.COMPRESS_FAIL, "decompress fail", cause);
+		} finally {
+			if (!success) {
+				output.release();
+			}
+		}
+	}
+
+	protected abstract OutputStream newOutputStream(OutputStream out) throws IOException;
+
+	protected abstract InputStream newInputStream(InputStream in) throws IOException;
+}
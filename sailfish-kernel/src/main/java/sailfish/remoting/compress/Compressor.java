@@ -0,0 +1,49 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import sailfish.remoting.exceptions.SailfishException;
+
+/**
+ * body compressor for one of {@link sailfish.remoting.constants.CompressType}, implementations must be thread safe
+ * 
+ * @author spccold
+ * @version $Id: Compressor.java, v 0.1 2016年12月4日 上午10:12:31 spccold Exp $
+ */
+public interface Compressor {
+
+	/**
+	 * compress type written into protocol header, 4 bits at most
+	 */
+	byte compressType();
+
+	/**
+	 * compress readable bytes of {@code input} into a new {@link ByteBuf} allocated from {@code allocator},
+	 * {@code input} is not released
+	 */
+	ByteBuf compress(ByteBuf input, ByteBufAllocator allocator) throws SailfishException;
+
+	/**
+	 * decompress readable bytes of {@code input} into a new {@link ByteBuf} allocated from {@code allocator},
+	 * {@code input} is not released, fails with {@link sailfish.remoting.exceptions.ExceptionCode#COMPRESS_FAIL} once
+	 * the output exceeds {@link Compressors#MAX_DECOMPRESSED_LENGTH}
+	 */
+	ByteBuf decompress(ByteBuf input, ByteBufAllocator allocator) throws SailfishException;
+}
@@ -0,0 +1,157 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.compress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.constants.CompressType;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.protocol.Protocol;
+import sailfish.remoting.protocol.ProtocolParameterChecker;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * compressor registry indexed by compress type(4 bits in protocol header)
+ * 
+ * <pre>
+ * registered by default: {@link CompressType#GZIP_COMPRESS}, {@link CompressType#DEFLATE_COMPRESS},
+ * {@link CompressType#SNAPPY_COMPRESS}
+ * {@link CompressType#LZ4_COMPRESS} needs a third-party library, register it by {@link #register(Compressor)}
+ * --bodies which don't get smaller are sent uncompressed
+ * --{@code -Dsailfish.compress.maxDecompressedLength}(default {@link RemotingConstants#DEFAULT_PAYLOAD_LENGTH}, used as is
+ *   when positive) bounds decompressed bodies, larger ones fail with {@link ExceptionCode#COMPRESS_FAIL}
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: Compressors.java, v 0.1 2016年12月4日 上午10:20:46 spccold Exp $
+ */
+public final class Compressors {
+	private static final Logger logger = LoggerFactory.getLogger(Compressors.class);
+
+	public static final int MAX_DECOMPRESSED_LENGTH;
+	static {
+		int maxDecompressedLength = SystemPropertyUtil.getInt("sailfish.compress.maxDecompressedLength",
+				RemotingConstants.DEFAULT_PAYLOAD_LENGTH);
+		// lower than the default is allowed, a tighter bound is the point of configuring it
+		MAX_DECOMPRESSED_LENGTH = maxDecompressedLength > 0 ? maxDecompressedLength
+				: RemotingConstants.DEFAULT_PAYLOAD_LENGTH;
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.compress.maxDecompressedLength: {}", MAX_DECOMPRESSED_LENGTH);
+		}
+	}
+
+	private static volatile Compressor[] compressors = new Compressor[0xF + 1];
+
+	static {
+		register(new GzipCompressor());
+		register(new DeflateCompressor());
+		register(new SnappyCompressor());
+	}
+
+	private Compressors() {
+	}
+
+	/**
+	 * register or replace the compressor for {@link Compressor#compressType()}
+	 */
+	public static synchronized void register(Compressor compressor) {
+		ParameterChecker.checkNotNull(compressor, "compressor");
+		byte compressType = ProtocolParameterChecker.checkCompressType(compressor.compressType());
+		if (compressType == CompressType.NON_COMPRESS) {
+			throw new IllegalArgumentException("compressType: " + compressType + " is reserved for non compress");
+		}
+		// copy on write, lookups on io threads stay lock free
+		Compressor[] copy = compressors.clone();
+		copy[compressType] = compressor;
+		compressors = copy;
+	}
+
+	public static Compressor get(byte compressType) throws SailfishException {
+		Compressor compressor = null;
+		if (compressType >= 0 && compressType < compressors.length) {
+			compressor = compressors[compressType];
+		}
+		if (null == compressor) {
+			throw new SailfishException(ExceptionCode.COMPRESS_UNSUPPORTED,
+					String.format("compressor not found for compressType[%d]", compressType));
+		}
+		return compressor;
+	}
+
+	/**
+	 * compress body of {@code protocol} if its body length reaches {@link Protocol#compressThreshold()} and it gets
+	 * smaller, otherwise mark it as {@link CompressType#NON_COMPRESS}
+	 */
+	public static void compress(Protocol protocol, ByteBufAllocator allocator) throws SailfishException {
+		byte compressType = protocol.compressType();
+		if (compressType == CompressType.NON_COMPRESS || protocol.heartbeat()) {
+			return;
+		}
+		ByteBuf body = protocol.detachBody();
+		if (null == body || body.readableBytes() < protocol.compressThreshold()) {
+			protocol.body(body, CompressType.NON_COMPRESS);
+			return;
+		}
+		ByteBuf compressed = null;
+		try {
+			compressed = get(compressType).compress(body, allocator);
+		} catch (SailfishException cause) {
+			body.release();
+			protocol.recycle();
+			throw cause;
+		}
+		if (compressed.readableBytes() >= body.readableBytes()) {
+			// incompressible, don't make the peer pay for decompressing
+			compressed.release();
+			protocol.body(body, CompressType.NON_COMPRESS);
+			return;
+		}
+		body.release();
+		protocol.body(compressed, compressType);
+	}
+
+	/**
+	 * decompress body of {@code protocol} transparently, then {@link Protocol#compressType()} will be
+	 * {@link CompressType#NON_COMPRESS}
+	 */
+	public static void decompress(Protocol protocol, ByteBufAllocator allocator) throws SailfishException {
+		byte compressType = protocol.compressType();
+		if (compressType == CompressType.NON_COMPRESS || protocol.heartbeat()) {
+			return;
+		}
+		ByteBuf body = protocol.detachBody();
+		if (null == body) {
+			protocol.body(null, CompressType.NON_COMPRESS);
+			return;
+		}
+		try {
+			protocol.body(get(compressType).decompress(body, allocator), CompressType.NON_COMPRESS);
+		} catch (SailfishException cause) {
+			protocol.recycle();
+			throw cause;
+		} finally {
+			body.release();
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import sailfish.remoting.constants.CompressType;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: GzipCompressor.java, v 0.1 2016年12月4日 上午10:48:17 spccold Exp $
+ */
+public class GzipCompressor extends AbstractStreamCompressor {
+
+	@Override
+	public byte compressType() {
+		return CompressType.GZIP_COMPRESS;
+	}
+
+	@Override
+	protected OutputStream newOutputStream(OutputStream out) throws IOException {
+		return new GZIPOutputStream(out);
+	}
+
+	@Override
+	protected InputStream newInputStream(InputStream in) throws IOException {
+		return new GZIPInputStream(in);
+	}
+}
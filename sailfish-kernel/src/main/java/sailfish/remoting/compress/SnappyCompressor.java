@@ -0,0 +1,66 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.compression.Snappy;
+import sailfish.remoting.constants.CompressType;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+
+/**
+ * snappy(raw format with length preamble) based on netty's {@link Snappy}, works on {@link ByteBuf} directly
+ * 
+ * @author spccold
+ * @version $Id: SnappyCompressor.java, v 0.1 2016年12月4日 上午10:55:23 spccold Exp $
+ */
+public class SnappyCompressor implements Compressor {
+
+	@Override
+	public byte compressType() {
+		return CompressType.SNAPPY_COMPRESS;
+	}
+
+	@Override
+	public ByteBuf compress(ByteBuf input, ByteBufAllocator allocator) throws SailfishException {
+		ByteBuf output = allocator.buffer(input.readableBytes());
+		try {
+			// Snappy is stateful, not thread safe
+			new Snappy().encode(input.duplicate(), output, input.readableBytes());
+			return output;
+		} catch (Throwable cause) {
+			output.release();
+			throw new SailfishException(ExceptionCode.COMPRESS_FAIL, "compress fail", cause);
+		}
+	}
+
+	@Override
+	public ByteBuf decompress(ByteBuf input, ByteBufAllocator allocator) throws SailfishException {
+		int maxLength = Compressors.MAX_DECOMPRESSED_LENGTH;
+		// max capacity bounds the output, growing beyond it fails
+		ByteBuf output = allocator.buffer(Math.min(maxLength, input.readableBytes() << 1), maxLength);
+		try {
+			new Snappy().decode(input.duplicate(), output);
+			return output;
+		} catch (Throwable cause) {
+			output.release();
+			throw new SailfishException(ExceptionCode.COMPRESS_FAIL, "decompress fail", cause);
+		}
+	}
+}
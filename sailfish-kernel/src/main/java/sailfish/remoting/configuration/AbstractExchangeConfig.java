@@ -24,6 +24,7 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
 import sailfish.remoting.Address;
 import sailfish.remoting.NettyPlatformIndependent;
+import sailfish.remoting.channel.PipelineLayout;
 import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.processors.RequestProcessor;
 import sailfish.remoting.utils.ParameterChecker;
@@ -49,6 +50,11 @@ public abstract class AbstractExchangeConfig {
      */
     private EventLoopGroup eventLoopGroup;
     private EventExecutorGroup eventExecutorGroup;
+    /**
+     * {@link PipelineLayout#executor} keeps every handler on {@link #eventExecutorGroup}, {@link PipelineLayout#io}
+     * runs codec on event loop and only dispatch on {@link #eventExecutorGroup}
+     */
+    private PipelineLayout pipelineLayout = PipelineLayout.executor;
     
     //check parameters
     public void check(){
@@ -103,4 +109,12 @@ public abstract class AbstractExchangeConfig {
 	public void setEventExecutorGroup(EventExecutorGroup eventExecutorGroup) {
 		this.eventExecutorGroup = ParameterChecker.checkNotNull(eventExecutorGroup, "eventExecutorGroup");
 	}
+
+	public PipelineLayout pipelineLayout() {
+		return pipelineLayout;
+	}
+
+	public void pipelineLayout(PipelineLayout pipelineLayout) {
+		this.pipelineLayout = ParameterChecker.checkNotNull(pipelineLayout, "pipelineLayout");
+	}
 }
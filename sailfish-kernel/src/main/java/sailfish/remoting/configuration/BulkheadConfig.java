@@ -0,0 +1,69 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.configuration;
+
+import java.util.Arrays;
+
+import sailfish.remoting.executor.Bulkhead;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * declaration of a {@link Bulkhead} and the opcodes processed by it
+ *
+ * @author spccold
+ * @version $Id: BulkheadConfig.java, v 0.1 2016年12月15日 上午11:20:14 spccold Exp $
+ */
+public class BulkheadConfig {
+	private final String name;
+	private final int threads;
+	private final int queueCapacity;
+	private final short[] opcodes;
+
+	public BulkheadConfig(String name, int threads, int queueCapacity, short... opcodes) {
+		this.name = ParameterChecker.checkNotBlank(name, "name");
+		this.threads = ParameterChecker.checkPositive(threads, "threads");
+		this.queueCapacity = ParameterChecker.checkPositive(queueCapacity, "queueCapacity");
+		ParameterChecker.checkNotNull(opcodes, "opcodes");
+		if (opcodes.length == 0) {
+			throw new IllegalArgumentException("opcodes of bulkhead[" + name + "] is empty");
+		}
+		this.opcodes = Arrays.copyOf(opcodes, opcodes.length);
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public int threads() {
+		return threads;
+	}
+
+	public int queueCapacity() {
+		return queueCapacity;
+	}
+
+	public short[] opcodes() {
+		return Arrays.copyOf(opcodes, opcodes.length);
+	}
+
+	@Override
+	public String toString() {
+		return "BulkheadConfig [name=" + name + ", threads=" + threads + ", queueCapacity=" + queueCapacity
+				+ ", opcodes=" + Arrays.toString(opcodes) + "]";
+	}
+}
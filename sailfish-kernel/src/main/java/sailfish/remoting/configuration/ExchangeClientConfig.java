@@ -18,7 +18,9 @@
 package sailfish.remoting.configuration;
 
 import sailfish.remoting.channel.ChannelGroupMode;
+import sailfish.remoting.channel.DefaultExchangeChannelChooserFactory;
 import sailfish.remoting.channel.DefaultExchangeChannelGroup;
+import sailfish.remoting.channel.ExchangeChannelChooserFactory;
 import sailfish.remoting.channel.ReadWriteExchangeChannelGroup;
 import sailfish.remoting.channel.ReadWriteServerExchangeChannelGroup;
 import sailfish.remoting.channel.ServerExchangeChannelGroup;
@@ -101,6 +103,12 @@ public class ExchangeClientConfig extends AbstractExchangeConfig {
 	private int writeRatio = 50;
 	private short writeConnections;
 	private boolean lazyConnection = false;
+	/**
+	 * how to choose connection for each request when connections greater than one, round-robin by default, See
+	 * {@code LeastPendingExchangeChannelChooserFactory}, {@code PowerOfTwoChoicesExchangeChannelChooserFactory},
+	 * {@code WritabilityAwareExchangeChannelChooserFactory} and {@code EwmaLatencyExchangeChannelChooserFactory}
+	 */
+	private ExchangeChannelChooserFactory chooserFactory = DefaultExchangeChannelChooserFactory.INSTANCE;
 
 	public ChannelGroupMode mode() {
 		if (connections == 1) {
@@ -196,4 +204,12 @@ public class ExchangeClientConfig extends AbstractExchangeConfig {
 	public void setLazyConnection(boolean lazyConnection) {
 		this.lazyConnection = lazyConnection;
 	}
+
+	public ExchangeChannelChooserFactory chooserFactory() {
+		return chooserFactory;
+	}
+
+	public void chooserFactory(ExchangeChannelChooserFactory chooserFactory) {
+		this.chooserFactory = ParameterChecker.checkNotNull(chooserFactory, "chooserFactory");
+	}
 }
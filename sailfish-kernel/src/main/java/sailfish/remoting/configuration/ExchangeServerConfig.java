@@ -17,16 +17,100 @@
  */
 package sailfish.remoting.configuration;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import sailfish.remoting.admission.AdmissionController;
+import sailfish.remoting.executor.SimpleExecutor;
+import sailfish.remoting.executor.VirtualThreadExecutor;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.utils.ParameterChecker;
+
 /**
  * 
  * @author spccold
  * @version $Id: ExchangeServerConfig.java, v 0.1 2016年10月27日 下午5:42:01 jileng Exp $
  */
 public class ExchangeServerConfig extends AbstractExchangeConfig{
+	
+	/**
+	 * reject requests early by adaptive concurrency limits, see {@link AdmissionController}
+	 */
+	private boolean admissionControl;
+	// upper bounds of adaptive limits
+	private int maxConcurrency = 10000;
+	private int maxOpcodeConcurrency = 1000;
+	
+	/**
+	 * opcodes of a bulkhead are processed by its own threads, no matter what
+	 * {@link RequestProcessor#executor()} returns
+	 */
+	private List<BulkheadConfig> bulkheads = new ArrayList<>(0);
+	
+	/**
+	 * processors without their own executor run on {@link VirtualThreadExecutor} instead of {@link SimpleExecutor},
+	 * for processors which block
+	 */
+	private boolean virtualThreads;
 
 	@Override
 	public void check() {
 		super.check();
+		ParameterChecker.checkPositive(maxConcurrency, "maxConcurrency");
+		ParameterChecker.checkPositive(maxOpcodeConcurrency, "maxOpcodeConcurrency");
+		Set<String> names = new HashSet<>();
+		Set<Short> opcodes = new HashSet<>();
+		for (BulkheadConfig bulkhead : bulkheads) {
+			if (!names.add(bulkhead.name())) {
+				throw new IllegalArgumentException("repeat bulkhead name[" + bulkhead.name() + "]");
+			}
+			for (short opcode : bulkhead.opcodes()) {
+				if (!opcodes.add(opcode)) {
+					throw new IllegalArgumentException("opcode[" + opcode + "] mapped to more than one bulkhead");
+				}
+			}
+		}
+	}
+
+	public boolean admissionControl() {
+		return admissionControl;
+	}
+
+	public void admissionControl(boolean admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	public int maxConcurrency() {
+		return maxConcurrency;
+	}
+
+	public void maxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = ParameterChecker.checkPositive(maxConcurrency, "maxConcurrency");
+	}
+
+	public int maxOpcodeConcurrency() {
+		return maxOpcodeConcurrency;
+	}
+
+	public void maxOpcodeConcurrency(int maxOpcodeConcurrency) {
+		this.maxOpcodeConcurrency = ParameterChecker.checkPositive(maxOpcodeConcurrency, "maxOpcodeConcurrency");
+	}
+
+	public boolean virtualThreads() {
+		return virtualThreads;
+	}
+
+	public void virtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public List<BulkheadConfig> getBulkheads() {
+		return bulkheads;
+	}
+
+	public void addBulkhead(BulkheadConfig bulkhead) {
+		this.bulkheads.add(ParameterChecker.checkNotNull(bulkhead, "bulkhead"));
 	}
-	
 }
@@ -17,8 +17,7 @@
  */
 package sailfish.remoting.constants;
 
-import java.util.concurrent.CountDownLatch;
-
+import io.netty.channel.ChannelPromise;
 import io.netty.util.AttributeKey;
 import sailfish.remoting.DefaultServer;
 import sailfish.remoting.channel.ExchangeChannelGroup;
@@ -46,7 +45,7 @@ public interface ChannelAttrKeys {
 	interface OneTime {
 		// for idle handle
 		AttributeKey<Byte> idleTimeout = AttributeKey.valueOf("sailfish.idleTimeout");
-		AttributeKey<CountDownLatch> awaitNegotiate = AttributeKey.valueOf("sailfish.awaitNegotiate");
+		AttributeKey<ChannelPromise> awaitNegotiate = AttributeKey.valueOf("sailfish.awaitNegotiate");
 
 		AttributeKey<NegotiateConfig> channelConfig = AttributeKey.valueOf("sailfish.channelConfig");
 	}
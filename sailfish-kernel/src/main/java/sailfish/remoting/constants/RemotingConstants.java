@@ -26,10 +26,14 @@ import java.nio.ByteBuffer;
  * @version $Id: RemotingConstants.java, v 0.1 2016年10月9日 下午9:58:16 jileng Exp $
  */
 public interface RemotingConstants {
-	// 压缩阀值, KB
+	// 压缩阀值, bytes
 	int COMPRESS_THRESHOLD = 4 * 1024;
+	// frames are encoded by event loop by default, bytes
+	int NO_ENCODE_THRESHOLD = -1;
 	// sailfish binary protocol magic
 	short SAILFISH_MAGIC = ByteBuffer.wrap("SH".getBytes()).getShort();
+	// magic(2 bytes) + total length(4 bytes)
+	int PROTOCOL_PREFIX_LENGTH = 6;
 
 	// max frame size, 8MB
 	int DEFAULT_PAYLOAD_LENGTH = 8 * 1024 * 1024;
@@ -44,6 +48,13 @@ public interface RemotingConstants {
 	// result
 	byte RESULT_SUCCESS = 0;
 	byte RESULT_FAIL = 1;
+	// rejected by admission control of server, without error stack
+	byte RESULT_OVERLOAD = 2;
+
+	// reserved opcode of credit frames(always oneway) of response streams, processors can't be registered on it
+	short STREAM_CREDIT_OPCODE = (short) 0xFFFF;
+	// chunks a client buffers for a response stream by default
+	int DEFAULT_STREAM_CREDITS = 16;
 
 	// channel type for read write splitting
 	byte WRITE_CHANNEL = 0;
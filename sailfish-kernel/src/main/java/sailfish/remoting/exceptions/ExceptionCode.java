@@ -29,6 +29,10 @@ public enum ExceptionCode {
     EXCHANGER_NOT_AVAILABLE,
     UNFINISHED_REQUEST,
     CHANNEL_WRITE_FAIL,
+    COMPRESS_UNSUPPORTED,
+    COMPRESS_FAIL,
+    SERVER_OVERLOAD,
+    WRITE_OVERFLOW,
     DEFAULT,
     ;
 }
@@ -0,0 +1,155 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.util.Recycler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import sailfish.remoting.utils.Histogram;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * named, bounded thread pool which isolates the opcodes mapped to it from others
+ *
+ * <pre>
+ * --fixed threads with a bounded queue, a full queue throws {@link RejectedExecutionException} so the request goes
+ *   to {@link sailfish.remoting.processors.RequestProcessor#onRejectedExecutionException}
+ * --queue depth is sampled on every submission, queue wait and run time are recorded in microseconds
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: Bulkhead.java, v 0.1 2016年12月15日 上午10:46:02 spccold Exp $
+ */
+public class Bulkhead implements Executor {
+	private final String name;
+	private final ThreadPoolExecutor executor;
+	private final Histogram queueDepth = new Histogram();
+	private final Histogram queueWaitMicros = new Histogram();
+	private final Histogram runTimeMicros = new Histogram();
+	private final AtomicLong rejected = new AtomicLong();
+
+	public Bulkhead(String name, int threads, int queueCapacity) {
+		this.name = ParameterChecker.checkNotBlank(name, "name");
+		ParameterChecker.checkPositive(threads, "threads");
+		ParameterChecker.checkPositive(queueCapacity, "queueCapacity");
+		// produce FastThreadLocalThread(can benefit from FastThreadLocal(e.g. Recycler))
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity),
+				new DefaultThreadFactory("sailfish-bulkhead-" + name, true));
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		queueDepth.record(executor.getQueue().size());
+		TimedTask timedTask = TimedTask.newInstance(this, task);
+		try {
+			executor.execute(timedTask);
+		} catch (RejectedExecutionException cause) {
+			rejected.incrementAndGet();
+			timedTask.recycle();
+			throw cause;
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * @return tasks waiting in queue now
+	 */
+	public int queueSize() {
+		return executor.getQueue().size();
+	}
+
+	public Histogram queueDepth() {
+		return queueDepth;
+	}
+
+	public Histogram queueWaitMicros() {
+		return queueWaitMicros;
+	}
+
+	public Histogram runTimeMicros() {
+		return runTimeMicros;
+	}
+
+	public long rejected() {
+		return rejected.get();
+	}
+
+	@Override
+	public String toString() {
+		return "Bulkhead [name=" + name + ", threads=" + executor.getMaximumPoolSize() + ", queueSize=" + queueSize()
+				+ ", rejected=" + rejected() + "]";
+	}
+
+	static final class TimedTask implements Runnable {
+		private static final Recycler<TimedTask> RECYCLER = new Recycler<TimedTask>() {
+			@Override
+			protected TimedTask newObject(Handle<TimedTask> handle) {
+				return new TimedTask(handle);
+			}
+		};
+
+		static TimedTask newInstance(Bulkhead bulkhead, Runnable task) {
+			TimedTask timedTask = RECYCLER.get();
+			timedTask.bulkhead = bulkhead;
+			timedTask.task = task;
+			timedTask.submitNanos = System.nanoTime();
+			return timedTask;
+		}
+
+		private final Recycler.Handle<TimedTask> handle;
+		private Bulkhead bulkhead;
+		private Runnable task;
+		private long submitNanos;
+
+		private TimedTask(Recycler.Handle<TimedTask> handle) {
+			this.handle = handle;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			bulkhead.queueWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(start - submitNanos));
+			try {
+				task.run();
+			} finally {
+				bulkhead.runTimeMicros.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+				recycle();
+			}
+		}
+
+		void recycle() {
+			bulkhead = null;
+			task = null;
+			handle.recycle(this);
+		}
+	}
+}
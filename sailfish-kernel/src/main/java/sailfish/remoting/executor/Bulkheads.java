@@ -0,0 +1,94 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.executor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sailfish.remoting.configuration.BulkheadConfig;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * {@link Bulkhead}s of a server, indexed by unsigned opcode in an array like
+ * {@link sailfish.remoting.processors.Processors}
+ *
+ * @author spccold
+ * @version $Id: Bulkheads.java, v 0.1 2016年12月15日 上午11:38:50 spccold Exp $
+ */
+public class Bulkheads {
+	private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+	private final Bulkhead[] opcodes;
+
+	public Bulkheads(List<BulkheadConfig> configs) {
+		ParameterChecker.checkNotNull(configs, "configs");
+		int length = 0;
+		for (BulkheadConfig config : configs) {
+			for (short opcode : config.opcodes()) {
+				length = Math.max(length, index(opcode) + 1);
+			}
+		}
+		this.opcodes = new Bulkhead[length];
+		for (BulkheadConfig config : configs) {
+			if (bulkheads.containsKey(config.name())) {
+				shutdown();
+				throw new IllegalArgumentException("repeat bulkhead name[" + config.name() + "]");
+			}
+			Bulkhead bulkhead = new Bulkhead(config.name(), config.threads(), config.queueCapacity());
+			bulkheads.put(config.name(), bulkhead);
+			for (short opcode : config.opcodes()) {
+				int index = index(opcode);
+				if (null != opcodes[index]) {
+					shutdown();
+					throw new IllegalArgumentException(
+							"opcode[" + opcode + "] mapped to both bulkhead[" + opcodes[index].name() + "] and ["
+									+ config.name() + "]");
+				}
+				opcodes[index] = bulkhead;
+			}
+		}
+	}
+
+	/**
+	 * @return {@code null} if {@code opcode} is not isolated
+	 */
+	public Bulkhead find(int opcode) {
+		int index = index(opcode);
+		return index < opcodes.length ? opcodes[index] : null;
+	}
+
+	public Bulkhead get(String name) {
+		return bulkheads.get(name);
+	}
+
+	public Collection<Bulkhead> all() {
+		return Collections.unmodifiableCollection(bulkheads.values());
+	}
+
+	public void shutdown() {
+		for (Bulkhead bulkhead : bulkheads.values()) {
+			bulkhead.shutdown();
+		}
+	}
+
+	private static int index(int opcode) {
+		return opcode & 0xFFFF;
+	}
+}
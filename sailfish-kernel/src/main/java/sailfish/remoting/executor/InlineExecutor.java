@@ -0,0 +1,124 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.executor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * inline execution policy for cheap {@link RequestProcessor}s, return an instance of it from
+ * {@link RequestProcessor#executor()} and the request will be processed directly in the thread which decoded
+ * it(the channel's event thread) without any thread hop
+ *
+ * <pre>
+ * --every task is timed, one which takes longer than blockingThreshold is logged as blocking the event thread
+ * --after maxBlockingTimes blocking tasks, the executor is demoted and hands all later tasks to fallback executor
+ * --use one instance per {@link RequestProcessor}, demotion is tracked per instance
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: InlineExecutor.java, v 0.1 2016年12月13日 下午4:05:12 spccold Exp $
+ */
+public class InlineExecutor implements Executor {
+
+	private static final Logger logger = LoggerFactory.getLogger(InlineExecutor.class);
+
+	private static final long DEFAULT_BLOCKING_THRESHOLD_MILLIS;
+	private static final int DEFAULT_MAX_BLOCKING_TIMES;
+	static {
+		DEFAULT_BLOCKING_THRESHOLD_MILLIS = SystemPropertyUtil.getLong("sailfish.inlineExecutor.blockingThresholdMillis", 10);
+		DEFAULT_MAX_BLOCKING_TIMES = SystemPropertyUtil.getInt("sailfish.inlineExecutor.maxBlockingTimes", 3);
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.inlineExecutor.blockingThresholdMillis: {}", DEFAULT_BLOCKING_THRESHOLD_MILLIS);
+			logger.debug("-Dsailfish.inlineExecutor.maxBlockingTimes: {}", DEFAULT_MAX_BLOCKING_TIMES);
+		}
+	}
+
+	private static final AtomicIntegerFieldUpdater<InlineExecutor> BLOCKING_TIMES_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(InlineExecutor.class, "blockingTimes");
+
+	private final String name;
+	private final long blockingThresholdNanos;
+	private final int maxBlockingTimes;
+	private final Executor fallback;
+
+	private volatile int blockingTimes;
+	private volatile boolean demoted;
+
+	public InlineExecutor(String name) {
+		this(name, DEFAULT_BLOCKING_THRESHOLD_MILLIS, DEFAULT_MAX_BLOCKING_TIMES, SimpleExecutor.INSTANCE);
+	}
+
+	/**
+	 * @param maxBlockingTimes {@code 0} means never demote
+	 */
+	public InlineExecutor(String name, long blockingThresholdMillis, int maxBlockingTimes, Executor fallback) {
+		this.name = ParameterChecker.checkNotBlank(name, "name");
+		this.blockingThresholdNanos = TimeUnit.MILLISECONDS
+				.toNanos(ParameterChecker.checkNotNegative(blockingThresholdMillis, "blockingThresholdMillis"));
+		this.maxBlockingTimes = ParameterChecker.checkNotNegative(maxBlockingTimes, "maxBlockingTimes");
+		this.fallback = ParameterChecker.checkNotNull(fallback, "fallback");
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (demoted) {
+			fallback.execute(task);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			task.run();
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			if (elapsed > blockingThresholdNanos) {
+				onBlocking(elapsed);
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if later tasks are handed to fallback executor
+	 */
+	public boolean isDemoted() {
+		return demoted;
+	}
+
+	private void onBlocking(long elapsedNanos) {
+		int times = BLOCKING_TIMES_UPDATER.incrementAndGet(this);
+		logger.warn("inline executor[{}] blocked thread[{}] for {}ms, times[{}]", name, Thread.currentThread().getName(),
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos), times);
+		if (maxBlockingTimes > 0 && times >= maxBlockingTimes && !demoted) {
+			demoted = true;
+			logger.warn("inline executor[{}] demoted, later tasks will be executed by [{}]", name, fallback);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "InlineExecutor [name=" + name + ", demoted=" + demoted + "]";
+	}
+}
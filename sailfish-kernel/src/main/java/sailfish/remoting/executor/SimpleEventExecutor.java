@@ -0,0 +1,92 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.executor;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.concurrent.AbstractEventExecutor;
+import io.netty.util.concurrent.FailedFuture;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * {@link SimpleExecutor} in the shape of netty {@link io.netty.util.concurrent.EventExecutor}, so promise listeners
+ * are spread over the workers of {@link SimpleExecutor} instead of the single thread of {@link GlobalEventExecutor}
+ *
+ * <pre>
+ * --no thread is regarded as in event loop, every notification is a task of {@link SimpleExecutor}
+ * --shared and never shut down, like {@link io.netty.util.concurrent.ImmediateEventExecutor}
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: SimpleEventExecutor.java, v 0.1 2016年12月19日 下午2:08:41 spccold Exp $
+ */
+public final class SimpleEventExecutor extends AbstractEventExecutor {
+	public static final SimpleEventExecutor INSTANCE = new SimpleEventExecutor();
+
+	private final Future<?> terminationFuture = new FailedFuture<Object>(GlobalEventExecutor.INSTANCE,
+			new UnsupportedOperationException());
+
+	private SimpleEventExecutor() {
+	}
+
+	@Override
+	public boolean inEventLoop(Thread thread) {
+		return false;
+	}
+
+	@Override
+	public boolean isShuttingDown() {
+		return false;
+	}
+
+	@Override
+	public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+		return terminationFuture();
+	}
+
+	@Override
+	public Future<?> terminationFuture() {
+		return terminationFuture;
+	}
+
+	@Override
+	@Deprecated
+	public void shutdown() {
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return false;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return false;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) {
+		return false;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		SimpleExecutor.INSTANCE.execute(task);
+	}
+}
@@ -17,40 +17,62 @@
  */
 package sailfish.remoting.executor;
 
-import java.util.LinkedList;
+import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 
 /**
- * similar implementation
+ * default executor of sailfish, for request processors without their own executor and for response callbacks
  * 
  * <pre>
+ * --a fixed number of workers, each is a FastThreadLocalThread(benefit from Recycler) draining its own lock-free
+ *   multi-producer single-consumer queue, workers are started on first use and park when idle
+ * --workers are picked round robin by default, so a busy event loop spreads its tasks over all workers
+ * --with {@code -Dsailfish.simpleExector.affinity=true}, tasks submitted by the same thread(e.g. an event loop)
+ *   always go to the same worker, so they keep their order and stay on one cpu cache, but few event loops
+ *   keep the rest of workers idle
+ * --{@code -Dsailfish.simpleExector.preferGlobalEventExecutor=true} falls back to the single thread of
+ *   {@link GlobalEventExecutor}
+ * </pre>
+ * 
+ * similar implementation
+ * <pre>
  * 		<a href="https://github.com/eclipse/vert.x/blob/65a1050b0922de38329cdbe90c5ecd8094a93a04/
  * 		src/main/java/io/vertx/core/impl/OrderedExecutorFactory.java">OrderedExecutorFactory In Vert.x</a>
  * 		
  * 		<a href=https://github.com/netty/netty/blob/eb7f751ba519cbcab47d640cd18757f09d077b55/common
  * 		/src/main/java/io/netty/util/concurrent/GlobalEventExecutor.java">GlobalEventExecutor In Netty</a>
  * </pre>
- * need long-running?
  * 
  * @author spccold
  * @version $Id: SimpleExecutor.java, v 0.1 2016年11月1日 下午3:14:52 jileng Exp $
  */
-public class SimpleExecutor implements Executor, Runnable {
+public class SimpleExecutor implements Executor {
 
 	private static final Logger logger = LoggerFactory.getLogger(SimpleExecutor.class);
 	
 	private static final boolean preferGlobalEventExecutor;
+	private static final int threads;
+	private static final boolean affinity;
 	static{
-		preferGlobalEventExecutor = SystemPropertyUtil.getBoolean("sailfish.simpleExector.preferGlobalEventExecutor", true);
+		preferGlobalEventExecutor = SystemPropertyUtil.getBoolean("sailfish.simpleExector.preferGlobalEventExecutor", false);
+		threads = Math.max(1, SystemPropertyUtil.getInt("sailfish.simpleExector.threads",
+				Runtime.getRuntime().availableProcessors()));
+		affinity = SystemPropertyUtil.getBoolean("sailfish.simpleExector.affinity", false);
 		if(logger.isDebugEnabled()){
 			logger.debug("-Dsailfish.simpleExector.preferGlobalEventExecutor: {}", preferGlobalEventExecutor);
+			logger.debug("-Dsailfish.simpleExector.threads: {}", threads);
+			logger.debug("-Dsailfish.simpleExector.affinity: {}", affinity);
 		}
 	}
 	
@@ -58,10 +80,16 @@ public class SimpleExecutor implements Executor, Runnable {
 	private final DefaultThreadFactory THREADFACTORY = new DefaultThreadFactory("sailfish-simpleexecutor", true);
 
 	public static final SimpleExecutor INSTANCE = new SimpleExecutor();
-	private final LinkedList<Runnable> tasks = new LinkedList<>();
-	private volatile boolean isRunning = false;
+	
+	private final Worker[] workers;
+	private final AtomicInteger index = new AtomicInteger();
 
-	private SimpleExecutor() { }
+	private SimpleExecutor() {
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(THREADFACTORY);
+		}
+	}
 
 	@Override
 	public void execute(Runnable task) {
@@ -69,34 +97,73 @@ public class SimpleExecutor implements Executor, Runnable {
 			GlobalEventExecutor.INSTANCE.execute(task);
 			return;
 		}
-		synchronized (tasks) {
-			tasks.add(task);
-			if (!this.isRunning) {
-				this.isRunning = true;
-				newThread().start();
-			}
+		if (null == task) {
+			throw new NullPointerException("task");
 		}
+		next().execute(task);
 	}
 
-	private Thread newThread() {
-		return THREADFACTORY.newThread(this);
+	private Worker next() {
+		if (workers.length == 1) {
+			return workers[0];
+		}
+		if (affinity) {
+			long id = Thread.currentThread().getId();
+			return workers[(int) ((id ^ (id >>> 32)) & Integer.MAX_VALUE) % workers.length];
+		}
+		return workers[(index.getAndIncrement() & Integer.MAX_VALUE) % workers.length];
 	}
 
-	@Override
-	public void run() {
-		for (;;) {
-			Runnable currentTask = null;
-			synchronized (tasks) {
-				currentTask = tasks.poll();
-				if (null == currentTask) {
-					this.isRunning = false;
-					break;
+	static final class Worker implements Runnable {
+		private static final int NOT_STARTED = 0;
+		private static final int AWAKE = 1;
+		private static final int SLEEPING = 2;
+		private static final AtomicIntegerFieldUpdater<Worker> STATE_UPDATER = AtomicIntegerFieldUpdater
+				.newUpdater(Worker.class, "state");
+
+		private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+		private final DefaultThreadFactory threadFactory;
+		private volatile Thread thread;
+		private volatile int state = NOT_STARTED;
+
+		Worker(DefaultThreadFactory threadFactory) {
+			this.threadFactory = threadFactory;
+		}
+
+		void execute(Runnable task) {
+			tasks.offer(task);
+			int current = state;
+			if (current == SLEEPING) {
+				if (STATE_UPDATER.compareAndSet(this, SLEEPING, AWAKE)) {
+					LockSupport.unpark(thread);
 				}
+			} else if (current == NOT_STARTED && STATE_UPDATER.compareAndSet(this, NOT_STARTED, AWAKE)) {
+				Thread newThread = threadFactory.newThread(this);
+				thread = newThread;
+				newThread.start();
 			}
-			try {
-				currentTask.run();
-			} catch (Throwable cause) {
-				logger.error("catch exception by SimpleExecutor", cause);
+		}
+
+		@Override
+		public void run() {
+			for (;;) {
+				Runnable task = tasks.poll();
+				if (null != task) {
+					try {
+						task.run();
+					} catch (Throwable cause) {
+						logger.error("catch exception by SimpleExecutor", cause);
+					}
+					continue;
+				}
+				state = SLEEPING;
+				// a producer may have offered before seeing SLEEPING
+				if (!tasks.isEmpty()) {
+					STATE_UPDATER.compareAndSet(this, SLEEPING, AWAKE);
+					continue;
+				}
+				LockSupport.park(this);
+				state = AWAKE;
 			}
 		}
 	}
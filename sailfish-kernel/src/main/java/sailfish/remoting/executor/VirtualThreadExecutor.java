@@ -0,0 +1,115 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.executor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.processors.RequestProcessor;
+
+/**
+ * executor for {@link RequestProcessor}s which block(e.g. on databases), return {@link #INSTANCE} from
+ * {@link RequestProcessor#executor()} or enable it for the whole server by
+ * {@link sailfish.remoting.configuration.ExchangeServerConfig#virtualThreads(boolean)}
+ *
+ * <pre>
+ * --one virtual thread per task if the running JDK supports virtual threads(looked up by reflection, sailfish
+ *   itself still builds for old JDKs)
+ * --otherwise falls back to an elastic pool of platform threads, -Dsailfish.virtualThreadExecutor.fallbackThreads
+ *   (default 256) bounds it, idle threads exit after 60 seconds
+ * --virtual threads are not FastThreadLocalThreads, avoid {@link io.netty.util.Recycler} in blocking processors
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: VirtualThreadExecutor.java, v 0.1 2016年12月16日 上午10:03:27 spccold Exp $
+ */
+public class VirtualThreadExecutor implements Executor {
+
+	private static final Logger logger = LoggerFactory.getLogger(VirtualThreadExecutor.class);
+
+	private static final int FALLBACK_THREADS;
+	static {
+		FALLBACK_THREADS = Math.max(1, SystemPropertyUtil.getInt("sailfish.virtualThreadExecutor.fallbackThreads", 256));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.virtualThreadExecutor.fallbackThreads: {}", FALLBACK_THREADS);
+		}
+	}
+
+	public static final VirtualThreadExecutor INSTANCE = new VirtualThreadExecutor();
+
+	private final Executor delegate;
+	private final boolean virtual;
+
+	private VirtualThreadExecutor() {
+		Executor executor = newVirtualThreadPerTaskExecutor();
+		this.virtual = (null != executor);
+		if (null == executor) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(FALLBACK_THREADS, FALLBACK_THREADS, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new DefaultThreadFactory("sailfish-blocking", true));
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		this.delegate = executor;
+		logger.info("VirtualThreadExecutor runs tasks on {}", virtual ? "virtual threads"
+				: "platform threads, virtual threads unsupported by current JDK");
+	}
+
+	/**
+	 * @return {@code true} if tasks run on virtual threads, {@code false} if fell back to platform threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		delegate.execute(task);
+	}
+
+	// Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sailfish-virtual-", 0).factory())
+	private static Executor newVirtualThreadPerTaskExecutor() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "sailfish-virtual-", 0L);
+			ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (Executor) newExecutor.invoke(null, factory);
+		} catch (Throwable cause) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("virtual threads unsupported", cause);
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualThreadExecutor [virtual=" + virtual + "]";
+	}
+}
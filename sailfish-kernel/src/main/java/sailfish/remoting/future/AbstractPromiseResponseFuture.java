@@ -0,0 +1,182 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import sailfish.remoting.ResponseCallback;
+import sailfish.remoting.Tracer;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.executor.SimpleExecutor;
+import sailfish.remoting.protocol.ResponseProtocol;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * {@link ResponseFuture} backed by netty {@link Promise}, completion is a CAS without monitor unless someone blocks on
+ * it, listeners are notified by the {@link EventExecutor} given at construction
+ * ({@link io.netty.util.concurrent.ImmediateEventExecutor} means inline on the io thread which reads the response),
+ * a {@link ResponseCallback} runs on its own {@link ResponseCallback#getExecutor()} like {@link AbstractResponseFuture}
+ * 
+ * @author spccold
+ * @version $Id: AbstractPromiseResponseFuture.java, v 0.1 2016年12月6日 上午10:05:44 spccold Exp $
+ */
+public abstract class AbstractPromiseResponseFuture<T> implements ResponseFuture<T> {
+	private static final Logger logger = LoggerFactory.getLogger(AbstractPromiseResponseFuture.class);
+
+	private final int packetId;
+	private final Tracer tracer;
+	private final Promise<T> promise;
+
+	protected AbstractPromiseResponseFuture(int packetId, Tracer tracer, EventExecutor executor) {
+		this.packetId = packetId;
+		this.tracer = tracer;
+		this.promise = new ResponsePromise<>(ParameterChecker.checkNotNull(executor, "executor"));
+	}
+
+	/**
+	 * composable view of this future
+	 */
+	public Future<T> promise() {
+		return promise;
+	}
+
+	@Override
+	public void putResponse(T data, byte result, SailfishException cause) {
+		if (result == RemotingConstants.RESULT_SUCCESS) {
+			promise.trySuccess(data);
+			return;
+		}
+		if (null == cause) {
+			cause = new SailfishException(errorMessage(data)).toRemoteException();
+		}
+		promise.tryFailure(cause);
+	}
+
+	@Override
+	public void putResponse(ResponseProtocol response) {
+		putResponse(extract(response), response.result(), response.cause());
+	}
+
+	@Override
+	public boolean isDone() {
+		return promise.isDone();
+	}
+
+	@Override
+	public void setCallback(final ResponseCallback<T> callback) {
+		if (null == callback) {
+			return;
+		}
+		promise.addListener(new FutureListener<T>() {
+			@Override
+			public void operationComplete(final Future<T> future) throws Exception {
+				Runnable task = new Runnable() {
+					@Override
+					public void run() {
+						if (future.isSuccess()) {
+							callback.handleResponse(future.getNow());
+						} else {
+							callback.handleException(toSailfishException(future.cause()));
+						}
+					}
+				};
+				Executor executor = null != callback.getExecutor() ? callback.getExecutor() : SimpleExecutor.INSTANCE;
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException cause) {
+					logger.error(String.format(
+							"executor[%s] reject to execute callback task, SimpleExecutor will pick task up", executor),
+							cause);
+					SimpleExecutor.INSTANCE.execute(task);
+				}
+			}
+		});
+	}
+
+	@Override
+	public T get() throws SailfishException, InterruptedException {
+		promise.await();
+		return result();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws SailfishException, InterruptedException {
+		ParameterChecker.checkPositive(timeout, "timeout");
+		if (!promise.await(timeout, unit)) {
+			timeout();
+		}
+		return result();
+	}
+
+	private void timeout() {
+		String msg = String.format("wait response for packetId[%d] timeout", packetId);
+		if (promise.tryFailure(new SailfishException(ExceptionCode.RESPONSE_TIMEOUT, msg))) {
+			tracer.remove(packetId);
+		}
+	}
+
+	private T result() throws SailfishException {
+		if (promise.isSuccess()) {
+			return promise.getNow();
+		}
+		throw toSailfishException(promise.cause());
+	}
+
+	private static SailfishException toSailfishException(Throwable cause) {
+		if (cause instanceof SailfishException) {
+			return (SailfishException) cause;
+		}
+		return new SailfishException(cause);
+	}
+
+	/**
+	 * the notify executor is not the thread which completes the promise, blocking on it never dead locks
+	 */
+	static final class ResponsePromise<T> extends DefaultPromise<T> {
+		ResponsePromise(EventExecutor executor) {
+			super(executor);
+		}
+
+		@Override
+		protected void checkDeadLock() {
+			// ImmediateEventExecutor is always in event loop
+		}
+	}
+
+	/**
+	 * take the body of {@code response} in the form of {@code T}
+	 */
+	protected abstract T extract(ResponseProtocol response);
+
+	/**
+	 * convert the body of failed response to error message
+	 */
+	protected abstract String errorMessage(T data);
+}
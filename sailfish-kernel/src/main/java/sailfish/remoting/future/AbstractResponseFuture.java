@@ -0,0 +1,213 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import sailfish.remoting.ResponseCallback;
+import sailfish.remoting.Tracer;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.executor.SimpleExecutor;
+import sailfish.remoting.protocol.ResponseProtocol;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: AbstractResponseFuture.java, v 0.1 2016年10月4日 下午3:57:32 jileng Exp $
+ */
+public abstract class AbstractResponseFuture<T> implements ResponseFuture<T> {
+	
+	private static final Logger logger = LoggerFactory.getLogger(AbstractResponseFuture.class);
+	
+	private final int packetId;
+	private volatile boolean done;
+	private volatile boolean successed;
+	private ResponseCallback<T> callback;
+	private T data;
+
+	private volatile SailfishException cause;
+	private final Tracer tracer;
+
+	protected AbstractResponseFuture(int packetId, Tracer tracer) {
+		this.packetId = packetId;
+		this.tracer = tracer;
+	}
+
+	@Override
+	public boolean isDone() {
+		return this.done;
+	}
+
+	@Override
+	public T get() throws SailfishException, InterruptedException {
+		synchronized (this) {
+			while (!this.done) {
+				wait();
+			}
+		}
+		if (!this.successed) {
+			if (null == cause) {
+				this.cause = new SailfishException(errorMessage(data)).toRemoteException();
+			}
+			throw cause;
+		}
+		return data;
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws SailfishException, InterruptedException {
+		ParameterChecker.checkPositive(timeout, "timeout");
+		synchronized (this) {
+			long timeToSleep = unit.toMillis(timeout);
+			long deadline = System.currentTimeMillis() + timeToSleep;
+			while (!this.done && timeToSleep > 0) {
+				wait(timeToSleep);
+				timeToSleep = deadline - System.currentTimeMillis();
+			}
+		}
+		if (!this.done) {
+			this.done = true;
+			removeTrace();
+			String msg = String.format("wait response for packetId[%d] timeout", packetId);
+			this.cause = new SailfishException(ExceptionCode.RESPONSE_TIMEOUT, msg);
+			throw cause;
+		}
+		if (!this.successed) {
+			if (null == cause) {
+				this.cause = new SailfishException(errorMessage(data)).toRemoteException();
+			}
+			throw cause;
+		}
+		return data;
+	}
+
+	@Override
+	public void putResponse(T data, byte result, SailfishException cause) {
+		synchronized (this) {
+			this.done = true;
+			this.cause = cause;
+			this.data = data;
+			switch (result) {
+			case RemotingConstants.RESULT_SUCCESS:
+				this.successed = true;
+				break;
+			case RemotingConstants.RESULT_FAIL:
+			case RemotingConstants.RESULT_OVERLOAD:
+				this.successed = false;
+				break;
+			}
+			notifyAll();
+		}
+
+		if (null == callback) {
+			return;
+		}
+		executeCallbackTask();
+	}
+
+	@Override
+	public void putResponse(ResponseProtocol response) {
+		putResponse(extract(response), response.result(), response.cause());
+	}
+
+	@Override
+	public void setCallback(final ResponseCallback<T> callback) {
+		if (null == callback || this.done) {
+			return;
+		}
+		this.callback = callback;
+	}
+
+	private void executeCallbackTask() {
+		Executor executor = null != this.callback.getExecutor() ? this.callback.getExecutor() : SimpleExecutor.INSTANCE;
+		try {
+			executor.execute(CallbackTask.newInstance(this));
+		} catch (RejectedExecutionException cause) {
+			logger.error(String.format("executor[%s] reject to execute callback task, SimpleExecutor will pick task up", executor), cause);
+			SimpleExecutor.INSTANCE.execute(CallbackTask.newInstance(this));
+		}
+	}
+
+	private void removeTrace() {
+		this.tracer.remove(packetId);
+	}
+
+	private void notifyCallback() {
+		if (successed) {
+			callback.handleResponse(data);
+			return;
+		}
+		if (null == cause) {
+			cause = new SailfishException(errorMessage(data)).toRemoteException();
+		}
+		callback.handleException(cause);
+	}
+
+	/**
+	 * take the body of {@code response} in the form of {@code T}
+	 */
+	protected abstract T extract(ResponseProtocol response);
+
+	/**
+	 * convert the body of failed response to error message
+	 */
+	protected abstract String errorMessage(T data);
+
+	static final class CallbackTask implements Runnable {
+
+		private static final Recycler<CallbackTask> RECYCLER = new Recycler<AbstractResponseFuture.CallbackTask>() {
+			@Override
+			protected CallbackTask newObject(Recycler.Handle<CallbackTask> handle) {
+				return new CallbackTask(handle);
+			}
+		};
+
+		public static CallbackTask newInstance(AbstractResponseFuture<?> responseFuture) {
+			CallbackTask callbackTask = RECYCLER.get();
+			callbackTask.responseFuture = responseFuture;
+			return callbackTask;
+		}
+
+		private final Recycler.Handle<CallbackTask> handle;
+		private AbstractResponseFuture<?> responseFuture;
+
+		public CallbackTask(Handle<CallbackTask> handle) {
+			this.handle = handle;
+		}
+
+		@Override
+		public void run() {
+			try {
+				responseFuture.notifyCallback();
+			} finally {
+				responseFuture = null;
+				handle.recycle(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * completes with results of all added futures in adding order, or fails with the cause of the first failed one
+ * 
+ * @author spccold
+ * @version $Id: AggregatePromise.java, v 0.1 2016年12月18日 上午10:14:26 spccold Exp $
+ */
+public class AggregatePromise<T> extends DefaultPromise<List<T>> {
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<AggregatePromise> REMAINING_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(AggregatePromise.class, "remaining");
+
+	private final Object[] results;
+	private volatile int remaining;
+
+	public AggregatePromise(EventExecutor executor, int size) {
+		super(executor);
+		this.results = new Object[ParameterChecker.checkPositive(size, "size")];
+		this.remaining = size;
+	}
+
+	/**
+	 * @param index position of the result of {@code future} in the aggregated list
+	 */
+	public AggregatePromise<T> add(final int index, Future<T> future) {
+		future.addListener(new FutureListener<T>() {
+			@Override
+			public void operationComplete(Future<T> future) throws Exception {
+				if (!future.isSuccess()) {
+					tryFailure(future.cause());
+					return;
+				}
+				results[index] = future.getNow();
+				if (REMAINING_UPDATER.decrementAndGet(AggregatePromise.this) == 0) {
+					trySuccess(aggregate());
+				}
+			}
+		});
+		return this;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<T> aggregate() {
+		return (List<T>) Arrays.asList(results);
+	}
+
+	@Override
+	protected void checkDeadLock() {
+		// ImmediateEventExecutor is always in event loop
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+import sailfish.remoting.Tracer;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * zero-copy response future, the response body is a retained slice of the received frame
+ * <pre>
+ * --the {@link ByteBuf} returned by {@link #get()} or passed to {@link sailfish.remoting.ResponseCallback#handleResponse(Object)}
+ *   belongs to caller, caller must release it
+ * --the body of failed response will be released after converted to error message
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: ByteBufResponseFuture.java, v 0.1 2016年12月3日 下午4:21:09 spccold Exp $
+ */
+public class ByteBufResponseFuture extends AbstractResponseFuture<ByteBuf> {
+
+	public ByteBufResponseFuture(int packetId, Tracer tracer) {
+		super(packetId, tracer);
+	}
+
+	@Override
+	protected ByteBuf extract(ResponseProtocol response) {
+		return response.detachBody();
+	}
+
+	@Override
+	protected String errorMessage(ByteBuf data) {
+		if (null == data) {
+			return null;
+		}
+		try {
+			return data.toString(CharsetUtil.UTF_8);
+		} finally {
+			data.release();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.EventExecutor;
+import sailfish.remoting.Tracer;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: BytesPromiseResponseFuture.java, v 0.1 2016年12月6日 上午10:31:18 spccold Exp $
+ */
+public class BytesPromiseResponseFuture extends AbstractPromiseResponseFuture<byte[]> {
+
+	public BytesPromiseResponseFuture(int packetId, Tracer tracer, EventExecutor executor) {
+		super(packetId, tracer, executor);
+	}
+
+	@Override
+	protected byte[] extract(ResponseProtocol response) {
+		return response.body();
+	}
+
+	@Override
+	protected String errorMessage(byte[] data) {
+		return new String(data, CharsetUtil.UTF_8);
+	}
+}
@@ -27,10 +27,12 @@ import sailfish.remoting.exceptions.SailfishException;
  * @author spccold
  * @version $Id: ResponseFuture.java, v 0.1 2016年10月4日 下午3:56:21 jileng Exp $
  */
-public interface ResponseFuture<T>{
-    void putResponse(T resp, byte result, SailfishException cause);
-    boolean isDone();
-    void setCallback(ResponseCallback<T> callback, int timeout);
+public interface ResponseFuture<T> extends ResponseSink<T>{
+    /**
+     * response timeout is tracked by {@link sailfish.remoting.Tracer}, timeout will be delivered by
+     * {@link #putResponse(Object, byte, SailfishException)} too
+     */
+    void setCallback(ResponseCallback<T> callback);
     T get() throws SailfishException, InterruptedException;
     T get(long timeout, TimeUnit unit) throws SailfishException, InterruptedException;
 }
@@ -0,0 +1,38 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * receiver of responses traced by {@link sailfish.remoting.Tracer}, completed by responses or timeout
+ * 
+ * @author spccold
+ * @version $Id: ResponseSink.java, v 0.1 2016年12月20日 上午10:12:37 spccold Exp $
+ */
+public interface ResponseSink<T> {
+	void putResponse(T resp, byte result, SailfishException cause);
+
+	/**
+	 * complete with {@link ResponseProtocol}, take the body in the form of {@code T}
+	 */
+	void putResponse(ResponseProtocol response);
+
+	boolean isDone();
+}
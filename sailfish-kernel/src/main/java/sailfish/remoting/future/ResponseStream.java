@@ -0,0 +1,286 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.future;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.CharsetUtil;
+import sailfish.remoting.RequestControl;
+import sailfish.remoting.StreamCallback;
+import sailfish.remoting.Tracer;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.executor.SimpleExecutor;
+import sailfish.remoting.protocol.ResponseProtocol;
+import sailfish.remoting.protocol.StreamCredit;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * client side of a streaming response, chunks are pulled one by one with {@link #next()}, or pushed to a
+ * {@link StreamCallback} after {@link #subscribe(StreamCallback)}
+ * 
+ * <pre>
+ * --the server sends at most {@code credits} chunks ahead of consumption, consumed credits are granted back
+ *   to the server in batches of half of them, so memory of both sides is bounded
+ * --body of the final response, if any, is the last chunk
+ * --response timeout of {@link RequestControl} bounds the silence of the stream, every chunk received and every
+ *   credit granted restarts it
+ * --{@link #next()} must be invoked by one thread at a time, and not at all once subscribed
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: ResponseStream.java, v 0.1 2016年12月18日 下午3:41:07 spccold Exp $
+ */
+public class ResponseStream implements ResponseSink<byte[]> {
+	private static final Logger logger = LoggerFactory.getLogger(ResponseStream.class);
+	private static final byte[] EMPTY = new byte[0];
+	private static final AtomicIntegerFieldUpdater<ResponseStream> WIP_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(ResponseStream.class, "wip");
+
+	private final int packetId;
+	private final Tracer tracer;
+	// the connection which carries the stream, credits must go through it
+	private final ExchangeChannel channel;
+	private final int credits;
+	private final int grantThreshold;
+	private final RequestControl creditControl = new RequestControl();
+	// chunks(byte[]) followed by one End
+	private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+
+	private volatile boolean done;
+	private volatile StreamCallback callback;
+	// pending drain requests, the one which raises it from zero drains
+	private volatile int wip;
+	// only accessed by consumer, the puller or the drain task of callback
+	private boolean ended;
+	// callback has been told the end or failure of stream
+	private boolean finished;
+	private SailfishException cause;
+	private int consumed;
+
+	public ResponseStream(int packetId, Tracer tracer, ExchangeChannel channel, int credits) {
+		this.packetId = packetId;
+		this.tracer = tracer;
+		this.channel = ParameterChecker.checkNotNull(channel, "channel");
+		this.credits = ParameterChecker.checkPositive(credits, "credits");
+		this.grantThreshold = Math.max(1, credits >> 1);
+		this.creditControl.opcode(RemotingConstants.STREAM_CREDIT_OPCODE);
+	}
+
+	/**
+	 * announce the stream with initial credits, must be invoked before the stream request is written
+	 */
+	public void open() throws SailfishException {
+		channel.oneway(StreamCredit.encode(packetId, credits, StreamCredit.OPEN), creditControl);
+	}
+
+	/**
+	 * push chunks received so far and all later ones to {@code callback} on its executor, {@link #next()} must not be
+	 * used afterwards
+	 */
+	public void subscribe(StreamCallback callback) {
+		ParameterChecker.checkNotNull(callback, "callback");
+		if (null != this.callback) {
+			throw new IllegalStateException("stream of packetId[" + packetId + "] has been subscribed");
+		}
+		this.callback = callback;
+		drain();
+	}
+
+	private void drain() {
+		final StreamCallback callback = this.callback;
+		if (null == callback || WIP_UPDATER.getAndIncrement(this) != 0) {
+			return;
+		}
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				int missed = 1;
+				for (;;) {
+					Object chunk;
+					while (!finished && null != (chunk = chunks.poll())) {
+						deliver(callback, chunk);
+					}
+					missed = WIP_UPDATER.addAndGet(ResponseStream.this, -missed);
+					if (missed == 0) {
+						return;
+					}
+				}
+			}
+		};
+		Executor executor = null != callback.getExecutor() ? callback.getExecutor() : SimpleExecutor.INSTANCE;
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException cause) {
+			logger.error(String.format(
+					"executor[%s] reject to execute stream callback task, SimpleExecutor will pick task up", executor),
+					cause);
+			SimpleExecutor.INSTANCE.execute(task);
+		}
+	}
+
+	private void deliver(StreamCallback callback, Object chunk) {
+		try {
+			byte[] data = take(chunk);
+			if (null != data) {
+				callback.handleChunk(data);
+			}
+			if (ended) {
+				end();
+				finished = true;
+				callback.handleEnd();
+			}
+		} catch (SailfishException cause) {
+			finished = true;
+			if (!ended) {// granting credits failed, nothing more will be delivered
+				cancel();
+			}
+			callback.handleException(cause);
+		} catch (Throwable cause) {
+			logger.error(String.format("stream callback error, packetId[%d]", packetId), cause);
+		}
+	}
+
+	/**
+	 * @return next chunk, {@code null} if the stream has ended
+	 * @throws SailfishException
+	 *             if the stream failed, chunks received before the failure are returned first
+	 */
+	public byte[] next() throws SailfishException, InterruptedException {
+		if (ended) {
+			return end();
+		}
+		return take(chunks.take());
+	}
+
+	/**
+	 * @throws SailfishException
+	 *             with {@link ExceptionCode#RESPONSE_TIMEOUT} if no chunk arrives within {@code timeout}, the stream
+	 *             stays usable
+	 */
+	public byte[] next(long timeout, TimeUnit unit) throws SailfishException, InterruptedException {
+		ParameterChecker.checkPositive(timeout, "timeout");
+		if (ended) {
+			return end();
+		}
+		Object chunk = chunks.poll(timeout, unit);
+		if (null == chunk) {
+			throw new SailfishException(ExceptionCode.RESPONSE_TIMEOUT,
+					String.format("wait chunk for packetId[%d] timeout", packetId));
+		}
+		return take(chunk);
+	}
+
+	private byte[] take(Object chunk) throws SailfishException {
+		if (chunk instanceof End) {
+			End end = (End) chunk;
+			ended = true;
+			cause = end.cause;
+			if (null != end.data && end.data.length > 0) {
+				return end.data;
+			}
+			return end();
+		}
+		if (++consumed >= grantThreshold) {
+			int granted = consumed;
+			consumed = 0;
+			if (!done) {
+				tracer.touch(packetId);
+				channel.oneway(StreamCredit.encode(packetId, granted, StreamCredit.GRANT), creditControl);
+			}
+		}
+		return (byte[]) chunk;
+	}
+
+	private byte[] end() throws SailfishException {
+		if (null != cause) {
+			throw cause;
+		}
+		return null;
+	}
+
+	/**
+	 * chunk if {@link ResponseProtocol#stream()}, otherwise end of stream
+	 */
+	@Override
+	public void putResponse(ResponseProtocol response) {
+		if (response.stream()) {
+			byte[] data = response.body();
+			chunks.offer(null == data ? EMPTY : data);
+			drain();
+			return;
+		}
+		putResponse(response.body(), response.result(), response.cause());
+	}
+
+	@Override
+	public void putResponse(byte[] data, byte result, SailfishException cause) {
+		if (done) {
+			return;
+		}
+		done = true;
+		if (result != RemotingConstants.RESULT_SUCCESS && null == cause) {
+			cause = new SailfishException(
+					null == data ? "stream failed" : new String(data, CharsetUtil.UTF_8)).toRemoteException();
+		}
+		chunks.offer(result == RemotingConstants.RESULT_SUCCESS ? new End(data, null) : new End(null, cause));
+		drain();
+	}
+
+	@Override
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * stop waiting for the rest of stream, the server is told to stop producing
+	 */
+	public void cancel() {
+		tracer.remove(packetId);
+		if (!done) {
+			try {
+				channel.oneway(StreamCredit.encode(packetId, 0, StreamCredit.CANCEL), creditControl);
+			} catch (SailfishException cause) {
+				// the server gives up after credit timeout anyway
+				logger.warn(String.format("send cancel of stream packetId[%d] fail", packetId), cause);
+			}
+		}
+		putResponse(null, RemotingConstants.RESULT_FAIL,
+				new SailfishException(String.format("stream of packetId[%d] cancelled", packetId)));
+	}
+
+	private static final class End {
+		private final byte[] data;
+		private final SailfishException cause;
+
+		End(byte[] data, SailfishException cause) {
+			this.data = data;
+			this.cause = cause;
+		}
+	}
+}
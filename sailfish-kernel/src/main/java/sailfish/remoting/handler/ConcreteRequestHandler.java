@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.SimpleChannelInboundHandler;
 import sailfish.remoting.channel.ExchangeChannelGroup;
+import sailfish.remoting.channel.HighPerformanceChannelWriter;
 import sailfish.remoting.constants.ChannelAttrKeys;
 import sailfish.remoting.protocol.Protocol;
 import sailfish.remoting.utils.ChannelUtil;
@@ -50,6 +51,14 @@ public class ConcreteRequestHandler extends SimpleChannelInboundHandler<Protocol
 			channelGroup.getMsgHander().handle(channelGroup, msg);
 		}else{
 			logger.warn("channelGroup not exist, side[{}], protocol[{}]", ChannelUtil.clientSide(ctx) ? "client" : "server", msg);
+			msg.recycle();
 		}
 	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		// resume the bounded writer which stops draining while channel is not writable
+		HighPerformanceChannelWriter.writabilityChanged(ctx.channel());
+		ctx.fireChannelWritabilityChanged();
+	}
 }
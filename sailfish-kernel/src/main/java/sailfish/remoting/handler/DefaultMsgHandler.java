@@ -20,16 +20,23 @@ package sailfish.remoting.handler;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.util.Recycler;
+import sailfish.remoting.admission.AdmissionController;
+import sailfish.remoting.channel.ExchangeChannel;
 import sailfish.remoting.channel.ExchangeChannelGroup;
 import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.executor.Bulkheads;
+import sailfish.remoting.executor.InlineExecutor;
 import sailfish.remoting.executor.SimpleExecutor;
 import sailfish.remoting.processors.Processors;
+import sailfish.remoting.processors.Request;
 import sailfish.remoting.processors.RequestProcessor;
 import sailfish.remoting.processors.Response;
 import sailfish.remoting.protocol.Protocol;
@@ -47,104 +54,381 @@ public class DefaultMsgHandler implements MsgHandler<Protocol> {
 	private static final Logger logger = LoggerFactory.getLogger(DefaultMsgHandler.class);
 
 	private final Processors processors;
+	private final AdmissionController admissionController;
+	private final Bulkheads bulkheads;
+	// for processors without their own executor
+	private final Executor defaultExecutor;
+	// requests dropped because their callers have given up
+	private final AtomicLong expiredRequests = new AtomicLong();
+	private final ResponseStreams streams = new ResponseStreams();
 
 	public DefaultMsgHandler(List<RequestProcessor> requestProcessors) {
+		this(requestProcessors, null, null, null);
+	}
+
+	/**
+	 * @param admissionController {@code null} means admit every request
+	 * @param bulkheads {@code null} means every request goes to {@link RequestProcessor#executor()}
+	 * @param defaultExecutor executor of processors without their own executor, {@code null} means
+	 *        {@link SimpleExecutor}
+	 */
+	public DefaultMsgHandler(List<RequestProcessor> requestProcessors, AdmissionController admissionController,
+			Bulkheads bulkheads, Executor defaultExecutor) {
 		ParameterChecker.checkNotNull(requestProcessors, "requestProcessors");
-		processors = new Processors();
-		for (RequestProcessor processor : requestProcessors) {
-			processors.registerProcessor(processor.opcode(), processor);
-		}
+		processors = new Processors(requestProcessors);
+		this.admissionController = admissionController;
+		this.bulkheads = bulkheads;
+		this.defaultExecutor = (null != defaultExecutor) ? defaultExecutor : SimpleExecutor.INSTANCE;
 	}
 
 	@Override
 	public void handle(final ExchangeChannelGroup channelGroup, Protocol msg) {
 		if (msg.request()) {
 			RequestProtocol requestProtocol = (RequestProtocol) msg;
-			handleRequest(channelGroup, requestProtocol);
+			if (requestProtocol.oneway() && requestProtocol.opcode() == RemotingConstants.STREAM_CREDIT_OPCODE) {
+				streams.onCredit(channelGroup, requestProtocol);
+			} else if (requestProtocol.batch()) {
+				handleBatch(channelGroup, requestProtocol);
+			} else {
+				handleRequest(channelGroup, requestProtocol);
+			}
 		} else {// response
 			channelGroup.getTracer().erase((ResponseProtocol) msg);
 		}
 	}
 
+	@Override
+	public void onClosed(ExchangeChannelGroup channelGroup) {
+		streams.removeAll(channelGroup);
+	}
+
+	/**
+	 * @return {@code null} if admission control is disabled
+	 */
+	public AdmissionController getAdmissionController() {
+		return admissionController;
+	}
+
+	/**
+	 * @return number of requests dropped because their propagated timeout elapsed before being processed
+	 */
+	public long expiredRequests() {
+		return expiredRequests.get();
+	}
+
+	/**
+	 * every item of batch is admitted, dispatched and responded like a single request, so items run in parallel on
+	 * the executor of their processor
+	 */
+	private void handleBatch(final ExchangeChannelGroup channelGroup, RequestProtocol batch) {
+		try {
+			RequestProtocol item = null;
+			while (null != (item = batch.readBatchItem())) {
+				handleRequest(channelGroup, item);
+			}
+		} catch (SailfishException cause) {
+			logger.error(String.format("bad batch request, RequestProtocol[%s]", batch.toString()), cause);
+		} finally {
+			batch.recycle();
+		}
+	}
+
 	private void handleRequest(final ExchangeChannelGroup channelGroup, final RequestProtocol requestProtocol) {
+		if (requestProtocol.expired()) {
+			onExpired(requestProtocol);
+			// never processed, a stream opened for it would wait forever
+			streams.remove(channelGroup, requestProtocol.packetId());
+			requestProtocol.recycle();
+			return;
+		}
 		int opcode = requestProtocol.opcode();
 		final RequestProcessor processor = processors.findProcessor(opcode);
 		//cache responseProtocol in DefaultEventExecutor's inner thread(benefit from FastThreadLocalThread)
 		final ResponseProtocol responseProtocol = ResponseProtocol.newInstance();
 		if (null == processor) {
+			streams.remove(channelGroup, requestProtocol.packetId());
 			String errorMsg = String.format("request processor not found for opcode[%d]", opcode);
 			doResponse(channelGroup, requestProtocol, newErrorResponse(responseProtocol, requestProtocol.packetId(), errorMsg));
 			return;
 		}
+		if (null != admissionController && !admissionController.tryAcquire(opcode)) {
+			streams.remove(channelGroup, requestProtocol.packetId());
+			if (requestProtocol.oneway()) {
+				responseProtocol.recycle();
+				requestProtocol.recycle();
+				return;
+			}
+			// no error stack, keep rejection cheap
+			responseProtocol.packetId(requestProtocol.packetId());
+			responseProtocol.result(RemotingConstants.RESULT_OVERLOAD);
+			doResponse(channelGroup, requestProtocol, responseProtocol);
+			return;
+		}
 
-		Executor executor = (null != processor.executor()) ? processor.executor() : SimpleExecutor.INSTANCE;
-		//cache output instance in DefaultEventExecutor's inner thread(benefit from FastThreadLocalThread)
-		final DefaultOutputImpl output = DefaultOutputImpl.newInstance(channelGroup, requestProtocol, responseProtocol);
+		Executor executor = executor(opcode, processor);
+		//cache task instance in DefaultEventExecutor's inner thread(benefit from FastThreadLocalThread)
+		RequestTask task = RequestTask.newInstance(this, channelGroup, processor, requestProtocol, responseProtocol);
+		task.inline = (executor instanceof InlineExecutor);
 		try {
-			executor.execute(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						processor.handleRequest(requestProtocol.toRequest(), output);
-					} catch (Throwable cause) {
-						String errorMsg = StrUtils.exception2String(cause);
-						doResponse(channelGroup, requestProtocol, newErrorResponse(responseProtocol, requestProtocol.packetId(),
-								errorMsg));
-					}
-				}
-			});
+			executor.execute(task);
 		} catch (RejectedExecutionException cause) {
-			processor.onRejectedExecutionException(requestProtocol.toRequest(), output);
+			task.reject();
+		}
+	}
+
+	private Executor executor(int opcode, RequestProcessor processor) {
+		Executor executor = (null != bulkheads) ? bulkheads.find(opcode) : null;
+		if (null != executor) {
+			return executor;
+		}
+		return (null != processor.executor()) ? processor.executor() : defaultExecutor;
+	}
+
+	private void onExpired(RequestProtocol requestProtocol) {
+		expiredRequests.incrementAndGet();
+		if (logger.isDebugEnabled()) {
+			logger.debug("drop expired request, RequestProtocol[{}]", requestProtocol);
 		}
 	}
 
-	static final class DefaultOutputImpl implements RequestProcessor.Output {
-		private static final Recycler<DefaultOutputImpl> RECYCLER = new Recycler<DefaultOutputImpl>() {
+	/**
+	 * pooled dispatch task, also the {@link RequestProcessor.Output} of the request
+	 * 
+	 * <pre>
+	 * --holds two references, one released after the processor returns, the other after the response is sent, 
+	 *   the {@link Request} and the task itself are recycled when both are released
+	 * --oneway request never responds, so it starts with one reference
+	 * --request expired while queueing is dropped without response
+	 * --admission permits are released with the latency since admission when the task is recycled, streams are
+	 *   released without latency sample
+	 * --chunks of a stream and its final response go through the connection chosen by the first chunk, so they
+	 *   arrive in order
+	 * </pre>
+	 */
+	static final class RequestTask implements Runnable, RequestProcessor.Output {
+		private static final Recycler<RequestTask> RECYCLER = new Recycler<RequestTask>() {
 			@Override
-			protected DefaultOutputImpl newObject(Handle<DefaultOutputImpl> handle) {
-				return new DefaultOutputImpl(handle);
+			protected RequestTask newObject(Handle<RequestTask> handle) {
+				return new RequestTask(handle);
 			}
 		};
+		private static final AtomicIntegerFieldUpdater<RequestTask> REFCNT_UPDATER = AtomicIntegerFieldUpdater
+				.newUpdater(RequestTask.class, "refCnt");
+		private static final AtomicIntegerFieldUpdater<RequestTask> RESPONDED_UPDATER = AtomicIntegerFieldUpdater
+				.newUpdater(RequestTask.class, "responded");
 
-		private static DefaultOutputImpl newInstance(ExchangeChannelGroup channelGroup,
-				RequestProtocol requestProtocol, ResponseProtocol responseProtocol) {
-			DefaultOutputImpl output = RECYCLER.get();
-			output.responseProtocol = responseProtocol;
-			output.channelGroup = channelGroup;
-			output.requestProtocol = requestProtocol;
-			return output;
+		private static RequestTask newInstance(DefaultMsgHandler msgHandler, ExchangeChannelGroup channelGroup,
+				RequestProcessor processor, RequestProtocol requestProtocol, ResponseProtocol responseProtocol) {
+			RequestTask task = RECYCLER.get();
+			task.msgHandler = msgHandler;
+			task.opcode = requestProtocol.opcode();
+			task.packetId = requestProtocol.packetId();
+			task.admittedNanos = null != msgHandler.admissionController ? System.nanoTime() : 0;
+			task.channelGroup = channelGroup;
+			task.processor = processor;
+			task.requestProtocol = requestProtocol;
+			task.responseProtocol = responseProtocol;
+			task.oneway = requestProtocol.oneway();
+			task.request = requestProtocol.toRequest();
+			task.responded = task.oneway ? 1 : 0;
+			task.refCnt = task.oneway ? 1 : 2;
+			return task;
 		}
 
-		private final Recycler.Handle<DefaultOutputImpl> handle;
-		private ResponseProtocol responseProtocol;
+		private final Recycler.Handle<RequestTask> handle;
+		private DefaultMsgHandler msgHandler;
+		private int opcode;
+		private int packetId;
+		private long admittedNanos;
+		// rejected by executor, not processed at all
+		private boolean rejected;
 		private ExchangeChannelGroup channelGroup;
+		private RequestProcessor processor;
 		private RequestProtocol requestProtocol;
+		private ResponseProtocol responseProtocol;
+		private Request request;
+		private boolean oneway;
+		// runs on the event thread, which must never wait for credits
+		private boolean inline;
+		// not null once streaming
+		private ResponseStreams.Credits credits;
+		private ExchangeChannel streamChannel;
+		private volatile int responded;
+		private volatile int refCnt;
 
-		private DefaultOutputImpl(Recycler.Handle<DefaultOutputImpl> handle) {
+		private RequestTask(Recycler.Handle<RequestTask> handle) {
 			this.handle = handle;
 		}
 
-		public void recycle() {
-			responseProtocol = null;
-			channelGroup = null;
-			requestProtocol = null;
-			handle.recycle(this);
+		@Override
+		public void run() {
+			if (requestProtocol.expired()) {
+				drop();
+				return;
+			}
+			try {
+				processor.handleRequest(request, this);
+			} catch (Throwable cause) {
+				responseError(StrUtils.exception2String(cause));
+			} finally {
+				request.release();
+				release();
+			}
+		}
+
+		private void drop() {
+			msgHandler.onExpired(requestProtocol);
+			if (RESPONDED_UPDATER.compareAndSet(this, 0, 1)) {
+				responseProtocol.recycle();
+				requestProtocol.recycle();
+				release();
+			}
+			release();
+		}
+
+		void reject() {
+			rejected = true;
+			try {
+				processor.onRejectedExecutionException(request, this);
+			} finally {
+				request.release();
+				release();
+			}
 		}
 
 		@Override
 		public void response(Response response) {
+			if (!RESPONDED_UPDATER.compareAndSet(this, 0, 1)) {
+				// oneway or responded already
+				if (null != response && null != response.getResponseBuf()) {
+					response.getResponseBuf().release();
+				}
+				return;
+			}
 			if (null == response) {
-				recycle();
+				responseProtocol.recycle();
+				requestProtocol.recycle();
+				release();
 				return;
 			}
-			responseProtocol.packetId(requestProtocol.packetId());
-			responseProtocol.serializeType(response.getSerializeType());
-			responseProtocol.compressType(response.getCompressType());
-			responseProtocol.body(response.getResponseData());
-			responseProtocol
-					.result(response.isSuccess() ? RemotingConstants.RESULT_SUCCESS : RemotingConstants.RESULT_FAIL);
-			doResponse(channelGroup, requestProtocol, responseProtocol);
-			recycle();
+			fill(responseProtocol, response);
+			doResponse(responseTarget(), requestProtocol, responseProtocol);
+			release();
+		}
+
+		@Override
+		public boolean chunk(Response response) {
+			if (inline) {
+				// waiting for credits on the event thread deadlocks, credits arrive through the same thread
+				logger.error("streaming is not supported by processors on InlineExecutor, opcode[{}]", opcode);
+				if (null != response && null != response.getResponseBuf()) {
+					response.getResponseBuf().release();
+				}
+				return false;
+			}
+			if (responded != 0 || !acquireCredit()) {
+				// oneway, responded already, or the stream is gone
+				if (null != response && null != response.getResponseBuf()) {
+					response.getResponseBuf().release();
+				}
+				return false;
+			}
+			ResponseProtocol chunk = ResponseProtocol.newInstance();
+			fill(chunk, response);
+			chunk.stream(true);
+			try {
+				streamChannel.response(chunk);
+				return true;
+			} catch (SailfishException cause) {
+				logger.error(String.format("response chunk error, packetId[%d]", packetId), cause);
+				chunk.recycle();
+				return false;
+			}
+		}
+
+		private boolean acquireCredit() {
+			if (null == credits) {
+				credits = msgHandler.streams.find(channelGroup, packetId);
+				if (null == credits) {
+					return false;
+				}
+				try {
+					streamChannel = channelGroup.next();
+				} catch (SailfishException cause) {
+					// no connection to stream through, chunks are refused until one is available
+					logger.error(String.format("no channel for response chunk, packetId[%d]", packetId), cause);
+					credits = null;
+					return false;
+				}
+			}
+			try {
+				return credits.acquire();
+			} catch (InterruptedException cause) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		private void fill(ResponseProtocol protocol, Response response) {
+			protocol.packetId(packetId);
+			protocol.serializeType(response.getSerializeType());
+			protocol.compressType(response.getCompressType());
+			protocol.compressThreshold(response.getCompressThreshold());
+			protocol.encodeThreshold(response.getEncodeThreshold());
+			if (null != response.getResponseBuf()) {
+				protocol.body(response.getResponseBuf());
+			} else {
+				protocol.body(response.getResponseData());
+			}
+			protocol.result(response.isSuccess() ? RemotingConstants.RESULT_SUCCESS : RemotingConstants.RESULT_FAIL);
+		}
+
+		private ExchangeChannelGroup responseTarget() {
+			return null != streamChannel ? streamChannel : channelGroup;
+		}
+
+		private void responseError(String errorMsg) {
+			if (!RESPONDED_UPDATER.compareAndSet(this, 0, 1)) {
+				logger.error("request processor failed, oneway or responded already, RequestProtocol[{}], error[{}]", requestProtocol,
+						errorMsg);
+				return;
+			}
+			doResponse(responseTarget(), requestProtocol,
+					newErrorResponse(responseProtocol, requestProtocol.packetId(), errorMsg));
+			release();
+		}
+
+		private void release() {
+			if (REFCNT_UPDATER.decrementAndGet(this) != 0) {
+				return;
+			}
+			if (oneway) {
+				responseProtocol.recycle();
+				requestProtocol.recycle();
+			}
+			msgHandler.streams.remove(channelGroup, packetId);
+			// a stream lasts as long as its consumer reads, which says nothing about queueing here
+			boolean streamed = null != credits;
+			credits = null;
+			streamChannel = null;
+			AdmissionController admissionController = msgHandler.admissionController;
+			if (null != admissionController) {
+				if (rejected || streamed) {
+					admissionController.release(opcode);
+				} else {
+					admissionController.release(opcode, System.nanoTime() - admittedNanos);
+				}
+			}
+			rejected = false;
+			inline = false;
+			request.recycle();
+			request = null;
+			msgHandler = null;
+			channelGroup = null;
+			processor = null;
+			requestProtocol = null;
+			responseProtocol = null;
+			handle.recycle(this);
 		}
 	}
 
@@ -155,12 +439,13 @@ public class DefaultMsgHandler implements MsgHandler<Protocol> {
 		} catch (SailfishException cause) {
 			logger.error(String.format("response error, RequestProtocol[%s], ResponseProtocol[%s]",
 					requestProtocol.toString(), responseProtocol.toString()), cause);
+			responseProtocol.recycle();
 		}finally {
 			requestProtocol.recycle();
 		}
 	}
 	
-	 public ResponseProtocol newErrorResponse(ResponseProtocol instance, int packetId, String errorStack){
+	 public static ResponseProtocol newErrorResponse(ResponseProtocol instance, int packetId, String errorStack){
 		 instance.packetId(packetId);
 		 instance.errorStack(errorStack);
 		 instance.result(RemotingConstants.RESULT_FAIL);
@@ -0,0 +1,179 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.utils.ParameterChecker;
+
+/**
+ * consolidate flushes of a channel, so many small frames go out with one syscall
+ *
+ * <pre>
+ * --a flush goes through at once when {@code maxMessages} frames or {@code maxBytes} bytes have been written since the
+ *   last real flush
+ * --otherwise it is delayed until the current read completes, or until the executor of this handler has run the tasks
+ *   queued before it(e.g. writes of other responses), whichever comes first
+ * --must be the first handler of pipeline, so it sees encoded frames and every flush
+ * --{@code -Dsailfish.flushConsolidation.maxMessages=0}(default) disables it, {@code 1} means flush per message
+ * </pre>
+ *
+ * similar implementation
+ * <pre>
+ * 		<a href="https://github.com/netty/netty/blob/4.1/handler/src/main/java/io/netty/handler/flush/
+ * 		FlushConsolidationHandler.java">FlushConsolidationHandler In Netty(since 4.1.13)</a>
+ * </pre>
+ *
+ * @author spccold
+ * @version $Id: FlushConsolidationHandler.java, v 0.1 2016年12月17日 上午10:21:05 spccold Exp $
+ */
+public class FlushConsolidationHandler extends ChannelDuplexHandler {
+	private static final Logger logger = LoggerFactory.getLogger(FlushConsolidationHandler.class);
+
+	private static final int DEFAULT_MAX_MESSAGES;
+	private static final int DEFAULT_MAX_BYTES;
+	static {
+		DEFAULT_MAX_MESSAGES = Math.max(0, SystemPropertyUtil.getInt("sailfish.flushConsolidation.maxMessages", 0));
+		DEFAULT_MAX_BYTES = Math.max(1, SystemPropertyUtil.getInt("sailfish.flushConsolidation.maxBytes", 64 * 1024));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.flushConsolidation.maxMessages: {}", DEFAULT_MAX_MESSAGES);
+			logger.debug("-Dsailfish.flushConsolidation.maxBytes: {}", DEFAULT_MAX_BYTES);
+		}
+	}
+
+	private final int maxMessages;
+	private final int maxBytes;
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled = false;
+			flushIfNeeded(ctx);
+		}
+	};
+
+	private ChannelHandlerContext ctx;
+	// written but not flushed
+	private int pendingMessages;
+	private long pendingBytes;
+	// flushes are pending
+	private boolean flushRequested;
+	private boolean flushScheduled;
+	private boolean readInProgress;
+
+	/**
+	 * @return {@code null} if flush consolidation is disabled by system properties
+	 */
+	public static FlushConsolidationHandler newDefault() {
+		return DEFAULT_MAX_MESSAGES > 0 ? new FlushConsolidationHandler(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_BYTES) : null;
+	}
+
+	public FlushConsolidationHandler(int maxMessages, int maxBytes) {
+		this.maxMessages = ParameterChecker.checkPositive(maxMessages, "maxMessages");
+		this.maxBytes = ParameterChecker.checkPositive(maxBytes, "maxBytes");
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+		pendingMessages++;
+		if (msg instanceof ByteBuf) {
+			pendingBytes += ((ByteBuf) msg).readableBytes();
+		}
+		ctx.write(msg, promise);
+	}
+
+	@Override
+	public void flush(ChannelHandlerContext ctx) throws Exception {
+		flushRequested = true;
+		if (pendingMessages >= maxMessages || pendingBytes >= maxBytes) {
+			flushNow(ctx);
+		} else if (!readInProgress && !flushScheduled) {
+			// flush after the tasks queued now, they are likely writes too
+			flushScheduled = true;
+			ctx.executor().execute(flushTask);
+		}
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		readInProgress = true;
+		ctx.fireChannelRead(msg);
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+		readInProgress = false;
+		flushIfNeeded(ctx);
+		ctx.fireChannelReadComplete();
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (!ctx.channel().isWritable()) {
+			// give peer what we have, so the outbound buffer can drain
+			flushIfNeeded(ctx);
+		}
+		ctx.fireChannelWritabilityChanged();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+		flushIfNeeded(ctx);
+		ctx.fireExceptionCaught(cause);
+	}
+
+	@Override
+	public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushIfNeeded(ctx);
+		ctx.disconnect(promise);
+	}
+
+	@Override
+	public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+		flushIfNeeded(ctx);
+		ctx.close(promise);
+	}
+
+	@Override
+	public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+		flushIfNeeded(ctx);
+	}
+
+	private void flushIfNeeded(ChannelHandlerContext ctx) {
+		if (flushRequested) {
+			flushNow(ctx);
+		}
+	}
+
+	private void flushNow(ChannelHandlerContext ctx) {
+		pendingMessages = 0;
+		pendingBytes = 0;
+		flushRequested = false;
+		ctx.flush();
+	}
+}
@@ -30,4 +30,9 @@ public interface MsgHandler<I extends Protocol> {
      * I is request or response
      */
     void handle(ExchangeChannelGroup channelGroup, I msg);
+
+    /**
+     * {@code channelGroup} is closed and delivers no more messages, state kept for it can be dropped
+     */
+    void onClosed(ExchangeChannelGroup channelGroup);
 }
@@ -106,7 +106,7 @@ public class NegotiateChannelHandler extends SimpleChannelInboundHandler<Protoco
 
 	private void negotiate(ChannelHandlerContext ctx) throws Exception {
 		if (negotiateMap.putIfAbsent(ctx, Boolean.TRUE) == null) { // Guard against re-entrance.
-			ctx.channel().attr(OneTime.awaitNegotiate).get().countDown();
+			ctx.channel().attr(OneTime.awaitNegotiate).get().trySuccess();
 			try {
 				NegotiateConfig channelConfig = ctx.channel().attr(OneTime.channelConfig).get();
 				ctx.writeAndFlush(channelConfig.toNegotiateRequest());
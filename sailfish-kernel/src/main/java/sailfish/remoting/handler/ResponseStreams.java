@@ -0,0 +1,187 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.handler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.internal.SystemPropertyUtil;
+import sailfish.remoting.channel.ExchangeChannelGroup;
+import sailfish.remoting.protocol.RequestProtocol;
+import sailfish.remoting.protocol.StreamCredit;
+
+/**
+ * server side credits of response streams, keyed by the client({@link ExchangeChannelGroup}) and packetId of the
+ * stream request
+ * 
+ * <pre>
+ * --created by the open credit frame which arrives before the stream request, removed when the request is done or
+ *   dropped, when the client cancels the stream, or when the client({@link ExchangeChannelGroup}) is closed
+ * --{@code -Dsailfish.stream.creditTimeoutMillis} bounds how long a processor waits for credits, the client may have
+ *   gone or stopped consuming
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: ResponseStreams.java, v 0.1 2016年12月18日 下午4:05:12 spccold Exp $
+ */
+final class ResponseStreams {
+	private static final Logger logger = LoggerFactory.getLogger(ResponseStreams.class);
+
+	private static final long CREDIT_TIMEOUT_NANOS;
+	static {
+		int creditTimeoutMillis = SystemPropertyUtil.getInt("sailfish.stream.creditTimeoutMillis", 30000);
+		CREDIT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(1, creditTimeoutMillis));
+		if (logger.isDebugEnabled()) {
+			logger.debug("-Dsailfish.stream.creditTimeoutMillis: {}", creditTimeoutMillis);
+		}
+	}
+
+	private final ConcurrentMap<Key, Credits> streams = new ConcurrentHashMap<>();
+
+	/**
+	 * apply a credit frame, {@code frame} is recycled
+	 */
+	void onCredit(ExchangeChannelGroup channelGroup, RequestProtocol frame) {
+		byte[] body = frame.body();
+		frame.recycle();
+		if (!StreamCredit.valid(body)) {
+			logger.warn("bad stream credit frame, channelGroup[{}]", channelGroup);
+			return;
+		}
+		Key key = new Key(channelGroup, StreamCredit.packetId(body));
+		byte type = StreamCredit.type(body);
+		if (type == StreamCredit.CANCEL) {
+			remove(key);
+			return;
+		}
+		Credits credits = streams.get(key);
+		if (null == credits && type == StreamCredit.OPEN) {
+			Credits opened = new Credits();
+			credits = streams.putIfAbsent(key, opened);
+			if (null == credits) {
+				credits = opened;
+			}
+		}
+		if (null != credits) {
+			credits.grant(StreamCredit.credits(body));
+		}
+	}
+
+	/**
+	 * @return {@code null} if the client didn't open a stream for {@code packetId}
+	 */
+	Credits find(ExchangeChannelGroup channelGroup, int packetId) {
+		if (streams.isEmpty()) {
+			return null;
+		}
+		return streams.get(new Key(channelGroup, packetId));
+	}
+
+	void remove(ExchangeChannelGroup channelGroup, int packetId) {
+		if (streams.isEmpty()) {
+			return;
+		}
+		remove(new Key(channelGroup, packetId));
+	}
+
+	/**
+	 * close all streams of {@code channelGroup}, nobody consumes them any more
+	 */
+	void removeAll(ExchangeChannelGroup channelGroup) {
+		if (streams.isEmpty()) {
+			return;
+		}
+		for (Key key : streams.keySet()) {
+			if (key.channelGroup == channelGroup) {
+				remove(key);
+			}
+		}
+	}
+
+	private void remove(Key key) {
+		Credits credits = streams.remove(key);
+		if (null != credits) {
+			credits.close();
+		}
+	}
+
+	static final class Credits {
+		private int available;
+		private boolean closed;
+
+		synchronized void grant(int credits) {
+			if (credits <= 0) {
+				return;
+			}
+			available += credits;
+			notifyAll();
+		}
+
+		/**
+		 * take one credit, wait up to {@code -Dsailfish.stream.creditTimeoutMillis} for it
+		 */
+		synchronized boolean acquire() throws InterruptedException {
+			long deadline = System.nanoTime() + CREDIT_TIMEOUT_NANOS;
+			while (!closed && available == 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+			if (closed) {
+				return false;
+			}
+			available--;
+			return true;
+		}
+
+		synchronized void close() {
+			closed = true;
+			notifyAll();
+		}
+	}
+
+	private static final class Key {
+		private final ExchangeChannelGroup channelGroup;
+		private final int packetId;
+
+		Key(ExchangeChannelGroup channelGroup, int packetId) {
+			this.channelGroup = channelGroup;
+			this.packetId = packetId;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(channelGroup) * 31 + packetId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return channelGroup == other.channelGroup && packetId == other.packetId;
+		}
+	}
+}
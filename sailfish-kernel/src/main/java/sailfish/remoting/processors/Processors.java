@@ -17,13 +17,26 @@
  */
 package sailfish.remoting.processors;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.utils.ParameterChecker;
+
 /**
+ * opcode dispatch table, {@link RequestProcessor}s are indexed by unsigned opcode in an array, so
+ * {@link #findProcessor(int)} is a single array load without boxing
+ * 
+ * <pre>
+ * --opcode is a short on the wire, table length is the largest registered unsigned opcode plus one
+ * --registration copies the table and publishes it with a volatile write, readers never lock
+ * --{@link RemotingConstants#STREAM_CREDIT_OPCODE} is reserved for credit frames of response streams, registering
+ *   a processor on it fails
+ * </pre>
+ * 
  * @author spccold
  * @version $Id: Processors.java, v 0.1 2016年11月25日 上午11:54:17 spccold Exp $
  */
@@ -31,15 +44,69 @@ public class Processors {
 	
 	private static final Logger logger = LoggerFactory.getLogger(Processors.class);
 	
-	private final ConcurrentMap<Integer, RequestProcessor> processors = new ConcurrentHashMap<>();
+	private static final RequestProcessor[] EMPTY = new RequestProcessor[0];
+	
+	private volatile RequestProcessor[] processors = EMPTY;
+	
+	public Processors() { }
 	
-	public void registerProcessor(int opcode, RequestProcessor processor){
-		if(null != processors.putIfAbsent(opcode, processor)){
-			logger.warn("repeat register request processor, opcode[{}], processor[{}]", opcode, processor);
+	/**
+	 * build the table at once
+	 */
+	public Processors(List<RequestProcessor> requestProcessors) {
+		ParameterChecker.checkNotNull(requestProcessors, "requestProcessors");
+		int length = 0;
+		for (RequestProcessor processor : requestProcessors) {
+			checkOpcode(processor.opcode());
+			length = Math.max(length, index(processor.opcode()) + 1);
 		}
+		RequestProcessor[] table = new RequestProcessor[length];
+		for (RequestProcessor processor : requestProcessors) {
+			register(table, processor.opcode(), processor);
+		}
+		this.processors = table;
+	}
+	
+	public synchronized void registerProcessor(int opcode, RequestProcessor processor){
+		ParameterChecker.checkNotNull(processor, "processor");
+		checkOpcode(opcode);
+		RequestProcessor[] table = processors;
+		int index = index(opcode);
+		if (index < table.length && null != table[index]) {
+			warnRepeat(opcode, processor);
+			return;
+		}
+		table = Arrays.copyOf(table, Math.max(table.length, index + 1));
+		table[index] = processor;
+		this.processors = table;
 	}
 	
 	public RequestProcessor findProcessor(int opcode){
-		return processors.get(opcode);
+		RequestProcessor[] table = processors;
+		int index = index(opcode);
+		return index < table.length ? table[index] : null;
+	}
+	
+	private static void register(RequestProcessor[] table, int opcode, RequestProcessor processor) {
+		int index = index(opcode);
+		if (null != table[index]) {
+			warnRepeat(opcode, processor);
+			return;
+		}
+		table[index] = processor;
+	}
+	
+	private static void checkOpcode(int opcode) {
+		if ((short) opcode == RemotingConstants.STREAM_CREDIT_OPCODE) {
+			throw new IllegalArgumentException("opcode: " + opcode + " is reserved for response stream credits");
+		}
+	}
+	
+	private static int index(int opcode) {
+		return opcode & 0xFFFF;
+	}
+	
+	private static void warnRepeat(int opcode, RequestProcessor processor) {
+		logger.warn("repeat register request processor, opcode[{}], processor[{}]", opcode, processor);
 	}
 }
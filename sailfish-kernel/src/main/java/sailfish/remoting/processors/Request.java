@@ -17,21 +17,71 @@
  */
 package sailfish.remoting.processors;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.Recycler;
 import sailfish.remoting.constants.CompressType;
+import sailfish.remoting.constants.LangType;
 import sailfish.remoting.constants.SerializeType;
 
 /**
+ * request body ownership
+ * <pre>
+ * --{@link #getRequestBuf()} returns the decoded frame slice without copy, it is only valid until
+ *   {@link RequestProcessor#handleRequest(Request, RequestProcessor.Output)} returns, call {@link ByteBuf#retain()}
+ *   if you need it later(and release it yourself)
+ * --{@link #getRequestData()} copies the body to a byte array, the copy stays valid, but once
+ *   {@link #getRequestBuf()} has been called the body is not copied on release, so call {@link #getRequestData()}
+ *   before {@link RequestProcessor#handleRequest(Request, RequestProcessor.Output)} returns if you need both
+ * </pre>
+ * 
+ * a {@link Request} dispatched by sailfish is recycled once
+ * {@link RequestProcessor#handleRequest(Request, RequestProcessor.Output)} has returned and the response has been
+ * sent, keep what you need(e.g. {@link #getRequestData()}) instead of the {@link Request} itself
+ * 
  * @author spccold
  * @version $Id: Request.java, v 0.1 2016年11月29日 下午5:13:03 spccold Exp $
  */
 public class Request {
+	private static final Recycler<Request> RECYCLER = new Recycler<Request>() {
+		@Override
+		protected Request newObject(Recycler.Handle<Request> handle) {
+			return new Request(handle);
+		}
+	};
+
+	/**
+	 * pooled {@link Request}, the ownership of {@code requestBuf}(if any) is transferred to it, {@link #recycle()}
+	 * must be invoked once it is not used anymore
+	 */
+	public static Request newInstance(boolean oneway, byte serializeType, byte compressType, byte[] requestData,
+			ByteBuf requestBuf, byte langType) {
+		Request request = RECYCLER.get();
+		request.oneway = oneway;
+		request.serializeType = serializeType;
+		request.compressType = compressType;
+		request.requestData = requestData;
+		request.requestBuf = requestBuf;
+		request.langType = langType;
+		return request;
+	}
+
+	private final Recycler.Handle<Request> handle;
 	private boolean oneway;
 	private byte serializeType = SerializeType.NON_SERIALIZE;
 	private byte compressType = CompressType.NON_COMPRESS;
 	private byte[] requestData;
+	private ByteBuf requestBuf;
+	// requestBuf has been handed out to processor
+	private boolean requestBufAccessed;
 	private byte langType;
 	
+	private Request(Recycler.Handle<Request> handle) {
+		this.handle = handle;
+	}
+	
 	public Request(boolean oneway, byte serializeType, byte compressType, byte[] requestData, byte langType) {
+		this.handle = null;
 		this.oneway = oneway;
 		this.serializeType = serializeType;
 		this.compressType = compressType;
@@ -39,6 +89,18 @@ public class Request {
 		this.langType = langType;
 	}
 
+	/**
+	 * the ownership of {@code requestBuf} is transferred to this {@link Request}
+	 */
+	public Request(boolean oneway, byte serializeType, byte compressType, ByteBuf requestBuf, byte langType) {
+		this.handle = null;
+		this.oneway = oneway;
+		this.serializeType = serializeType;
+		this.compressType = compressType;
+		this.requestBuf = requestBuf;
+		this.langType = langType;
+	}
+
 	/**
 	 * @return the oneway
 	 */
@@ -61,16 +123,65 @@ public class Request {
 	}
 
 	/**
-	 * @return the requestData
+	 * @return the requestData, {@code null} if {@link #getRequestBuf()} was taken and the body has been released
+	 *         without a copy
 	 */
 	public byte[] getRequestData() {
+		if (null == requestData && null != requestBuf) {
+			requestData = ByteBufUtil.getBytes(requestBuf);
+		}
 		return requestData;
 	}
 
+	/**
+	 * @return the requestBuf, {@code null} if request body is not backed by {@link ByteBuf} or has been released
+	 */
+	public ByteBuf getRequestBuf() {
+		requestBufAccessed = true;
+		return requestBuf;
+	}
+
+	/**
+	 * invoked by sailfish after {@link RequestProcessor#handleRequest(Request, RequestProcessor.Output)} returns, the
+	 * body will be copied first if processor never touched it, so {@link #getRequestData()} still works for
+	 * asynchronous processing
+	 */
+	public void release() {
+		if (null == requestBuf) {
+			return;
+		}
+		if (!requestBufAccessed && null == requestData) {
+			requestData = ByteBufUtil.getBytes(requestBuf);
+		}
+		requestBuf.release();
+		requestBuf = null;
+	}
+
 	/**
 	 * @return the langType
 	 */
 	public byte getLangType() {
 		return langType;
 	}
+
+	/**
+	 * release the body(if any) and give this {@link Request} back to the pool, requests created by constructors are
+	 * only released
+	 */
+	public void recycle() {
+		if (null != requestBuf) {
+			requestBuf.release();
+			requestBuf = null;
+		}
+		if (null == handle) {// some objects don't need recycle
+			return;
+		}
+		oneway = false;
+		serializeType = SerializeType.NON_SERIALIZE;
+		compressType = CompressType.NON_COMPRESS;
+		requestData = null;
+		requestBufAccessed = false;
+		langType = LangType.JAVA;
+		handle.recycle(this);
+	}
 }
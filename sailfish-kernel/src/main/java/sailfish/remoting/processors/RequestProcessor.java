@@ -19,11 +19,20 @@ package sailfish.remoting.processors;
 
 import java.util.concurrent.Executor;
 
+import sailfish.remoting.executor.InlineExecutor;
+import sailfish.remoting.executor.SimpleExecutor;
+import sailfish.remoting.executor.VirtualThreadExecutor;
+
 /**
  * @author spccold
  * @version $Id: RequestProcessor.java, v 0.1 2016年11月25日 上午11:55:03 spccold Exp $
  */
 public interface RequestProcessor {
+	/**
+	 * executor which runs {@link #handleRequest(Request, Output)}, {@code null} means {@link SimpleExecutor},
+	 * {@link InlineExecutor} runs it in the channel's event thread without handoff, {@link VirtualThreadExecutor} suits
+	 * processors which block
+	 */
 	Executor executor();
 
 	short opcode();
@@ -33,6 +42,21 @@ public interface RequestProcessor {
 	void onRejectedExecutionException(Request request, Output output);
 
 	interface Output {
+		/**
+		 * respond the request, also the end of stream if chunks have been sent
+		 */
 		void response(Response response);
+
+		/**
+		 * send one chunk of a streaming response, requested by
+		 * {@link sailfish.remoting.DefaultClient#requestStream(byte[], sailfish.remoting.RequestControl)}, then
+		 * {@link #response(Response)} ends the stream, blocks while the client has no credit, so it is refused for
+		 * processors running on {@link InlineExecutor}, must be invoked by one thread at a time
+		 * 
+		 * @return {@code false} if the request is not a stream request, the processor runs on
+		 *         {@link InlineExecutor}, or the client has gone or stopped consuming, the processor should stop
+		 *         streaming and respond
+		 */
+		boolean chunk(Response response);
 	}
 }
@@ -17,10 +17,16 @@
  */
 package sailfish.remoting.processors;
 
+import io.netty.buffer.ByteBuf;
 import sailfish.remoting.constants.CompressType;
+import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.constants.SerializeType;
+import sailfish.remoting.utils.ParameterChecker;
 
 /**
+ * the ownership of {@code responseBuf} is transferred to sailfish once {@link RequestProcessor.Output#response(Response)}
+ * is invoked, it will be released after written to remote peer
+ * 
  * @author spccold
  * @version $Id: Response.java, v 0.1 2016年11月29日 下午5:18:01 spccold Exp $
  */
@@ -28,13 +34,21 @@ public class Response {
 	private boolean success;
 	private byte serializeType = SerializeType.NON_SERIALIZE;
 	private byte compressType = CompressType.NON_COMPRESS;
+	private int compressThreshold = RemotingConstants.COMPRESS_THRESHOLD;
+	private int encodeThreshold = RemotingConstants.NO_ENCODE_THRESHOLD;
 	private byte[] responseData;
+	private ByteBuf responseBuf;
 	
 	public Response(boolean success, byte[] responseData) {
 		this.success = success;
 		this.responseData = responseData;
 	}
 
+	public Response(boolean success, ByteBuf responseBuf) {
+		this.success = success;
+		this.responseBuf = responseBuf;
+	}
+
 	/**
 	 * @return the success
 	 */
@@ -77,6 +91,35 @@ public class Response {
 		this.compressType = compressType;
 	}
 
+	/**
+	 * @return the compressThreshold
+	 */
+	public int getCompressThreshold() {
+		return compressThreshold;
+	}
+
+	/**
+	 * @param compressThreshold body will be compressed only if its length reaches this threshold
+	 */
+	public void setCompressThreshold(int compressThreshold) {
+		this.compressThreshold = ParameterChecker.checkNotNegative(compressThreshold, "compressThreshold");
+	}
+
+	/**
+	 * @return the encodeThreshold
+	 */
+	public int getEncodeThreshold() {
+		return encodeThreshold;
+	}
+
+	/**
+	 * @param encodeThreshold response frame will be compressed and encoded by the thread which responds if its
+	 *            length reaches this threshold, negative means by event loop
+	 */
+	public void setEncodeThreshold(int encodeThreshold) {
+		this.encodeThreshold = encodeThreshold;
+	}
+
 	/**
 	 * @return the responseData
 	 */
@@ -90,4 +133,18 @@ public class Response {
 	public void setResponseData(byte[] responseData) {
 		this.responseData = responseData;
 	}
+
+	/**
+	 * @return the responseBuf
+	 */
+	public ByteBuf getResponseBuf() {
+		return responseBuf;
+	}
+
+	/**
+	 * @param responseBuf the responseBuf to set
+	 */
+	public void setResponseBuf(ByteBuf responseBuf) {
+		this.responseBuf = responseBuf;
+	}
 }
@@ -18,6 +18,7 @@
 package sailfish.remoting.protocol;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import sailfish.remoting.exceptions.SailfishException;
 
 /**
@@ -41,8 +42,57 @@ public interface Protocol {
      */
     void serialize(ByteBuf output) throws SailfishException;
     
+    /**
+     * serialize to a new {@link ByteBuf} allocated from {@code allocator}, a {@link ByteBuf} body
+     * will be appended as a component of the returned frame without copy, the ownership of the body
+     * is transferred to the returned frame
+     */
+    ByteBuf serialize(ByteBufAllocator allocator) throws SailfishException;
+    
+    /**
+     * length of the frame which will be serialized now, including magic and length field
+     */
+    int frameLength();
+    
     /**
      * deserialize bytes data from channel
      */
     void deserialize(ByteBuf input, int totalLength) throws SailfishException;
+    
+    /**
+     * compress type of current body
+     */
+    byte compressType();
+    
+    /**
+     * body will be compressed only if its length reaches this threshold
+     */
+    int compressThreshold();
+    
+    /**
+     * frame will be compressed and encoded by the thread which writes it if its {@link #frameLength()} reaches this
+     * threshold, negative means always by event loop
+     */
+    int encodeThreshold();
+    
+    /**
+     * @return the body buffer still owned by this protocol, {@code null} if body is not backed by {@link ByteBuf}
+     */
+    ByteBuf bodyBuf();
+    
+    /**
+     * transfer the body to caller as {@link ByteBuf}, caller is responsible for releasing it
+     */
+    ByteBuf detachBody();
+    
+    /**
+     * replace body with {@code body} which is encoded by {@code compressType}, the ownership of {@code body}
+     * is transferred to this protocol
+     */
+    void body(ByteBuf body, byte compressType);
+    
+    /**
+     * release the body {@link ByteBuf} still owned by this protocol and give it back to pool if possible
+     */
+    void recycle();
 }
@@ -24,9 +24,9 @@ package sailfish.remoting.protocol;
  */
 public class ProtocolParameterChecker {
     public static byte checkSerializeType(byte serializeType){
-        if(serializeType < 0 || serializeType > 0x1F){
+        if(serializeType < 0 || serializeType > 0xF){
             throw new IllegalArgumentException(
-                "serializeType: " + serializeType + " (expected: 0 <= serializeType <= 0x1F)");
+                "serializeType: " + serializeType + " (expected: 0 <= serializeType <= 0xF)");
         }
         return serializeType;
     }
@@ -40,9 +40,9 @@ public class ProtocolParameterChecker {
     }
     
     public static byte checkLangType(byte langType){
-        if(langType < 0 || langType > 0xF){
+        if(langType < 0 || langType > 0x7){
             throw new IllegalArgumentException(
-                "langType: " + langType + " (expected: 0 <= langType <= 0xF)");
+                "langType: " + langType + " (expected: 0 <= langType <= 0x7)");
         }
         return langType;
     }
@@ -18,36 +18,69 @@
 package sailfish.remoting.protocol;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.Recycler;
 import sailfish.remoting.RequestControl;
 import sailfish.remoting.constants.CompressType;
 import sailfish.remoting.constants.LangType;
 import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.constants.SerializeType;
+import sailfish.remoting.exceptions.ExceptionCode;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.processors.Request;
 import sailfish.remoting.utils.PacketIdGenerator;
+import sailfish.remoting.utils.ParameterChecker;
 
 /**
  * sailfish binary request protocol
  * 
  * <pre>
  * 1-- magic(2 bytes)
- * 2-- total length(header length + body length, 4 bytes)
+ * 2-- total length(header length + extension length + body length, 4 bytes)
  * 3-- header (8 bytes)
  *    3.1-- direction + oneway or not + heartbeat request or normal request + serializeType (1 byte)
  *          --request(1)(eighth high-order bit)
  *          --oneway(1)/twoway(0)(seventh high-order bit)
  *          --heartbeat request(1)/normal request(0)(sixth high-order bit)
- *          --serializeType([0~31])(five low-order bits)
+ *          --batch(1)/single(0)(fifth low-order bit)
+ *          --serializeType([0~15])(four low-order bits)
  *    3.2-- packetId (4 bytes)
  *    3.3-- opcode   (2 bytes)
- *    3.4-- compressType + langType (1 byte)
+ *    3.4-- compressType + extension flags + langType (1 byte)
  *          --compressType(four high-order bits)
- *          --langType(four low-order bits)
- * 4-- body ((total length - header length) bytes)
+ *          --timeout extension present(1)/absent(0)(fourth low-order bit)
+ *          --langType([0~7])(three low-order bits)
+ * 4-- extension (0 or 4 bytes)
+ *    4.1-- timeout in milliseconds(4 bytes), only if timeout extension present
+ * 5-- body ((total length - header length - extension length) bytes)
+ * </pre>
+ * 
+ * the timeout extension is only written when {@link #timeout(int)} is set, so requests without it stay readable by
+ * peers which don't know the extension, the receiver turns it into a local {@link #deadlineNanos()} when decoding,
+ * no clock synchronization needed
+ * 
+ * batch body, a sequence of items sharing serializeType, compressType, langType, timeout and oneway of the batch
+ * <pre>
+ * --packetId(4 bytes) + opcode(2 bytes) + body length(4 bytes) + body
+ * --receiver splits the batch by {@link #readBatchItem()}, every item is processed and responded on its own
+ * </pre>
+ * 
+ * body ownership
+ * <pre>
+ * --{@link #body(ByteBuf)} transfers the ownership of the buffer to this protocol, it will be released after
+ *   written to the channel or when this protocol is recycled
+ * --{@link #deserialize(ByteBuf, int)} keeps a retained slice of the frame as body instead of copying it,
+ *   {@link #body()} copies it to a byte array lazily and releases the slice, {@link #toRequest()}
+ *   transfers it to the {@link Request}
+ * --{@link #readBatchItem()} gives every item its own reference of the frame, items and the batch release their
+ *   references independently
  * </pre>
  * 
  * @author spccold
@@ -66,6 +99,10 @@ public class RequestProtocol implements Protocol {
 	public static final int REQUEST_FLAG = 0x80;
 	private static final int ONEWAY_FLAG = 0x40;
 	private static final int HEARTBEAT_FLAG = 0x20;
+	private static final int BATCH_FLAG = 0x10;
+	private static final int BATCH_ITEM_HEADER_LENGTH = 10;
+	private static final int TIMEOUT_EXTENSION_FLAG = 0x08;
+	private static final int TIMEOUT_EXTENSION_LENGTH = 4;
 
 	
 	public static RequestProtocol newInstance(){
@@ -77,32 +114,52 @@ public class RequestProtocol implements Protocol {
 	// request direction
 	private boolean heartbeat;
 	private boolean oneway;
+	private boolean batch;
 	private byte serializeType = SerializeType.NON_SERIALIZE;
 
 	private int packetId;
 	private short opcode;
 
 	private byte compressType = CompressType.NON_COMPRESS;
+	// not serialized, only used by encoder
+	private int compressThreshold = RemotingConstants.COMPRESS_THRESHOLD;
+	// not serialized, only used by writer
+	private int encodeThreshold = RemotingConstants.NO_ENCODE_THRESHOLD;
 	private byte langType = LangType.JAVA;
+	// remaining time of the caller in milliseconds, 0 means no deadline
+	private int timeout;
+	// not serialized, local deadline computed when decoding
+	private long deadlineNanos;
 
 	private byte[] body;
+	private ByteBuf bodyBuf;
 
 	
 	private RequestProtocol(Recycler.Handle<RequestProtocol> handle){
 		this.handle = handle;
 	}
 	
+	@Override
 	public void recycle(){
+		if(null != bodyBuf){
+			bodyBuf.release();
+			bodyBuf = null;
+		}
 		if(null == handle){//some objects don't need recycle
 			return;
 		}
 		heartbeat = false;
 		oneway = false;
+		batch = false;
 		serializeType = SerializeType.NON_SERIALIZE;
 		packetId = 0;
 		opcode = 0;
 		compressType = CompressType.NON_COMPRESS;
+		compressThreshold = RemotingConstants.COMPRESS_THRESHOLD;
+		encodeThreshold = RemotingConstants.NO_ENCODE_THRESHOLD;
 		langType = LangType.JAVA;
+		timeout = 0;
+		deadlineNanos = 0;
 		body = null;
 		handle.recycle(this);
 	}
@@ -110,27 +167,10 @@ public class RequestProtocol implements Protocol {
 	@Override
 	public void serialize(ByteBuf output) throws SailfishException {
 		try {
-			// write magic first
-			output.writeShort(RemotingConstants.SAILFISH_MAGIC);
-			// write package length(not contain current length field(4 bytes))
-			output.writeInt(HEADER_LENGTH + bodyLength());
-
-			byte compactByte = (byte) REQUEST_FLAG;
-			if (this.oneway) {
-				compactByte = (byte) (compactByte | ONEWAY_FLAG);
-			}
-			if (this.heartbeat) {
-				compactByte = (byte) (compactByte | HEARTBEAT_FLAG);
-			}
-
-			output.writeByte(compactByte | serializeType);
-
-			output.writeInt(packetId);
-			output.writeShort(opcode);
-
-			output.writeByte(compressType << 4 | langType);
-
-			if (bodyLength() != 0) {
+			writeHeader(output);
+			if (null != bodyBuf) {
+				output.writeBytes(bodyBuf, bodyBuf.readerIndex(), bodyBuf.readableBytes());
+			} else if (bodyLength() != 0) {
 				output.writeBytes(this.body);
 			}
 		} catch (Throwable cause) {
@@ -140,28 +180,105 @@ public class RequestProtocol implements Protocol {
 		}
 	}
 
+	@Override
+	public ByteBuf serialize(ByteBufAllocator allocator) throws SailfishException {
+		ByteBuf header = null;
+		try {
+			if (null == bodyBuf) {
+				header = allocator.ioBuffer(frameLength());
+				writeHeader(header);
+				if (bodyLength() != 0) {
+					header.writeBytes(this.body);
+				}
+				return header;
+			}
+			header = allocator.ioBuffer(RemotingConstants.PROTOCOL_PREFIX_LENGTH + HEADER_LENGTH + extensionLength());
+			writeHeader(header);
+			CompositeByteBuf frame = allocator.compositeBuffer(2);
+			frame.addComponent(true, header).addComponent(true, bodyBuf);
+			// the frame owns header and body now
+			header = null;
+			bodyBuf = null;
+			return frame;
+		} catch (Throwable cause) {
+			if (null != header) {
+				header.release();
+			}
+			throw new SailfishException(cause);
+		} finally {
+			recycle();
+		}
+	}
+
+	@Override
+	public int frameLength() {
+		return RemotingConstants.PROTOCOL_PREFIX_LENGTH + HEADER_LENGTH + extensionLength() + bodyLength();
+	}
+
+	private void writeHeader(ByteBuf output) {
+		// write magic first
+		output.writeShort(RemotingConstants.SAILFISH_MAGIC);
+		// write package length(not contain current length field(4 bytes))
+		output.writeInt(HEADER_LENGTH + extensionLength() + bodyLength());
+
+		byte compactByte = (byte) REQUEST_FLAG;
+		if (this.oneway) {
+			compactByte = (byte) (compactByte | ONEWAY_FLAG);
+		}
+		if (this.heartbeat) {
+			compactByte = (byte) (compactByte | HEARTBEAT_FLAG);
+		}
+		if (this.batch) {
+			compactByte = (byte) (compactByte | BATCH_FLAG);
+		}
+
+		output.writeByte(compactByte | serializeType);
+
+		output.writeInt(packetId);
+		output.writeShort(opcode);
+
+		if (timeout > 0) {
+			output.writeByte(compressType << 4 | TIMEOUT_EXTENSION_FLAG | langType);
+			output.writeInt(timeout);
+		} else {
+			output.writeByte(compressType << 4 | langType);
+		}
+	}
+
+	private int extensionLength() {
+		return timeout > 0 ? TIMEOUT_EXTENSION_LENGTH : 0;
+	}
+
 	@Override
 	public void deserialize(ByteBuf input, int totalLength) throws SailfishException {
 		try {
 			byte compactByte = input.readByte();
 			this.oneway = ((compactByte & ONEWAY_FLAG) != 0);
 			this.heartbeat = ((compactByte & HEARTBEAT_FLAG) != 0);
-			this.serializeType = (byte) (compactByte & 0x1F);
+			this.batch = ((compactByte & BATCH_FLAG) != 0);
+			this.serializeType = (byte) (compactByte & 0xF);
 
 			this.packetId = input.readInt();
 			this.opcode = input.readShort();
 
 			byte tmp = input.readByte();
 			this.compressType = (byte) (tmp >> 4 & 0xF);
-			this.langType = (byte) (tmp >> 0 & 0xF);
+			this.langType = (byte) (tmp >> 0 & 0x7);
 
-			// read body
-			int bodyLength = totalLength - HEADER_LENGTH;
+			int extensionLength = 0;
+			if ((tmp & TIMEOUT_EXTENSION_FLAG) != 0) {
+				this.timeout = input.readInt();
+				this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+				extensionLength = TIMEOUT_EXTENSION_LENGTH;
+			}
+
+			// read body, share the frame instead of copying
+			int bodyLength = totalLength - HEADER_LENGTH - extensionLength;
 			if (bodyLength > 0) {
-				this.body = new byte[bodyLength];
-				input.readBytes(this.body);
+				this.bodyBuf = input.readRetainedSlice(bodyLength);
 			}
 		} catch (Throwable cause) {
+			recycle();
 			throw new SailfishException(cause);
 		}
 	}
@@ -180,6 +297,52 @@ public class RequestProtocol implements Protocol {
 		return this;
 	}
 
+	public boolean batch() {
+		return batch;
+	}
+
+	public RequestProtocol batch(boolean batch) {
+		this.batch = batch;
+		return this;
+	}
+
+	/**
+	 * split next item from the body of a decoded batch, items share the body of batch without copying
+	 * 
+	 * @return {@code null} if no more items
+	 */
+	public RequestProtocol readBatchItem() throws SailfishException {
+		if (!batch || null == bodyBuf || !bodyBuf.isReadable()) {
+			return null;
+		}
+		if (bodyBuf.readableBytes() < BATCH_ITEM_HEADER_LENGTH) {
+			throw new SailfishException(ExceptionCode.BAD_PACKAGE,
+					String.format("truncated batch item, packetId[%d]", packetId));
+		}
+		int itemPacketId = bodyBuf.readInt();
+		short itemOpcode = bodyBuf.readShort();
+		int itemBodyLength = bodyBuf.readInt();
+		if (itemBodyLength < 0 || itemBodyLength > bodyBuf.readableBytes()) {
+			throw new SailfishException(ExceptionCode.BAD_PACKAGE,
+					String.format("truncated batch item, packetId[%d], item packetId[%d]", packetId, itemPacketId));
+		}
+		RequestProtocol item = RequestProtocol.newInstance();
+		item.oneway = oneway;
+		item.serializeType = serializeType;
+		item.packetId = itemPacketId;
+		item.opcode = itemOpcode;
+		item.compressType = compressType;
+		item.langType = langType;
+		item.timeout = timeout;
+		item.deadlineNanos = deadlineNanos;
+		if (itemBodyLength > 0) {
+			// not readRetainedSlice, releasing a retained slice of a pooled slice releases the frame instead of
+			// the batch body, a plain slice shares and retains the frame directly
+			item.bodyBuf = bodyBuf.readSlice(itemBodyLength).retain();
+		}
+		return item;
+	}
+
 	public byte serializeType() {
 		return serializeType;
 	}
@@ -207,6 +370,7 @@ public class RequestProtocol implements Protocol {
 		return this;
 	}
 
+	@Override
 	public byte compressType() {
 		return compressType;
 	}
@@ -216,6 +380,26 @@ public class RequestProtocol implements Protocol {
 		return this;
 	}
 
+	@Override
+	public int compressThreshold() {
+		return compressThreshold;
+	}
+
+	public RequestProtocol compressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+		return this;
+	}
+
+	@Override
+	public int encodeThreshold() {
+		return encodeThreshold;
+	}
+
+	public RequestProtocol encodeThreshold(int encodeThreshold) {
+		this.encodeThreshold = encodeThreshold;
+		return this;
+	}
+
 	public byte langType() {
 		return langType;
 	}
@@ -225,7 +409,39 @@ public class RequestProtocol implements Protocol {
 		return this;
 	}
 
+	public int timeout() {
+		return timeout;
+	}
+
+	/**
+	 * propagate remaining time of the caller to remote peer, {@code 0} means no deadline
+	 */
+	public RequestProtocol timeout(int timeout) {
+		this.timeout = ParameterChecker.checkNotNegative(timeout, "timeout");
+		return this;
+	}
+
+	/**
+	 * @return local deadline({@link System#nanoTime()} based) of a decoded request, only meaningful if
+	 *         {@link #timeout()} is positive
+	 */
+	public long deadlineNanos() {
+		return deadlineNanos;
+	}
+
+	/**
+	 * @return {@code true} if the caller has already given up waiting for this request
+	 */
+	public boolean expired() {
+		return timeout > 0 && System.nanoTime() - deadlineNanos >= 0;
+	}
+
 	public byte[] body() {
+		if (null == body && null != bodyBuf) {
+			body = ByteBufUtil.getBytes(bodyBuf);
+			bodyBuf.release();
+			bodyBuf = null;
+		}
 		return body;
 	}
 
@@ -234,7 +450,47 @@ public class RequestProtocol implements Protocol {
 		return this;
 	}
 
+	/**
+	 * @return the body buffer still owned by this protocol, {@code null} if body is not backed by {@link ByteBuf}
+	 */
+	@Override
+	public ByteBuf bodyBuf() {
+		return bodyBuf;
+	}
+
+	/**
+	 * set body without copy, the ownership of {@code bodyBuf} is transferred to this protocol
+	 */
+	public RequestProtocol body(ByteBuf bodyBuf) {
+		if (null != this.bodyBuf) {
+			this.bodyBuf.release();
+		}
+		this.bodyBuf = bodyBuf;
+		return this;
+	}
+
+	@Override
+	public ByteBuf detachBody() {
+		ByteBuf detached = bodyBuf;
+		bodyBuf = null;
+		if (null == detached && null != body) {
+			detached = Unpooled.wrappedBuffer(body);
+		}
+		body = null;
+		return detached;
+	}
+
+	@Override
+	public void body(ByteBuf body, byte compressType) {
+		body(body);
+		this.body = null;
+		this.compressType = ProtocolParameterChecker.checkCompressType(compressType);
+	}
+
 	private int bodyLength() {
+		if (null != bodyBuf) {
+			return bodyBuf.readableBytes();
+		}
 		if (null == body) {
 			return 0;
 		}
@@ -250,16 +506,22 @@ public class RequestProtocol implements Protocol {
 		return this.heartbeat;
 	}
 
+	/**
+	 * the body buffer(if any) will be transferred to the returned pooled {@link Request}, see
+	 * {@link Request#recycle()}
+	 */
 	public Request toRequest(){
-		Request request = new Request(oneway, serializeType, compressType, body, langType);
-		return request;
+		ByteBuf requestBuf = bodyBuf;
+		bodyBuf = null;
+		return Request.newInstance(oneway, serializeType, compressType, null == requestBuf ? body : null, requestBuf,
+				langType);
 	}
 	
 	@Override
 	public String toString() {
-		return "RequestProtocol [heartbeat=" + heartbeat + ", oneway=" + oneway + ", serializeType=" + serializeType
+		return "RequestProtocol [heartbeat=" + heartbeat + ", oneway=" + oneway + ", batch=" + batch + ", serializeType=" + serializeType
 				+ ", packetId=" + packetId + ", opcode=" + opcode + ", compressType=" + compressType + ", langType="
-				+ langType + ", body=" + Arrays.toString(body) + "]";
+				+ langType + ", timeout=" + timeout + ", body=" + (null != bodyBuf ? bodyBuf.toString() : Arrays.toString(body)) + "]";
 	}
 
 	public static RequestProtocol newRequest(RequestControl requestControl) {
@@ -267,10 +529,49 @@ public class RequestProtocol implements Protocol {
 		protocol.packetId(PacketIdGenerator.nextId());
 		protocol.opcode(requestControl.opcode());
 		protocol.compressType(requestControl.compressType());
+		protocol.compressThreshold(requestControl.compressThreshold());
+		protocol.encodeThreshold(requestControl.encodeThreshold());
 		protocol.serializeType(requestControl.serializeType());
 		return protocol;
 	}
 	
+	/**
+	 * pack {@code data} into one batch request, item i is identified by {@code packetIds[i]} in its response, the
+	 * batch itself gets a packetId of its own which is never responded
+	 */
+	public static RequestProtocol newBatch(RequestControl requestControl, int[] packetIds, List<byte[]> data,
+			ByteBufAllocator allocator) {
+		ParameterChecker.checkNotNull(data, "data");
+		if (data.isEmpty() || data.size() != packetIds.length) {
+			throw new IllegalArgumentException(
+					"data size: " + data.size() + " (expected: 0 < data size == packetIds length)");
+		}
+		long bodyLength = 0;
+		for (byte[] itemData : data) {
+			bodyLength += BATCH_ITEM_HEADER_LENGTH + (null == itemData ? 0 : itemData.length);
+		}
+		if (bodyLength > RemotingConstants.DEFAULT_PAYLOAD_LENGTH - HEADER_LENGTH - TIMEOUT_EXTENSION_LENGTH) {
+			throw new IllegalArgumentException("batch body length: " + bodyLength + " (expected: <= "
+					+ (RemotingConstants.DEFAULT_PAYLOAD_LENGTH - HEADER_LENGTH - TIMEOUT_EXTENSION_LENGTH) + ")");
+		}
+		ByteBuf body = allocator.buffer((int) bodyLength);
+		for (int i = 0; i < packetIds.length; i++) {
+			byte[] itemData = data.get(i);
+			body.writeInt(packetIds[i]);
+			body.writeShort(requestControl.opcode());
+			if (null == itemData) {
+				body.writeInt(0);
+			} else {
+				body.writeInt(itemData.length);
+				body.writeBytes(itemData);
+			}
+		}
+		RequestProtocol protocol = newRequest(requestControl);
+		protocol.batch(true);
+		protocol.body(body);
+		return protocol;
+	}
+	
 	//less objects, don't need recycle
 	public static RequestProtocol newHeartbeat() {
 		RequestProtocol heartbeat = new RequestProtocol(null);
@@ -20,11 +20,16 @@ package sailfish.remoting.protocol;
 import java.util.Arrays;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.util.CharsetUtil;
 import io.netty.util.Recycler;
 import sailfish.remoting.constants.CompressType;
 import sailfish.remoting.constants.RemotingConstants;
 import sailfish.remoting.constants.SerializeType;
+import sailfish.remoting.exceptions.ExceptionCode;
 import sailfish.remoting.exceptions.SailfishException;
 import sailfish.remoting.utils.StrUtils;
 
@@ -36,6 +41,7 @@ import sailfish.remoting.utils.StrUtils;
  * 3-- header (6 bytes)
  *    3.1-- direction + heartbeat response or normal response + serializeType (1 byte)
  *          --response(0)(eighth high-order bit)
+ *          --stream chunk(1)/final response(0)(seventh high-order bit)
  *          --heartbeat response(1)/normal response(0)(sixth high-order bit)
  *          --serializeType([0~31])(five low-order bits)
  *    3.2-- packetId (4 bytes)
@@ -45,6 +51,12 @@ import sailfish.remoting.utils.StrUtils;
  * 4-- body ((total length - header length) bytes)
  * </pre>
  * 
+ * a streaming response is a sequence of chunks with the same packetId followed by one final response, which is the
+ * end-of-stream marker, so peers which never stream see nothing new
+ * 
+ * body ownership follows the same rules as {@link RequestProtocol}, {@link #detachBody()} transfers the
+ * decoded body buffer to the caller
+ * 
  * @author spccold
  * @version $Id: ResponseProtocol.java, v 0.1 2016年10月11日 下午8:44:48 jileng Exp $
  */
@@ -59,6 +71,7 @@ public class ResponseProtocol implements Protocol{
 	
     private static final int HEADER_LENGTH = 6;
     private static final int RESPONSE_FLAG = 0;
+    private static final int STREAM_FLAG = 0x40;
     private static final int HEARTBEAT_FLAG = 0x20;
         
     public static ResponseProtocol newInstance(){
@@ -69,14 +82,20 @@ public class ResponseProtocol implements Protocol{
     
     //response direction
     private boolean heartbeat;
+    private boolean stream;
     private byte serializeType = SerializeType.NON_SERIALIZE;
     
     private int packetId;
     
     private byte result;
     private byte compressType = CompressType.NON_COMPRESS;
+    // not serialized, only used by encoder
+    private int compressThreshold = RemotingConstants.COMPRESS_THRESHOLD;
+    // not serialized, only used by writer
+    private int encodeThreshold = RemotingConstants.NO_ENCODE_THRESHOLD;
 
     private byte[] body;
+    private ByteBuf bodyBuf;
     
     private SailfishException cause;
     
@@ -84,16 +103,24 @@ public class ResponseProtocol implements Protocol{
 		this.handle = handle;
 	}
     
+	@Override
 	public void recycle(){
+		if(null != bodyBuf){
+			bodyBuf.release();
+			bodyBuf = null;
+		}
 		if(null == handle){//some objects don't need recycle
 			return;
 		}
 		
 		heartbeat = false;
+		stream = false;
 		serializeType = SerializeType.NON_SERIALIZE;
 		packetId = 0;
 		result = 0;
 		compressType = CompressType.NON_COMPRESS;
+		compressThreshold = RemotingConstants.COMPRESS_THRESHOLD;
+		encodeThreshold = RemotingConstants.NO_ENCODE_THRESHOLD;
 		body = null;
 		cause = null;
 		handle.recycle(this);
@@ -102,27 +129,13 @@ public class ResponseProtocol implements Protocol{
     @Override
     public void serialize(ByteBuf output) throws SailfishException {
         try{
-            //write magic first
-            output.writeShort(RemotingConstants.SAILFISH_MAGIC);
-            //write package length(not contain current length field(4 bytes))
-            if(this.heartbeat){
-                output.writeInt(1);
-            }else{
-                output.writeInt(HEADER_LENGTH + bodyLength());
-            }
-
-            byte compactByte = (byte)RESPONSE_FLAG; 
+            writeHeader(output);
             if(heartbeat){
-                compactByte = (byte)(compactByte | HEARTBEAT_FLAG);
-                output.writeByte(compactByte);
                 return;
             }
-            output.writeByte(compactByte | serializeType);
-            
-            output.writeInt(packetId);
-            output.writeByte(result << 4 | compressType);
-            
-            if(bodyLength() != 0){
+            if(null != bodyBuf){
+                output.writeBytes(bodyBuf, bodyBuf.readerIndex(), bodyBuf.readableBytes());
+            }else if(bodyLength() != 0){
                 output.writeBytes(body);
             }
         }catch(Throwable cause){
@@ -132,6 +145,74 @@ public class ResponseProtocol implements Protocol{
 		}
     }
 
+    @Override
+    public ByteBuf serialize(ByteBufAllocator allocator) throws SailfishException {
+        ByteBuf header = null;
+        try{
+            if(heartbeat){
+                header = allocator.ioBuffer(RemotingConstants.PROTOCOL_PREFIX_LENGTH + 1);
+                writeHeader(header);
+                return header;
+            }
+            if(null == bodyBuf){
+                header = allocator.ioBuffer(frameLength());
+                writeHeader(header);
+                if(bodyLength() != 0){
+                    header.writeBytes(body);
+                }
+                return header;
+            }
+            header = allocator.ioBuffer(RemotingConstants.PROTOCOL_PREFIX_LENGTH + HEADER_LENGTH);
+            writeHeader(header);
+            CompositeByteBuf frame = allocator.compositeBuffer(2);
+            frame.addComponent(true, header).addComponent(true, bodyBuf);
+            // the frame owns header and body now
+            header = null;
+            bodyBuf = null;
+            return frame;
+        }catch(Throwable cause){
+            if(null != header){
+                header.release();
+            }
+            throw new SailfishException(cause);
+        }finally {
+            recycle();
+        }
+    }
+
+    @Override
+    public int frameLength() {
+        if(heartbeat){
+            return RemotingConstants.PROTOCOL_PREFIX_LENGTH + 1;
+        }
+        return RemotingConstants.PROTOCOL_PREFIX_LENGTH + HEADER_LENGTH + bodyLength();
+    }
+
+    private void writeHeader(ByteBuf output){
+        //write magic first
+        output.writeShort(RemotingConstants.SAILFISH_MAGIC);
+        //write package length(not contain current length field(4 bytes))
+        if(this.heartbeat){
+            output.writeInt(1);
+        }else{
+            output.writeInt(HEADER_LENGTH + bodyLength());
+        }
+
+        byte compactByte = (byte)RESPONSE_FLAG; 
+        if(heartbeat){
+            compactByte = (byte)(compactByte | HEARTBEAT_FLAG);
+            output.writeByte(compactByte);
+            return;
+        }
+        if(stream){
+            compactByte = (byte)(compactByte | STREAM_FLAG);
+        }
+        output.writeByte(compactByte | serializeType);
+        
+        output.writeInt(packetId);
+        output.writeByte(result << 4 | compressType);
+    }
+
     @Override
     public void deserialize(ByteBuf input, int totalLength) throws SailfishException {
         try{
@@ -140,6 +221,7 @@ public class ResponseProtocol implements Protocol{
             if(this.heartbeat){
                 return;
             }
+            this.stream = ((compactByte & STREAM_FLAG) != 0);
             this.serializeType = (byte)(compactByte & 0x1F);
             
             this.packetId = input.readInt(); 
@@ -149,13 +231,13 @@ public class ResponseProtocol implements Protocol{
             this.result = (byte)(tmp >> 4 & 0xF);
             this.compressType = (byte)(tmp >> 0 & 0xF);
             
-            //read body
+            //read body, share the frame instead of copying
             int bodyLength = totalLength - HEADER_LENGTH;
             if(bodyLength > 0){
-                this.body = new byte[bodyLength];
-                input.readBytes(this.body);
+                this.bodyBuf = input.readRetainedSlice(bodyLength);
             }
         }catch(Throwable cause){
+            recycle();
             throw new SailfishException(cause);
         }
     }
@@ -164,6 +246,17 @@ public class ResponseProtocol implements Protocol{
         this.heartbeat = heartbeat;
     }
 
+    /**
+     * @return {@code true} if this is a chunk of a streaming response and more frames follow
+     */
+    public boolean stream() {
+        return stream;
+    }
+
+    public void stream(boolean stream) {
+        this.stream = stream;
+    }
+
     public byte serializeType() {
         return serializeType;
     }
@@ -188,6 +281,7 @@ public class ResponseProtocol implements Protocol{
         this.result = ProtocolParameterChecker.checkResult(result);
     }
 
+    @Override
     public byte compressType() {
         return compressType;
     }
@@ -196,7 +290,30 @@ public class ResponseProtocol implements Protocol{
         this.compressType = ProtocolParameterChecker.checkCompressType(compressType);
     }
 
+    @Override
+    public int compressThreshold() {
+        return compressThreshold;
+    }
+
+    public void compressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public int encodeThreshold() {
+        return encodeThreshold;
+    }
+
+    public void encodeThreshold(int encodeThreshold) {
+        this.encodeThreshold = encodeThreshold;
+    }
+
     public byte[] body() {
+        if(null == body && null != bodyBuf){
+            body = ByteBufUtil.getBytes(bodyBuf);
+            bodyBuf.release();
+            bodyBuf = null;
+        }
         return body;
     }
 
@@ -204,6 +321,39 @@ public class ResponseProtocol implements Protocol{
         this.body = body;
     }
 
+    /**
+     * set body without copy, the ownership of {@code bodyBuf} is transferred to this protocol
+     */
+    public void body(ByteBuf bodyBuf) {
+        if(null != this.bodyBuf){
+            this.bodyBuf.release();
+        }
+        this.bodyBuf = bodyBuf;
+    }
+
+    @Override
+    public ByteBuf bodyBuf() {
+        return bodyBuf;
+    }
+
+    @Override
+    public ByteBuf detachBody() {
+        ByteBuf detached = bodyBuf;
+        bodyBuf = null;
+        if(null == detached && null != body){
+            detached = Unpooled.wrappedBuffer(body);
+        }
+        body = null;
+        return detached;
+    }
+
+    @Override
+    public void body(ByteBuf body, byte compressType) {
+        body(body);
+        this.body = null;
+        this.compressType = ProtocolParameterChecker.checkCompressType(compressType);
+    }
+
     public void errorStack(String errorStack) {
         if(StrUtils.isNotBlank(errorStack)){
             this.body = errorStack.getBytes(CharsetUtil.UTF_8);
@@ -214,11 +364,21 @@ public class ResponseProtocol implements Protocol{
     	this.cause = cause;
     }
     
+    /**
+     * @return the cause, {@link ExceptionCode#SERVER_OVERLOAD} for {@link RemotingConstants#RESULT_OVERLOAD}
+     */
     public SailfishException cause(){
+    	if(null == cause && result == RemotingConstants.RESULT_OVERLOAD){
+    		cause = new SailfishException(ExceptionCode.SERVER_OVERLOAD,
+    				"rejected by admission control of remote peer, packetId[" + packetId + "]");
+    	}
     	return this.cause;
     }
     
     private int bodyLength(){
+        if(null != bodyBuf){
+            return bodyBuf.readableBytes();
+        }
         if(null == body){
             return 0;
         }
@@ -236,9 +396,9 @@ public class ResponseProtocol implements Protocol{
     
 	@Override
 	public String toString() {
-		return "ResponseProtocol [heartbeat=" + heartbeat + ", serializeType=" + serializeType + ", packetId="
-				+ packetId + ", result=" + result + ", compressType=" + compressType + ", body=" + Arrays.toString(body)
-				+ "]";
+		return "ResponseProtocol [heartbeat=" + heartbeat + ", stream=" + stream + ", serializeType=" + serializeType + ", packetId="
+				+ packetId + ", result=" + result + ", compressType=" + compressType + ", body="
+				+ (null != bodyBuf ? bodyBuf.toString() : Arrays.toString(body)) + "]";
 	}
 
 	//less objects, don't need recycle
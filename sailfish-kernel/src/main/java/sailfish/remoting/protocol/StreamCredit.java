@@ -0,0 +1,67 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * body of the credit frame of a response stream, sent by client as a oneway request with
+ * {@link sailfish.remoting.constants.RemotingConstants#STREAM_CREDIT_OPCODE}
+ * 
+ * <pre>
+ * 1-- packetId of the stream request (4 bytes)
+ * 2-- credits, chunks the client is able to buffer more (4 bytes)
+ * 3-- type, grant(0)/open(1)/cancel(2) (1 byte)
+ *     --open is written before the stream request through the same connection, so the server knows the stream
+ *       when the request arrives, grant for an unknown stream is ignored
+ *     --cancel tells the server the client is gone, a producer waiting for credits gives up at once
+ * </pre>
+ * 
+ * @author spccold
+ * @version $Id: StreamCredit.java, v 0.1 2016年12月18日 下午3:20:41 spccold Exp $
+ */
+public final class StreamCredit {
+	public static final byte GRANT = 0;
+	public static final byte OPEN = 1;
+	public static final byte CANCEL = 2;
+
+	private static final int LENGTH = 9;
+
+	private StreamCredit() {
+	}
+
+	public static byte[] encode(int packetId, int credits, byte type) {
+		return ByteBuffer.allocate(LENGTH).putInt(packetId).putInt(credits).put(type).array();
+	}
+
+	public static boolean valid(byte[] body) {
+		return null != body && body.length == LENGTH;
+	}
+
+	public static int packetId(byte[] body) {
+		return ByteBuffer.wrap(body).getInt(0);
+	}
+
+	public static int credits(byte[] body) {
+		return ByteBuffer.wrap(body).getInt(4);
+	}
+
+	public static byte type(byte[] body) {
+		return body[8];
+	}
+}
@@ -45,6 +45,13 @@ public class ParameterChecker {
         return number;
     }
     
+    public static long checkNotNegative(long number, String hint){
+        if(number < 0){
+            throw new IllegalArgumentException(hint + ": " + number + " (expected: >= 0)");
+        }
+        return number;
+    }
+    
     public static int checkPositive(int number, String hint){
         if(number <= 0){
             throw new IllegalArgumentException(hint + ": " + number + " (expected: > 0)");
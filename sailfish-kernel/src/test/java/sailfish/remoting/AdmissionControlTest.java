@@ -0,0 +1,104 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sailfish.remoting.admission.AdmissionController;
+import sailfish.remoting.admission.ConcurrencyLimiter;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.processors.ClientServerNormalRequestTestRequestProcessor;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * @author spccold
+ * @version $Id: AdmissionControlTest.java, v 0.1 2016年12月14日 下午4:20:53 spccold Exp $
+ */
+public class AdmissionControlTest {
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	public void testLimiter() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+		}
+		Assert.assertFalse(limiter.tryAcquire());
+		Assert.assertEquals(10, limiter.inflight());
+
+		// saturated with steady latency, limit grows
+		for (int i = 0; i < 100; i++) {
+			limiter.release(FAST);
+			Assert.assertTrue(limiter.tryAcquire());
+		}
+		int grown = limiter.limit();
+		Assert.assertTrue(grown > 10);
+
+		// latency far above baseline, limit shrinks
+		for (int i = 0; i < 20; i++) {
+			limiter.release(SLOW);
+			limiter.tryAcquire();
+		}
+		Assert.assertTrue(limiter.limit() < grown);
+		Assert.assertTrue(limiter.limit() >= 1);
+	}
+
+	@Test
+	public void testIdleLimiterDoesNotGrow() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(FAST);
+		}
+		Assert.assertEquals(10, limiter.limit());
+	}
+
+	@Test
+	public void testController() {
+		RequestProcessor processor = new ClientServerNormalRequestTestRequestProcessor();
+		AdmissionController controller = new AdmissionController(Arrays.asList(processor), 100, 1);
+		Assert.assertEquals(1, controller.limit(processor.opcode()));
+		Assert.assertEquals(-1, controller.limit(1000));
+
+		Assert.assertTrue(controller.tryAcquire(processor.opcode()));
+		Assert.assertFalse(controller.tryAcquire(processor.opcode()));
+		// other opcodes are only limited globally
+		Assert.assertTrue(controller.tryAcquire(1000));
+		Assert.assertEquals(1, controller.rejected());
+
+		controller.release(processor.opcode(), FAST);
+		controller.release(1000);
+		Assert.assertTrue(controller.tryAcquire(processor.opcode()));
+	}
+
+	@Test
+	public void testOverloadResponse() {
+		ResponseProtocol response = ResponseProtocol.newInstance();
+		response.packetId(1);
+		response.result(RemotingConstants.RESULT_OVERLOAD);
+		Assert.assertEquals(ExceptionCode.SERVER_OVERLOAD, response.cause().code());
+		response.recycle();
+	}
+}
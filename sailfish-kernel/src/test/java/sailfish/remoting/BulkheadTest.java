@@ -0,0 +1,126 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sailfish.remoting.configuration.BulkheadConfig;
+import sailfish.remoting.executor.Bulkhead;
+import sailfish.remoting.executor.Bulkheads;
+import sailfish.remoting.utils.Histogram;
+
+/**
+ * @author spccold
+ * @version $Id: BulkheadTest.java, v 0.1 2016年12月15日 下午2:05:19 spccold Exp $
+ */
+public class BulkheadTest {
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		Assert.assertEquals(0, histogram.percentile(99));
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		Assert.assertEquals(100, histogram.count());
+		Assert.assertEquals(100, histogram.max());
+		Assert.assertEquals(50.5, histogram.mean(), 0.001);
+		// 50 falls into [32, 63]
+		Assert.assertEquals(63, histogram.percentile(50));
+		Assert.assertEquals(100, histogram.percentile(100));
+		histogram.record(-1);
+		Assert.assertEquals(0, histogram.percentile(0.5));
+	}
+
+	@Test
+	public void testIsolation() throws Exception {
+		Bulkheads bulkheads = new Bulkheads(Arrays.asList(new BulkheadConfig("slow", 1, 1, (short) 1),
+				new BulkheadConfig("fast", 1, 16, (short) 2, (short) 3)));
+		try {
+			Bulkhead slow = bulkheads.find(1);
+			Bulkhead fast = bulkheads.find(3);
+			Assert.assertSame(slow, bulkheads.get("slow"));
+			Assert.assertSame(fast, bulkheads.find(2));
+			Assert.assertNull(bulkheads.find(4));
+
+			final CountDownLatch blocked = new CountDownLatch(1);
+			final CountDownLatch release = new CountDownLatch(1);
+			slow.execute(new Runnable() {
+				@Override
+				public void run() {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException cause) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			Assert.assertTrue(blocked.await(1, TimeUnit.SECONDS));
+			final CountDownLatch queued = new CountDownLatch(1);
+			slow.execute(new Runnable() {
+				@Override
+				public void run() {
+					queued.countDown();
+				}
+			});
+			try {
+				slow.execute(new Runnable() {
+					@Override
+					public void run() {
+					}
+				});
+				Assert.fail("queue of slow bulkhead should be full");
+			} catch (RejectedExecutionException expected) {
+			}
+			Assert.assertEquals(1, slow.rejected());
+
+			// slow bulkhead doesn't starve fast one
+			final CountDownLatch fastDone = new CountDownLatch(1);
+			fast.execute(new Runnable() {
+				@Override
+				public void run() {
+					fastDone.countDown();
+				}
+			});
+			Assert.assertTrue(fastDone.await(1, TimeUnit.SECONDS));
+
+			release.countDown();
+			Assert.assertTrue(queued.await(1, TimeUnit.SECONDS));
+			Assert.assertEquals(3, slow.queueDepth().count());
+			Assert.assertEquals(1, slow.queueDepth().max());
+			// run time and queue wait are recorded after the task returns
+			Thread.sleep(50);
+			Assert.assertEquals(2, slow.runTimeMicros().count());
+			Assert.assertEquals(2, slow.queueWaitMicros().count());
+		} finally {
+			bulkheads.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOpcodeMappedTwice() {
+		new Bulkheads(Arrays.asList(new BulkheadConfig("a", 1, 1, (short) 1), new BulkheadConfig("b", 1, 1, (short) 1)));
+	}
+}
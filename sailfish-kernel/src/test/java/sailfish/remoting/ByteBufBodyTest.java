@@ -0,0 +1,177 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ResourceLeakDetector;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.channel.ServerExchangeChannel;
+import sailfish.remoting.codec.DefaultRemotingCodec;
+import sailfish.remoting.codec.RemotingEncoder;
+import sailfish.remoting.configuration.ExchangeClientConfig;
+import sailfish.remoting.configuration.ExchangeServerConfig;
+import sailfish.remoting.executor.SimpleExecutor;
+import sailfish.remoting.future.ResponseFuture;
+import sailfish.remoting.processors.ByteBufEchoTestRequestProcessor;
+import sailfish.remoting.processors.Request;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.protocol.RequestProtocol;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: ByteBufBodyTest.java, v 0.1 2016年12月3日 下午5:20:11 spccold Exp $
+ */
+public class ByteBufBodyTest {
+	private static final byte[]  data       = "hello sailfish with zero copy!".getBytes(CharsetUtil.UTF_8);
+	private static DefaultServer server;
+	private static int           originPort = 13145;
+	private static ResourceLeakDetector.Level originLevel;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		originLevel = ResourceLeakDetector.getLevel();
+		ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+
+		ExchangeServerConfig serverConfig = new ExchangeServerConfig();
+		serverConfig.address(new Address("localhost", originPort));
+		List<RequestProcessor> processors = new ArrayList<>(1);
+		processors.add(new ByteBufEchoTestRequestProcessor());
+		serverConfig.setRequestProcessors(processors);
+
+		server = Exchanger.bind(serverConfig);
+		server.start();
+	}
+
+	@AfterClass
+	public static void afterClass() throws InterruptedException {
+		if (null != server) {
+			server.close();
+		}
+		ResourceLeakDetector.setLevel(originLevel);
+	}
+
+	@Test
+	public void testSerializeWithByteBufBody() throws Exception {
+		ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+		ByteBuf body = allocator.directBuffer(data.length).writeBytes(data);
+
+		RequestProtocol send = RequestProtocol.newRequest(new RequestControl());
+		send.body(body);
+		ByteBuf frame = send.serialize(allocator);
+		// body is referenced, not copied
+		Assert.assertTrue(frame instanceof CompositeByteBuf);
+		Assert.assertEquals(1, body.refCnt());
+
+		RequestProtocol receive = (RequestProtocol) DefaultRemotingCodec.INSTANCE.decode(frame);
+		Request request = receive.toRequest();
+		Assert.assertEquals(Unpooled.wrappedBuffer(data), request.getRequestBuf());
+		request.release();
+		frame.release();
+		Assert.assertEquals(0, body.refCnt());
+	}
+
+	@Test
+	public void testBodyReleasedWhenWriteFails() throws Exception {
+		// handlers of a closed channel are removed, writes never reach the encoder
+		EmbeddedChannel channel = new EmbeddedChannel(RemotingEncoder.INSTANCE);
+		channel.close();
+		ExchangeChannel exchangeChannel = new ServerExchangeChannel(null, channel);
+
+		ByteBuf body = Unpooled.directBuffer().writeBytes(data);
+		exchangeChannel.oneway(body, new RequestControl());
+		ResponseProtocol response = ResponseProtocol.newInstance();
+		response.packetId(1);
+		ByteBuf responseBody = Unpooled.directBuffer().writeBytes(data);
+		response.body(responseBody);
+		exchangeChannel.response(response);
+		channel.runPendingTasks();
+
+		Assert.assertEquals(0, body.refCnt());
+		Assert.assertEquals(0, responseBody.refCnt());
+	}
+
+	@Test
+	public void testByteBufRequestResponse() throws Exception {
+		ExchangeClientConfig config = new ExchangeClientConfig();
+		config.address(new Address("localhost", originPort));
+		DefaultClient client = new DefaultClient(config);
+		try {
+			RequestControl control = new RequestControl();
+			control.timeout(2000);
+			control.opcode(ByteBufEchoTestRequestProcessor.OPCODE);
+
+			ResponseFuture<ByteBuf> future = client.request(Unpooled.directBuffer().writeBytes(data), control);
+			ByteBuf result = future.get(2, TimeUnit.SECONDS);
+			try {
+				Assert.assertEquals(Unpooled.wrappedBuffer(data), result);
+			} finally {
+				result.release();
+			}
+
+			final CountDownLatch latch = new CountDownLatch(1);
+			client.request(Unpooled.directBuffer().writeBytes(data), new ResponseCallback<ByteBuf>() {
+				@Override
+				public void handleResponse(ByteBuf resp) {
+					try {
+						if (Unpooled.wrappedBuffer(data).equals(resp)) {
+							latch.countDown();
+						}
+					} finally {
+						resp.release();
+					}
+				}
+
+				@Override
+				public void handleException(Exception cause) {
+				}
+
+				@Override
+				public Executor getExecutor() {
+					return SimpleExecutor.INSTANCE;
+				}
+			}, control);
+			latch.await(2, TimeUnit.SECONDS);
+			Assert.assertEquals(0, latch.getCount());
+
+			// byte[] response for ByteBuf request still works
+			ResponseFuture<byte[]> bytesFuture = client.request(data, control);
+			Assert.assertArrayEquals(data, bytesFuture.get(2, TimeUnit.SECONDS));
+		} finally {
+			client.close();
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package sailfish.remoting;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import sailfish.remoting.channel.ExchangeChannelGroup;
 import sailfish.remoting.configuration.ExchangeClientConfig;
 import sailfish.remoting.configuration.ExchangeServerConfig;
 import sailfish.remoting.exceptions.ExceptionCode;
@@ -133,6 +137,38 @@ public class ClientServerTest {
 
         callbackLatch.await(2000, TimeUnit.MILLISECONDS);
         Assert.assertTrue(callbackLatch.getCount() == 0);
+
+        //asynchronous composable invoke, listeners run on io thread
+        control.inlineCompletion(true);
+        final CountDownLatch asyncLatch = new CountDownLatch(1);
+        client.requestAsync(data, control).addListener(new FutureListener<byte[]>() {
+            @Override
+            public void operationComplete(Future<byte[]> future) throws Exception {
+                if (future.isSuccess() && Arrays.equals(data, future.getNow())) {
+                    asyncLatch.countDown();
+                }
+            }
+        });
+        asyncLatch.await(2000, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(asyncLatch.getCount() == 0);
+        control.inlineCompletion(false);
+        Assert.assertArrayEquals(data, client.requestAsync(data, control).get(2, TimeUnit.SECONDS));
+
+        //batched invoke, one frame for all items, ClientServerNormalRequestTestRequestProcessor expects data
+        List<byte[]> batch = new ArrayList<>(8);
+        for (int i = 0; i < 8; i++) {
+            batch.add(data);
+        }
+        List<ResponseFuture<byte[]>> futures = client.requestBatch(batch, control);
+        Assert.assertEquals(batch.size(), futures.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Assert.assertArrayEquals(batch.get(i), futures.get(i).get(2, TimeUnit.SECONDS));
+        }
+        List<byte[]> results = client.requestBatchAsync(batch, control).get(2, TimeUnit.SECONDS);
+        Assert.assertEquals(batch.size(), results.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Assert.assertArrayEquals(batch.get(i), results.get(i));
+        }
     }
 
     @Test
@@ -186,6 +222,37 @@ public class ClientServerTest {
         client.close();
     }
 
+    @Test
+    public void testConnectAsync() throws Exception {
+        ExchangeClientConfig config = newBaseConfig(originPort);
+        config.connections((short)4);
+        Future<ExchangeChannelGroup> connectFuture = Exchanger.connectAsync(config);
+        Assert.assertTrue(connectFuture.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(connectFuture.isSuccess());
+        ExchangeChannelGroup group = connectFuture.getNow();
+        Assert.assertTrue(group.isAvailable());
+        RequestControl control = new RequestControl();
+        control.opcode(ClientServerNormalRequestTestRequestProcessor.OPCODE);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertArrayEquals(data, group.request(data, control).get(2, TimeUnit.SECONDS));
+        }
+        group.close();
+
+        // nobody listens on this port
+        config = newBaseConfig(13147);
+        config.connections((short)4);
+        connectFuture = Exchanger.connectAsync(config);
+        Assert.assertTrue(connectFuture.await(5, TimeUnit.SECONDS));
+        Assert.assertFalse(connectFuture.isSuccess());
+        Assert.assertTrue(connectFuture.cause() instanceof SailfishException);
+        try {
+            Exchanger.connect(config);
+            Assert.fail();
+        } catch (SailfishException cause) {
+            Assert.assertTrue(true);
+        }
+    }
+
     @Test
     public void testMultiConnsWithLazyChannel() throws Exception {
         int conns = 3;
@@ -294,6 +361,12 @@ public class ClientServerTest {
         latch.await(2500, TimeUnit.MILLISECONDS);
         Assert.assertTrue(latch.getCount() == 0);
 
+        //test async, timeout delivered by Tracer without waiting
+        control.timeout(500);
+        Future<byte[]> asyncFuture = client.requestAsync(requestData, control);
+        Assert.assertTrue(asyncFuture.await(1000, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(ExceptionCode.RESPONSE_TIMEOUT, ((SailfishException) asyncFuture.cause()).code());
+
         client.close();
     }
 }
\ No newline at end of file
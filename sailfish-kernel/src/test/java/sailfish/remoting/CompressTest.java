@@ -0,0 +1,166 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import sailfish.remoting.codec.DefaultRemotingCodec;
+import sailfish.remoting.compress.Compressor;
+import sailfish.remoting.compress.Compressors;
+import sailfish.remoting.constants.CompressType;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.protocol.RequestProtocol;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: CompressTest.java, v 0.1 2016年12月4日 上午11:20:36 spccold Exp $
+ */
+public class CompressTest {
+	private static final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+
+	private static byte[] newBody(int length) {
+		byte[] body = new byte[length];
+		for (int i = 0; i < length; i++) {
+			body[i] = (byte) (i % 7);
+		}
+		return body;
+	}
+
+	@Test
+	public void testRequestCompress() throws Exception {
+		byte[] body = newBody(64 * 1024);
+		byte[] compressTypes = { CompressType.GZIP_COMPRESS, CompressType.DEFLATE_COMPRESS,
+				CompressType.SNAPPY_COMPRESS };
+		for (byte compressType : compressTypes) {
+			RequestControl control = new RequestControl();
+			control.compressType(compressType);
+			RequestProtocol send = RequestProtocol.newRequest(control);
+			send.body(body);
+
+			ByteBuf frame = DefaultRemotingCodec.INSTANCE.encode(send, allocator);
+			Assert.assertTrue(frame.readableBytes() < body.length);
+
+			RequestProtocol receive = (RequestProtocol) DefaultRemotingCodec.INSTANCE.decode(frame);
+			frame.release();
+			Assert.assertEquals(CompressType.NON_COMPRESS, receive.compressType());
+			Assert.assertArrayEquals(body, receive.body());
+			receive.recycle();
+		}
+	}
+
+	@Test
+	public void testResponseCompressWithByteBufBody() throws Exception {
+		byte[] body = newBody(16 * 1024);
+		ResponseProtocol send = ResponseProtocol.newInstance();
+		send.packetId(1);
+		send.compressType(CompressType.SNAPPY_COMPRESS);
+		ByteBuf bodyBuf = Unpooled.directBuffer().writeBytes(body);
+		send.body(bodyBuf);
+
+		ByteBuf frame = DefaultRemotingCodec.INSTANCE.encode(send, allocator);
+		Assert.assertTrue(frame.readableBytes() < body.length);
+		Assert.assertEquals(0, bodyBuf.refCnt());
+
+		ResponseProtocol receive = (ResponseProtocol) DefaultRemotingCodec.INSTANCE.decode(frame);
+		frame.release();
+		ByteBuf result = receive.detachBody();
+		Assert.assertEquals(Unpooled.wrappedBuffer(body), result);
+		result.release();
+		receive.recycle();
+	}
+
+	@Test
+	public void testBelowThreshold() throws Exception {
+		byte[] body = newBody(128);
+		RequestControl control = new RequestControl();
+		control.compressType(CompressType.GZIP_COMPRESS);
+		control.compressThreshold(body.length + 1);
+		RequestProtocol send = RequestProtocol.newRequest(control);
+		send.body(body);
+
+		ByteBuf frame = DefaultRemotingCodec.INSTANCE.encode(send, allocator);
+		RequestProtocol receive = (RequestProtocol) DefaultRemotingCodec.INSTANCE.decode(frame);
+		frame.release();
+		Assert.assertEquals(CompressType.NON_COMPRESS, receive.compressType());
+		Assert.assertTrue(Arrays.equals(body, receive.body()));
+		receive.recycle();
+	}
+
+	@Test
+	public void testUnsupportedCompressType() throws Exception {
+		RequestControl control = new RequestControl();
+		control.compressType(CompressType.LZ4_COMPRESS);
+		control.compressThreshold(0);
+		RequestProtocol send = RequestProtocol.newRequest(control);
+		send.body(newBody(16));
+		try {
+			DefaultRemotingCodec.INSTANCE.encode(send, allocator);
+			Assert.fail();
+		} catch (SailfishException cause) {
+			Assert.assertEquals(ExceptionCode.COMPRESS_UNSUPPORTED, cause.code());
+		}
+	}
+
+	@Test
+	public void testIncompressibleSentUncompressed() throws Exception {
+		byte[] body = new byte[4 * 1024];
+		new Random(1).nextBytes(body);
+		RequestControl control = new RequestControl();
+		control.compressType(CompressType.GZIP_COMPRESS);
+		control.compressThreshold(0);
+		RequestProtocol send = RequestProtocol.newRequest(control);
+		send.body(body);
+
+		Compressors.compress(send, allocator);
+		Assert.assertEquals(CompressType.NON_COMPRESS, send.compressType());
+		Assert.assertArrayEquals(body, send.body());
+		send.recycle();
+	}
+
+	@Test
+	public void testDecompressedLengthBounded() throws Exception {
+		ByteBuf bomb = Unpooled.buffer(Compressors.MAX_DECOMPRESSED_LENGTH + 1);
+		bomb.writeZero(Compressors.MAX_DECOMPRESSED_LENGTH + 1);
+		byte[] compressTypes = { CompressType.GZIP_COMPRESS, CompressType.DEFLATE_COMPRESS,
+				CompressType.SNAPPY_COMPRESS };
+		for (byte compressType : compressTypes) {
+			Compressor compressor = Compressors.get(compressType);
+			ByteBuf compressed = compressor.compress(bomb, allocator);
+			try {
+				compressor.decompress(compressed, allocator);
+				Assert.fail();
+			} catch (SailfishException cause) {
+				Assert.assertEquals(ExceptionCode.COMPRESS_FAIL, cause.code());
+			} finally {
+				compressed.release();
+			}
+		}
+		bomb.release();
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import sailfish.remoting.channel.AbstractExchangeChannelGroup;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.handler.DefaultMsgHandler;
+import sailfish.remoting.handler.MsgHandler;
+import sailfish.remoting.processors.Request;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.processors.Response;
+import sailfish.remoting.protocol.Protocol;
+import sailfish.remoting.protocol.RequestProtocol;
+import sailfish.remoting.protocol.ResponseProtocol;
+
+/**
+ * steady-state request dispatch should allocate nothing, everything comes from {@link io.netty.util.Recycler}
+ *
+ * @author spccold
+ * @version $Id: DispatchAllocationTest.java, v 0.1 2016年12月13日 下午3:21:40 spccold Exp $
+ */
+public class DispatchAllocationTest {
+	private static final short OPCODE = 1;
+	private static final int WARMUP = 20000;
+	private static final int ITERATIONS = 10000;
+
+	@Test
+	public void testEchoAllocatesNothing() throws Exception {
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+		DefaultMsgHandler handler = new DefaultMsgHandler(
+				Arrays.<RequestProcessor> asList(new ReusedResponseEchoProcessor()));
+		RecycleResponseGroup group = new RecycleResponseGroup();
+		ByteBuf body = Unpooled.buffer(16).writeInt(1);
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				handler.handle(group, newRequest(i, body));
+			}
+			long threadId = Thread.currentThread().getId();
+			long before = threadMXBean.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < ITERATIONS; i++) {
+				handler.handle(group, newRequest(i, body));
+			}
+			long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+			Assert.assertEquals(WARMUP + ITERATIONS, group.responses);
+			// a single object per request would be at least 16 bytes each
+			Assert.assertTrue("allocated " + allocated + " bytes", allocated < ITERATIONS);
+			Assert.assertEquals(1, body.refCnt());
+		} finally {
+			body.release();
+		}
+	}
+
+	private static RequestProtocol newRequest(int packetId, ByteBuf body) {
+		RequestProtocol request = RequestProtocol.newInstance();
+		request.packetId(packetId);
+		request.opcode(OPCODE);
+		request.body(body.retain());
+		return request;
+	}
+
+	static final class ReusedResponseEchoProcessor implements RequestProcessor {
+		private static final Executor DIRECT = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+		// processor runs in caller thread
+		private final Response response = new Response(true, (ByteBuf) null);
+
+		@Override
+		public Executor executor() {
+			return DIRECT;
+		}
+
+		@Override
+		public short opcode() {
+			return OPCODE;
+		}
+
+		@Override
+		public void handleRequest(Request request, Output output) {
+			response.setResponseBuf(request.getRequestBuf().retain());
+			output.response(response);
+		}
+
+		@Override
+		public void onRejectedExecutionException(Request request, Output output) {
+		}
+	}
+
+	static final class RecycleResponseGroup extends AbstractExchangeChannelGroup {
+		int responses;
+
+		RecycleResponseGroup() {
+			super(UUID.randomUUID());
+		}
+
+		@Override
+		public void response(ResponseProtocol response) throws SailfishException {
+			responses++;
+			// as if written to remote peer
+			response.recycle();
+		}
+
+		@Override
+		public void close(int timeout) {
+		}
+
+		@Override
+		public boolean isAvailable() {
+			return true;
+		}
+
+		@Override
+		public ExchangeChannel next() throws SailfishException {
+			return null;
+		}
+
+		@Override
+		public MsgHandler<Protocol> getMsgHander() {
+			return null;
+		}
+
+		@Override
+		public Tracer getTracer() {
+			return null;
+		}
+	}
+}
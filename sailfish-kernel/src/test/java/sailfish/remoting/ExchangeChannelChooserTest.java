@@ -22,7 +22,11 @@ import org.junit.Test;
 
 import sailfish.remoting.channel.DefaultExchangeChannelChooserFactory;
 import sailfish.remoting.channel.EmptyExchangeChannel;
+import sailfish.remoting.channel.EwmaLatencyExchangeChannelChooserFactory;
 import sailfish.remoting.channel.ExchangeChannelChooserFactory;
+import sailfish.remoting.channel.LeastPendingExchangeChannelChooserFactory;
+import sailfish.remoting.channel.PowerOfTwoChoicesExchangeChannelChooserFactory;
+import sailfish.remoting.channel.WritabilityAwareExchangeChannelChooserFactory;
 import sailfish.remoting.exceptions.SailfishException;
 
 /**
@@ -153,6 +157,200 @@ public class ExchangeChannelChooserTest {
 		Assert.assertNotNull(chooser.next());
 	}
 	
+	@Test
+	public void testLeastPending() throws Exception {
+		MockExchangeChannel[] channels = new MockExchangeChannel[3];
+		initMockExchangeChannelArray(channels);
+		MockExchangeChannel[] deadChannels = new MockExchangeChannel[channels.length];
+		ExchangeChannelChooserFactory.ExchangeChannelChooser chooser = LeastPendingExchangeChannelChooserFactory.INSTANCE
+				.newChooser(channels, deadChannels);
+
+		// equal load, take turns
+		Assert.assertEquals(0, ((MockExchangeChannel) chooser.next()).index());
+		Assert.assertEquals(1, ((MockExchangeChannel) chooser.next()).index());
+		Assert.assertEquals(2, ((MockExchangeChannel) chooser.next()).index());
+
+		channels[0].setPendingRequests(10);
+		channels[1].setPendingRequests(1);
+		channels[2].setPendingRequests(5);
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(1, ((MockExchangeChannel) chooser.next()).index());
+		}
+
+		// least pending but unavailable
+		channels[1].setAvailable(false);
+		Assert.assertEquals(2, ((MockExchangeChannel) chooser.next()).index());
+		Assert.assertSame(channels[1], deadChannels[1]);
+
+		channels[0].setAvailable(false);
+		channels[2].setAvailable(false);
+		try {
+			chooser.next();
+			Assert.fail();
+		} catch (SailfishException cause) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void testPowerOfTwoChoices() throws Exception {
+		MockExchangeChannel[] channels = new MockExchangeChannel[2];
+		initMockExchangeChannelArray(channels);
+		MockExchangeChannel[] deadChannels = new MockExchangeChannel[channels.length];
+		ExchangeChannelChooserFactory.ExchangeChannelChooser chooser = PowerOfTwoChoicesExchangeChannelChooserFactory.INSTANCE
+				.newChooser(channels, deadChannels);
+
+		// two channels are always both sampled
+		channels[0].setPendingRequests(3);
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(1, ((MockExchangeChannel) chooser.next()).index());
+		}
+		channels[1].setAvailable(false);
+		Assert.assertEquals(0, ((MockExchangeChannel) chooser.next()).index());
+
+		// the congested channel never wins a comparison
+		channels = new MockExchangeChannel[8];
+		initMockExchangeChannelArray(channels);
+		chooser = PowerOfTwoChoicesExchangeChannelChooserFactory.INSTANCE.newChooser(channels,
+				new MockExchangeChannel[channels.length]);
+		channels[3].setPendingRequests(100);
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertNotEquals(3, ((MockExchangeChannel) chooser.next()).index());
+		}
+
+		// only one available, found by the fallback scan
+		for (int i = 0; i < channels.length; i++) {
+			channels[i].setAvailable(i == 5);
+		}
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(5, ((MockExchangeChannel) chooser.next()).index());
+		}
+	}
+
+	@Test
+	public void testWritabilityAware() throws Exception {
+		MockExchangeChannel[] channels = new MockExchangeChannel[3];
+		initMockExchangeChannelArray(channels);
+		MockExchangeChannel[] deadChannels = new MockExchangeChannel[channels.length];
+		ExchangeChannelChooserFactory.ExchangeChannelChooser chooser = WritabilityAwareExchangeChannelChooserFactory.INSTANCE
+				.newChooser(channels, deadChannels);
+
+		channels[0].setBytesBeforeUnwritable(1024);
+		channels[1].setBytesBeforeUnwritable(64 * 1024);
+		channels[2].setBytesBeforeUnwritable(32 * 1024);
+		channels[0].setPendingRequests(1);
+		channels[1].setPendingRequests(8);
+		channels[2].setPendingRequests(4);
+		// free buffer space does not attract requests
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(0, ((MockExchangeChannel) chooser.next()).index());
+		}
+		// over high water mark
+		channels[0].setBytesBeforeUnwritable(0);
+		Assert.assertEquals(2, ((MockExchangeChannel) chooser.next()).index());
+		// none writable, least pending
+		channels[1].setBytesBeforeUnwritable(0);
+		channels[2].setBytesBeforeUnwritable(0);
+		Assert.assertEquals(0, ((MockExchangeChannel) chooser.next()).index());
+		// not available at all
+		channels[0].setAvailable(false);
+		Assert.assertEquals(2, ((MockExchangeChannel) chooser.next()).index());
+	}
+
+	@Test
+	public void testEwmaLatency() throws Exception {
+		MockExchangeChannel[] channels = new MockExchangeChannel[3];
+		initMockExchangeChannelArray(channels);
+		MockExchangeChannel[] deadChannels = new MockExchangeChannel[channels.length];
+		ExchangeChannelChooserFactory.ExchangeChannelChooser chooser = new EwmaLatencyExchangeChannelChooserFactory(4)
+				.newChooser(channels, deadChannels);
+
+		channels[0].setEwmaLatency(1000);
+		channels[1].setEwmaLatency(5000);
+		channels[2].setEwmaLatency(2000);
+		int[] chosen = new int[channels.length];
+		for (int i = 0; i < 400; i++) {
+			chosen[((MockExchangeChannel) chooser.next()).index()]++;
+		}
+		// one of every four is a round-robin probe
+		Assert.assertEquals(100 / 3, chosen[1], 1);
+		Assert.assertEquals(100 / 3, chosen[2], 1);
+		Assert.assertEquals(400 - chosen[1] - chosen[2], chosen[0]);
+
+		// latency weighted by pending requests
+		channels[0].setPendingRequests(4);
+		channels[2].setPendingRequests(1);
+		chooser = new EwmaLatencyExchangeChannelChooserFactory(1024).newChooser(channels, deadChannels);
+		chooser.next();// probe
+		Assert.assertEquals(2, ((MockExchangeChannel) chooser.next()).index());
+
+		channels[2].setAvailable(false);
+		Assert.assertEquals(0, ((MockExchangeChannel) chooser.next()).index());
+
+		// never sampled channel counts as the mean(3000) of sampled ones instead of zero
+		channels[0].setPendingRequests(0);
+		channels[2].setPendingRequests(0);
+		channels[2].setEwmaLatency(0);
+		channels[2].setAvailable(true);
+		Assert.assertEquals(0, ((MockExchangeChannel) chooser.next()).index());
+	}
+
+	@Test
+	public void testRoutingKey() throws Exception {
+		MockExchangeChannel[] channels = new MockExchangeChannel[4];
+		initMockExchangeChannelArray(channels);
+		MockExchangeChannel[] deadChannels = new MockExchangeChannel[channels.length];
+		ExchangeChannelChooserFactory.ExchangeChannelChooser chooser = DefaultExchangeChannelChooserFactory.INSTANCE
+				.newChooser(channels, deadChannels);
+
+		int keys = 1000;
+		int[] routes = new int[keys];
+		int[] perChannel = new int[channels.length];
+		for (int key = 0; key < keys; key++) {
+			routes[key] = ((MockExchangeChannel) chooser.next("account-" + key)).index();
+			perChannel[routes[key]]++;
+			// stable
+			Assert.assertEquals(routes[key], ((MockExchangeChannel) chooser.next("account-" + key)).index());
+		}
+		for (int count : perChannel) {
+			Assert.assertTrue(count > keys / channels.length / 2);
+		}
+
+		// only keys of the dead channel move
+		channels[2].setAvailable(false);
+		for (int key = 0; key < keys; key++) {
+			int index = ((MockExchangeChannel) chooser.next("account-" + key)).index();
+			if (routes[key] == 2) {
+				Assert.assertNotEquals(2, index);
+			} else {
+				Assert.assertEquals(routes[key], index);
+			}
+		}
+		Assert.assertSame(channels[2], deadChannels[2]);
+
+		// and come back after recovery
+		channels[2].setAvailable(true);
+		for (int key = 0; key < keys; key++) {
+			Assert.assertEquals(routes[key], ((MockExchangeChannel) chooser.next("account-" + key)).index());
+		}
+
+		// load aware choosers keep key affinity as well
+		chooser = LeastPendingExchangeChannelChooserFactory.INSTANCE.newChooser(channels, deadChannels);
+		for (int key = 0; key < keys; key++) {
+			Assert.assertEquals(routes[key], ((MockExchangeChannel) chooser.next("account-" + key)).index());
+		}
+
+		for (MockExchangeChannel channel : channels) {
+			channel.setAvailable(false);
+		}
+		try {
+			chooser.next("account-0");
+			Assert.fail();
+		} catch (SailfishException cause) {
+			Assert.assertTrue(true);
+		}
+	}
+
 	private void initMockExchangeChannelArray(MockExchangeChannel[] channels){
 		if(null == channels){
 			throw new NullPointerException("channels");
@@ -165,6 +363,9 @@ public class ExchangeChannelChooserTest {
 	private static class MockExchangeChannel extends EmptyExchangeChannel{
 		private int index;
 		private boolean isAvailable = true;
+		private int pendingRequests;
+		private long bytesBeforeUnwritable;
+		private long ewmaLatency;
 		public MockExchangeChannel(int index) {
 			this.index = index;
 		}
@@ -181,5 +382,32 @@ public class ExchangeChannelChooserTest {
 		public boolean isAvailable() {
 			return this.isAvailable;
 		}
+
+		public void setPendingRequests(int pendingRequests) {
+			this.pendingRequests = pendingRequests;
+		}
+
+		@Override
+		public int pendingRequests() {
+			return pendingRequests;
+		}
+
+		public void setBytesBeforeUnwritable(long bytesBeforeUnwritable) {
+			this.bytesBeforeUnwritable = bytesBeforeUnwritable;
+		}
+
+		@Override
+		public long bytesBeforeUnwritable() {
+			return bytesBeforeUnwritable;
+		}
+
+		public void setEwmaLatency(long ewmaLatency) {
+			this.ewmaLatency = ewmaLatency;
+		}
+
+		@Override
+		public long ewmaLatency() {
+			return ewmaLatency;
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.handler.DefaultMsgHandler;
+import sailfish.remoting.processors.Request;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.processors.Response;
+import sailfish.remoting.protocol.RequestProtocol;
+
+/**
+ * requests whose propagated timeout elapsed are dropped both before and after queueing
+ * 
+ * @author spccold
+ * @version $Id: ExpiredRequestTest.java, v 0.1 2016年12月14日 上午10:12:36 spccold Exp $
+ */
+public class ExpiredRequestTest {
+	private static final short OPCODE = 1;
+
+	@Test
+	public void testDropExpired() throws Exception {
+		final List<Runnable> queued = new ArrayList<>();
+		RequestProcessor processor = new RequestProcessor() {
+			@Override
+			public Executor executor() {
+				return new Executor() {
+					@Override
+					public void execute(Runnable command) {
+						queued.add(command);
+					}
+				};
+			}
+
+			@Override
+			public short opcode() {
+				return OPCODE;
+			}
+
+			@Override
+			public void handleRequest(Request request, Output output) {
+				output.response(new Response(true, new byte[0]));
+			}
+
+			@Override
+			public void onRejectedExecutionException(Request request, Output output) {
+			}
+		};
+		DefaultMsgHandler handler = new DefaultMsgHandler(Arrays.asList(processor));
+		DispatchAllocationTest.RecycleResponseGroup group = new DispatchAllocationTest.RecycleResponseGroup();
+
+		// expired before enqueue
+		RequestProtocol expired = decode(1, 1);
+		Thread.sleep(5);
+		handler.handle(group, expired);
+		Assert.assertTrue(queued.isEmpty());
+		Assert.assertEquals(1, handler.expiredRequests());
+
+		// expired while queueing
+		handler.handle(group, decode(2, 50));
+		handler.handle(group, decode(3, 60000));
+		Assert.assertEquals(2, queued.size());
+		Thread.sleep(60);
+		for (Runnable task : queued) {
+			task.run();
+		}
+		Assert.assertEquals(1, group.responses);
+		Assert.assertEquals(2, handler.expiredRequests());
+	}
+
+	private static RequestProtocol decode(int packetId, int timeout) throws Exception {
+		RequestProtocol send = RequestProtocol.newInstance();
+		send.packetId(packetId);
+		send.opcode(OPCODE);
+		send.timeout(timeout);
+		ByteBuf frame = Unpooled.buffer();
+		try {
+			send.serialize(frame);
+			frame.skipBytes(RemotingConstants.PROTOCOL_PREFIX_LENGTH - 4);
+			RequestProtocol receive = RequestProtocol.newInstance();
+			receive.deserialize(frame, frame.readInt());
+			return receive;
+		} finally {
+			frame.release();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import sailfish.remoting.handler.FlushConsolidationHandler;
+
+/**
+ * @author spccold
+ * @version $Id: FlushConsolidationHandlerTest.java, v 0.1 2016年12月17日 上午11:02:47 spccold Exp $
+ */
+public class FlushConsolidationHandlerTest {
+
+	@Test
+	public void testFlushAfterMessagesOrTasks() {
+		FlushCounter counter = new FlushCounter();
+		EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushConsolidationHandler(3, 1024));
+		channel.writeAndFlush(Unpooled.buffer(1).writeByte(1));
+		channel.writeAndFlush(Unpooled.buffer(1).writeByte(1));
+		Assert.assertEquals(0, counter.flushes);
+		// scheduled flush runs after queued tasks
+		channel.runPendingTasks();
+		Assert.assertEquals(1, counter.flushes);
+
+		channel.writeAndFlush(Unpooled.buffer(1).writeByte(1));
+		channel.writeAndFlush(Unpooled.buffer(1).writeByte(1));
+		channel.writeAndFlush(Unpooled.buffer(1).writeByte(1));
+		// maxMessages reached
+		Assert.assertEquals(2, counter.flushes);
+		channel.runPendingTasks();
+		Assert.assertEquals(2, counter.flushes);
+		Assert.assertEquals(5, channel.outboundMessages().size());
+		finish(channel);
+	}
+
+	@Test
+	public void testFlushAfterBytes() {
+		FlushCounter counter = new FlushCounter();
+		EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushConsolidationHandler(100, 16));
+		channel.writeAndFlush(Unpooled.buffer(8).writeZero(8));
+		Assert.assertEquals(0, counter.flushes);
+		channel.writeAndFlush(Unpooled.buffer(8).writeZero(8));
+		Assert.assertEquals(1, counter.flushes);
+		finish(channel);
+	}
+
+	@Test
+	public void testFlushOnReadComplete() {
+		FlushCounter counter = new FlushCounter();
+		EmbeddedChannel channel = new EmbeddedChannel(counter, new FlushConsolidationHandler(100, 1024),
+				new ChannelInboundHandlerAdapter() {
+					@Override
+					public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+						// echo
+						ctx.writeAndFlush(msg);
+					}
+				});
+		channel.writeInbound(Unpooled.buffer(1).writeByte(1), Unpooled.buffer(1).writeByte(1));
+		// one flush for the whole read
+		Assert.assertEquals(1, counter.flushes);
+		Assert.assertEquals(2, channel.outboundMessages().size());
+		finish(channel);
+	}
+
+	private static void finish(EmbeddedChannel channel) {
+		channel.finish();
+		Object msg = null;
+		while (null != (msg = channel.readOutbound())) {
+			ReferenceCountUtil.release(msg);
+		}
+	}
+
+	static final class FlushCounter extends ChannelOutboundHandlerAdapter {
+		int flushes;
+
+		@Override
+		public void flush(ChannelHandlerContext ctx) throws Exception {
+			flushes++;
+			ctx.flush();
+		}
+	}
+}
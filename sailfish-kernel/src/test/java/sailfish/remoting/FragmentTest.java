@@ -0,0 +1,148 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import sailfish.remoting.codec.DefaultRemotingCodec;
+import sailfish.remoting.codec.FragmentEncoder;
+import sailfish.remoting.codec.FragmentReassembler;
+import sailfish.remoting.codec.RemotingDecoder;
+import sailfish.remoting.codec.RemotingEncoder;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.protocol.RequestProtocol;
+
+/**
+ * @author spccold
+ * @version $Id: FragmentTest.java, v 0.1 2016年12月19日 下午2:21:16 spccold Exp $
+ */
+public class FragmentTest {
+
+	@Test
+	public void testFragmentAndReassemble() throws Exception {
+		EmbeddedChannel sender = new EmbeddedChannel(new FragmentEncoder(64, 16), RemotingEncoder.INSTANCE);
+		EmbeddedChannel receiver = new EmbeddedChannel(new RemotingDecoder());
+
+		byte[] large = new byte[100];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = (byte) i;
+		}
+		sender.writeAndFlush(newRequest(1, large));
+		sender.writeAndFlush(newRequest(2, new byte[] { 1, 2, 3 }));
+		sender.runPendingTasks();
+
+		Object fragment = null;
+		while (null != (fragment = sender.readOutbound())) {
+			receiver.writeInbound(fragment);
+		}
+		// the small one goes first, it doesn't wait for the large one
+		RequestProtocol small = receiver.readInbound();
+		Assert.assertEquals(2, small.packetId());
+		Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, small.body());
+		small.recycle();
+		RequestProtocol reassembled = receiver.readInbound();
+		Assert.assertEquals(1, reassembled.packetId());
+		Assert.assertArrayEquals(large, reassembled.body());
+		reassembled.recycle();
+		Assert.assertNull(receiver.readInbound());
+		sender.finish();
+		receiver.finish();
+	}
+
+	@Test
+	public void testSpillToMappedFile() throws Exception {
+		byte[] body = new byte[1000];
+		body[999] = 9;
+		ByteBuf frame = DefaultRemotingCodec.INSTANCE.encode(newRequest(1, body), ByteBufAllocator.DEFAULT);
+		EmbeddedChannel sender = new EmbeddedChannel(new FragmentEncoder(64, 256));
+		sender.writeAndFlush(frame);
+		sender.runPendingTasks();
+
+		FragmentReassembler reassembler = new FragmentReassembler(4096, 4096, 4, 512);
+		ByteBuf fragment = null;
+		ByteBuf reassembled = null;
+		while (null != (fragment = sender.readOutbound())) {
+			Assert.assertTrue(FragmentEncoder.isFragment(fragment));
+			Assert.assertNull(reassembled);
+			reassembled = reassembler.add(fragment, ByteBufAllocator.DEFAULT);
+			fragment.release();
+		}
+		Assert.assertNotNull(reassembled);
+		// direct buffer over the mapped file
+		Assert.assertTrue(reassembled.isDirect());
+		RequestProtocol request = (RequestProtocol) DefaultRemotingCodec.INSTANCE.decode(reassembled);
+		Assert.assertArrayEquals(body, request.body());
+		request.recycle();
+		reassembled.release();
+		sender.finish();
+	}
+
+	@Test
+	public void testReassemblyLimits() throws Exception {
+		EmbeddedChannel sender = new EmbeddedChannel(new FragmentEncoder(64, 16), RemotingEncoder.INSTANCE);
+		sender.writeAndFlush(newRequest(1, new byte[200]));
+		sender.writeAndFlush(newRequest(2, new byte[200]));
+		sender.runPendingTasks();
+
+		// the second frame under reassembly exceeds the frames limit
+		FragmentReassembler reassembler = new FragmentReassembler(4096, 4096, 1, 0);
+		assertBadPackage(reassembler, sender);
+		reassembler.release();
+		Assert.assertEquals(0, reassembler.pendingBytes());
+		sender.finish();
+
+		sender = new EmbeddedChannel(new FragmentEncoder(64, 16), RemotingEncoder.INSTANCE);
+		sender.writeAndFlush(newRequest(1, new byte[200]));
+		sender.runPendingTasks();
+		// a declared length of 200+ bytes doesn't allocate or count until the bytes arrive
+		reassembler = new FragmentReassembler(4096, 100, 4, 0);
+		assertBadPackage(reassembler, sender);
+		Assert.assertTrue(reassembler.pendingBytes() <= 100);
+		reassembler.release();
+		sender.finish();
+	}
+
+	private static void assertBadPackage(FragmentReassembler reassembler, EmbeddedChannel sender) {
+		ByteBuf fragment = null;
+		try {
+			while (null != (fragment = sender.readOutbound())) {
+				Assert.assertNull(reassembler.add(fragment, ByteBufAllocator.DEFAULT));
+				fragment.release();
+			}
+			Assert.fail("limit not enforced");
+		} catch (SailfishException cause) {
+			Assert.assertEquals(ExceptionCode.BAD_PACKAGE, cause.code());
+			fragment.release();
+		}
+		while (null != (fragment = sender.readOutbound())) {
+			fragment.release();
+		}
+	}
+
+	private static RequestProtocol newRequest(int packetId, byte[] body) {
+		RequestProtocol request = RequestProtocol.newInstance();
+		request.packetId(packetId);
+		request.body(body);
+		return request;
+	}
+}
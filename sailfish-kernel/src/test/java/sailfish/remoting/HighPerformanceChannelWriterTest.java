@@ -0,0 +1,84 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.Future;
+import sailfish.remoting.channel.HighPerformanceChannelWriter;
+import sailfish.remoting.protocol.RequestProtocol;
+
+/**
+ * @author spccold
+ * @version $Id: HighPerformanceChannelWriterTest.java, v 0.1 2016年12月16日 下午4:32:18 spccold Exp $
+ */
+public class HighPerformanceChannelWriterTest {
+
+	@Test
+	public void testMessageBound() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		HighPerformanceChannelWriter writer = new HighPerformanceChannelWriter(channel, 2, Long.MAX_VALUE);
+		Assert.assertTrue(writer.tryWrite(newRequest(10)));
+		Assert.assertTrue(writer.tryWrite(newRequest(10)));
+		RequestProtocol rejected = newRequest(10);
+		Assert.assertFalse(writer.tryWrite(rejected));
+		Assert.assertEquals(2, writer.pendingMessages());
+
+		Future<Void> capacity = writer.capacityFuture();
+		Assert.assertFalse(capacity.isDone());
+
+		// drain in event loop
+		channel.runPendingTasks();
+		Assert.assertEquals(0, writer.pendingMessages());
+		Assert.assertEquals(0, writer.pendingBytes());
+		Assert.assertTrue(capacity.isSuccess());
+		Assert.assertEquals(2, channel.outboundMessages().size());
+		Assert.assertTrue(writer.tryWrite(rejected));
+		channel.finish();
+	}
+
+	@Test
+	public void testByteBound() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		RequestProtocol first = newRequest(100);
+		int frameLength = first.frameLength();
+		HighPerformanceChannelWriter writer = new HighPerformanceChannelWriter(channel, 100, frameLength + 10);
+		Assert.assertTrue(writer.tryWrite(first));
+		Assert.assertEquals(frameLength, writer.pendingBytes());
+		RequestProtocol second = newRequest(100);
+		Assert.assertFalse(writer.tryWrite(second));
+		Assert.assertFalse(writer.capacityFuture(second.frameLength()).isDone());
+		channel.runPendingTasks();
+
+		// a frame larger than the bound is accepted when nothing is pending
+		RequestProtocol large = newRequest(1024);
+		Assert.assertTrue(writer.tryWrite(large));
+		Assert.assertFalse(writer.tryWrite(second));
+		channel.runPendingTasks();
+		Assert.assertTrue(writer.tryWrite(second));
+		channel.finish();
+	}
+
+	private static RequestProtocol newRequest(int bodyLength) {
+		RequestProtocol protocol = RequestProtocol.newRequest(new RequestControl(true));
+		protocol.body(new byte[bodyLength]);
+		return protocol;
+	}
+}
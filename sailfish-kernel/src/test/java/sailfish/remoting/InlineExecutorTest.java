@@ -0,0 +1,77 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sailfish.remoting.executor.InlineExecutor;
+
+/**
+ * @author spccold
+ * @version $Id: InlineExecutorTest.java, v 0.1 2016年12月13日 下午4:40:27 spccold Exp $
+ */
+public class InlineExecutorTest {
+
+	@Test
+	public void testInlineAndDemote() throws Exception {
+		final List<Runnable> fallbackTasks = new ArrayList<>();
+		Executor fallback = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				fallbackTasks.add(command);
+			}
+		};
+		InlineExecutor executor = new InlineExecutor("test", 1, 2, fallback);
+
+		final Thread caller = Thread.currentThread();
+		final boolean[] inline = new boolean[1];
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				inline[0] = (caller == Thread.currentThread());
+			}
+		});
+		Assert.assertTrue(inline[0]);
+		Assert.assertFalse(executor.isDemoted());
+
+		Runnable blocking = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException cause) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		executor.execute(blocking);
+		Assert.assertFalse(executor.isDemoted());
+		executor.execute(blocking);
+		Assert.assertTrue(executor.isDemoted());
+		Assert.assertTrue(fallbackTasks.isEmpty());
+
+		executor.execute(blocking);
+		Assert.assertEquals(1, fallbackTasks.size());
+		Assert.assertSame(blocking, fallbackTasks.get(0));
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sailfish.remoting.PendingRequestTable.PacketIdCollector;
+import io.netty.channel.embedded.EmbeddedChannel;
+import sailfish.remoting.channel.AbstractExchangeChannel;
+import sailfish.remoting.channel.EmptyExchangeChannel;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.channel.ServerExchangeChannel;
+import sailfish.remoting.future.BytesResponseFuture;
+import sailfish.remoting.future.ResponseFuture;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: PendingRequestTableTest.java, v 0.1 2016年12月5日 下午3:40:12 spccold Exp $
+ */
+public class PendingRequestTableTest {
+
+	@Test
+	public void testRandomOperations() {
+		PendingRequestTable table = new PendingRequestTable(2);
+		Map<Integer, ResponseFuture<?>> expected = new HashMap<>();
+		Random random = new Random(17);
+		for (int i = 0; i < 100000; i++) {
+			int packetId = random.nextInt(2048);
+			if (random.nextBoolean()) {
+				ResponseFuture<?> future = new BytesResponseFuture(packetId, null);
+				Assert.assertSame(expected.put(packetId, future), table.put(packetId, null, future, Long.MAX_VALUE));
+			} else {
+				Assert.assertSame(expected.remove(packetId), table.remove(packetId));
+			}
+			if (i % 1000 == 0) {
+				Assert.assertEquals(expected.size(), table.size());
+				for (Map.Entry<Integer, ResponseFuture<?>> entry : expected.entrySet()) {
+					Assert.assertSame(entry.getValue(), table.get(entry.getKey()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testChannelIndex() {
+		PendingRequestTable table = new PendingRequestTable();
+		ExchangeChannel channel = new EmptyExchangeChannel();
+		ExchangeChannel other = new EmptyExchangeChannel();
+		for (int packetId = 1; packetId <= 100; packetId++) {
+			table.put(packetId, packetId % 2 == 0 ? channel : other, new BytesResponseFuture(packetId, null),
+					Long.MAX_VALUE);
+		}
+		int[] packetIds = table.packetIds(channel);
+		Assert.assertEquals(50, packetIds.length);
+		for (int packetId : packetIds) {
+			Assert.assertEquals(0, packetId % 2);
+			table.remove(packetId);
+		}
+		Assert.assertFalse(table.contains(channel));
+		Assert.assertTrue(table.contains(other));
+	}
+
+	@Test
+	public void testExpired() {
+		PendingRequestTable table = new PendingRequestTable(2, TimeUnit.MILLISECONDS.toNanos(1));
+		long now = System.nanoTime();
+		for (int packetId = 1; packetId <= 20; packetId++) {
+			long deadline = now + (packetId <= 10 ? TimeUnit.MILLISECONDS.toNanos(5) : TimeUnit.MINUTES.toNanos(1));
+			table.put(packetId, null, new BytesResponseFuture(packetId, null), deadline);
+		}
+		table.put(21, null, new BytesResponseFuture(21, null), Long.MAX_VALUE);
+		for (int packetId = 1; packetId <= 5; packetId++) {
+			table.remove(packetId);
+		}
+
+		PacketIdCollector collector = new PacketIdCollector();
+		table.expired(now + TimeUnit.MILLISECONDS.toNanos(10), collector);
+		Assert.assertEquals(5, collector.size());
+		for (int i = 0; i < collector.size(); i++) {
+			Assert.assertTrue(collector.get(i) > 5 && collector.get(i) <= 10);
+		}
+		collector.clear();
+		table.expired(now + TimeUnit.MILLISECONDS.toNanos(20), collector);
+		Assert.assertEquals(0, collector.size());
+
+		// deadlines beyond one round of the wheel
+		table.expired(now + TimeUnit.MINUTES.toNanos(2), collector);
+		Assert.assertEquals(10, collector.size());
+		for (int i = 0; i < collector.size(); i++) {
+			Assert.assertTrue(collector.get(i) > 10 && collector.get(i) <= 20);
+		}
+	}
+
+	@Test
+	public void testTouch() {
+		PendingRequestTable table = new PendingRequestTable(2, TimeUnit.MILLISECONDS.toNanos(1));
+		long now = System.nanoTime();
+		long timeout = TimeUnit.MILLISECONDS.toNanos(5);
+		table.put(1, null, new BytesResponseFuture(1, null), now, now + timeout);
+		table.put(2, null, new BytesResponseFuture(2, null), now, now + timeout);
+		Assert.assertNull(table.touch(3, now));
+
+		// each touch restarts the timeout, so the request outlives its first deadline
+		long touched = now;
+		PacketIdCollector collector = new PacketIdCollector();
+		for (int i = 0; i < 5; i++) {
+			touched += TimeUnit.MILLISECONDS.toNanos(3);
+			Assert.assertNotNull(table.touch(1, touched));
+			table.expired(touched, collector);
+		}
+		Assert.assertEquals(1, collector.size());
+		Assert.assertEquals(2, collector.get(0));
+		collector.clear();
+
+		// buckets it left behind may report it again, callers skip packetIds erased already
+		table.expired(touched + timeout + TimeUnit.MILLISECONDS.toNanos(2), collector);
+		Assert.assertTrue(collector.size() > 0);
+		for (int i = 0; i < collector.size(); i++) {
+			Assert.assertEquals(1, collector.get(i));
+		}
+	}
+
+	@Test
+	public void testChannelStatistics() {
+		PendingRequestTable table = new PendingRequestTable();
+		AbstractExchangeChannel channel = new ServerExchangeChannel(null, new EmbeddedChannel());
+		long now = System.nanoTime();
+		for (int packetId = 1; packetId <= 10; packetId++) {
+			table.put(packetId, channel, new BytesResponseFuture(packetId, null), now, Long.MAX_VALUE);
+		}
+		Assert.assertEquals(10, channel.pendingRequests());
+		Assert.assertEquals(0, channel.ewmaLatency());
+
+		// local removal is not a latency sample
+		table.remove(1);
+		Assert.assertEquals(9, channel.pendingRequests());
+		Assert.assertEquals(0, channel.ewmaLatency());
+
+		table.erase(2, now + 800);
+		Assert.assertEquals(800, channel.ewmaLatency());
+		table.erase(3, now + 1600);
+		Assert.assertEquals(800 + (1600 - 800) / 8, channel.ewmaLatency());
+		Assert.assertEquals(7, channel.pendingRequests());
+		Assert.assertNull(table.erase(3, now));
+		Assert.assertEquals(7, channel.pendingRequests());
+	}
+}
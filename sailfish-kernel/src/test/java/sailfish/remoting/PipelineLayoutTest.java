@@ -0,0 +1,69 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import sailfish.remoting.channel.PipelineLayout;
+import sailfish.remoting.codec.RemotingDecoder;
+import sailfish.remoting.codec.RemotingEncoder;
+import sailfish.remoting.handler.ConcreteRequestHandler;
+import sailfish.remoting.handler.NegotiateChannelHandler;
+
+/**
+ * @author spccold
+ * @version $Id: PipelineLayoutTest.java, v 0.1 2016年12月16日 下午3:05:41 spccold Exp $
+ */
+public class PipelineLayoutTest {
+	private static final EventExecutorGroup executorGroup = new DefaultEventExecutorGroup(1);
+
+	@AfterClass
+	public static void afterClass() {
+		executorGroup.shutdownGracefully();
+	}
+
+	@Test
+	public void testExecutorLayout() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ChannelPipeline pipeline = channel.pipeline();
+		PipelineLayout.executor.addHandlers(pipeline, executorGroup, (byte) 10);
+		Assert.assertNotSame(channel.eventLoop(), pipeline.context(RemotingEncoder.INSTANCE).executor());
+		Assert.assertNotSame(channel.eventLoop(), pipeline.context(RemotingDecoder.class).executor());
+		Assert.assertNotSame(channel.eventLoop(), pipeline.context(ConcreteRequestHandler.INSTANCE).executor());
+		channel.finish();
+	}
+
+	@Test
+	public void testIoLayout() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ChannelPipeline pipeline = channel.pipeline();
+		PipelineLayout.io.addHandlers(pipeline, executorGroup, (byte) 10);
+		Assert.assertSame(channel.eventLoop(), pipeline.context(RemotingEncoder.INSTANCE).executor());
+		Assert.assertSame(channel.eventLoop(), pipeline.context(RemotingDecoder.class).executor());
+		Assert.assertSame(channel.eventLoop(), pipeline.context(NegotiateChannelHandler.INSTANCE).executor());
+		// only dispatch crosses to executorGroup
+		Assert.assertNotSame(channel.eventLoop(), pipeline.context(ConcreteRequestHandler.INSTANCE).executor());
+		channel.finish();
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sailfish.remoting.constants.RemotingConstants;
+import sailfish.remoting.processors.ClientServerNormalRequestTestRequestProcessor;
+import sailfish.remoting.processors.ClientServerOnewayTestRequestProcessor;
+import sailfish.remoting.processors.Processors;
+import sailfish.remoting.processors.RequestProcessor;
+
+/**
+ * @author spccold
+ * @version $Id: ProcessorsTest.java, v 0.1 2016年12月12日 上午10:18:51 spccold Exp $
+ */
+public class ProcessorsTest {
+
+	@Test
+	public void testDispatch() {
+		RequestProcessor normal = new ClientServerNormalRequestTestRequestProcessor();
+		RequestProcessor oneway = new ClientServerOnewayTestRequestProcessor();
+		Processors processors = new Processors(Arrays.asList(normal, oneway));
+		Assert.assertSame(normal, processors.findProcessor(normal.opcode()));
+		Assert.assertSame(oneway, processors.findProcessor(oneway.opcode()));
+		Assert.assertNull(processors.findProcessor(100));
+		Assert.assertNull(processors.findProcessor(-1));
+
+		// first registered wins
+		processors.registerProcessor(normal.opcode(), oneway);
+		Assert.assertSame(normal, processors.findProcessor(normal.opcode()));
+
+		// grow on demand, negative short opcode is unsigned on the table
+		processors.registerProcessor((short) -2, oneway);
+		processors.registerProcessor(100, normal);
+		Assert.assertSame(oneway, processors.findProcessor((short) -2));
+		Assert.assertSame(normal, processors.findProcessor(100));
+		Assert.assertSame(normal, processors.findProcessor(normal.opcode()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamCreditOpcodeReserved() {
+		new Processors().registerProcessor(RemotingConstants.STREAM_CREDIT_OPCODE,
+				new ClientServerNormalRequestTestRequestProcessor());
+	}
+}
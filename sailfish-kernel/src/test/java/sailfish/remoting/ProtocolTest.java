@@ -17,11 +17,17 @@
  */
 package sailfish.remoting;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import sailfish.remoting.codec.DefaultRemotingCodec;
+import sailfish.remoting.codec.RemotingEncoder;
 import sailfish.remoting.constants.CompressType;
 import sailfish.remoting.constants.LangType;
 import sailfish.remoting.constants.RemotingConstants;
@@ -93,6 +99,36 @@ public class ProtocolTest {
         Assert.assertTrue(receive.serializeType() == SerializeType.PROTOBUF_SERIALIZE);
     }
     
+    @Test
+    public void testRequestTimeoutExtension() throws SailfishException{
+        RequestProtocol send = RequestProtocol.newInstance();
+        send.body(new byte[]{1,2,3,4});
+        send.langType(LangType.GO);
+        send.compressType(CompressType.SNAPPY_COMPRESS);
+        send.opcode((short)1);
+        send.packetId(1);
+        send.timeout(2000);
+        
+        ByteBuf output = ByteBufAllocator.DEFAULT.buffer(128);
+        send.serialize(output);
+        
+        Assert.assertTrue(output.readShort() == RemotingConstants.SAILFISH_MAGIC);
+        RequestProtocol receive = RequestProtocol.newInstance();
+        Assert.assertTrue(send == receive);
+        Assert.assertTrue(0 == receive.timeout());
+        
+        long before = System.nanoTime();
+        receive.deserialize(output, output.readInt());
+        Assert.assertArrayEquals(new byte[]{1,2,3,4}, receive.body());
+        Assert.assertTrue(receive.langType() == LangType.GO);
+        Assert.assertTrue(receive.compressType() == CompressType.SNAPPY_COMPRESS);
+        Assert.assertTrue(2000 == receive.timeout());
+        Assert.assertTrue(receive.deadlineNanos() - before >= 2000 * 1000000L);
+        Assert.assertFalse(receive.expired());
+        receive.recycle();
+        Assert.assertTrue(output.release());
+    }
+    
     @Test
     public void testResponseProtocol() throws SailfishException{
         ResponseProtocol send = ResponseProtocol.newInstance();
@@ -128,5 +164,71 @@ public class ProtocolTest {
         receive.deserialize(output, output.readInt());
         Assert.assertTrue(receive.heartbeat());
     }
-}
 
+    @Test
+    public void testFrameLength() throws SailfishException{
+        RequestProtocol request = RequestProtocol.newInstance();
+        request.packetId(1);
+        request.opcode((short)1);
+        request.timeout(100);
+        request.body(new byte[1000]);
+        int requestLength = request.frameLength();
+        ByteBuf frame = DefaultRemotingCodec.INSTANCE.encode(request, ByteBufAllocator.DEFAULT);
+        Assert.assertEquals(requestLength, frame.readableBytes());
+        // allocated exactly once, no expansion
+        Assert.assertEquals(requestLength, frame.capacity());
+        frame.release();
+
+        ResponseProtocol response = ResponseProtocol.newInstance();
+        response.packetId(1);
+        response.body(new byte[1000]);
+        int responseLength = response.frameLength();
+        frame = DefaultRemotingCodec.INSTANCE.encode(response, ByteBufAllocator.DEFAULT);
+        Assert.assertEquals(responseLength, frame.readableBytes());
+        frame.release();
+    }
+
+    @Test
+    public void testEncodedFramePassThroughEncoder() throws SailfishException{
+        EmbeddedChannel channel = new EmbeddedChannel(RemotingEncoder.INSTANCE);
+        RequestProtocol request = RequestProtocol.newInstance();
+        request.packetId(1);
+        request.body(new byte[]{1,2,3,4});
+        ByteBuf frame = DefaultRemotingCodec.INSTANCE.encode(request, ByteBufAllocator.DEFAULT);
+        Assert.assertTrue(channel.writeOutbound(frame));
+        // written as it is
+        Assert.assertSame(frame, channel.readOutbound());
+        frame.release();
+        channel.finish();
+    }
+
+    @Test
+    public void testBatchRequest() throws SailfishException{
+        RequestControl control = new RequestControl();
+        control.opcode((short)7);
+        List<byte[]> data = Arrays.asList(new byte[]{1,2,3}, new byte[0], new byte[]{4});
+        RequestProtocol send = RequestProtocol.newBatch(control, new int[]{11, 12, 13}, data, ByteBufAllocator.DEFAULT);
+        send.timeout(2000);
+        
+        ByteBuf output = ByteBufAllocator.DEFAULT.buffer(128);
+        send.serialize(output);
+        Assert.assertTrue(output.readShort() == RemotingConstants.SAILFISH_MAGIC);
+        RequestProtocol batch = RequestProtocol.newInstance();
+        batch.deserialize(output, output.readInt());
+        Assert.assertTrue(batch.batch());
+        
+        for (int i = 0; i < data.size(); i++) {
+            RequestProtocol item = batch.readBatchItem();
+            Assert.assertFalse(item.batch());
+            Assert.assertTrue(11 + i == item.packetId());
+            Assert.assertTrue(7 == item.opcode());
+            Assert.assertTrue(2000 == item.timeout());
+            Assert.assertTrue(batch.deadlineNanos() == item.deadlineNanos());
+            Assert.assertArrayEquals(data.get(i), null == item.body() ? new byte[0] : item.body());
+            item.recycle();
+        }
+        Assert.assertNull(batch.readBatchItem());
+        batch.recycle();
+        Assert.assertTrue(output.release());
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.channel.Channel;
+import sailfish.remoting.channel.ExchangeChannel;
+import sailfish.remoting.channel.ExchangeChannelGroup;
+import sailfish.remoting.configuration.ExchangeClientConfig;
+import sailfish.remoting.configuration.ExchangeServerConfig;
+import sailfish.remoting.processors.ClientServerNormalRequestTestRequestProcessor;
+import sailfish.remoting.processors.RequestProcessor;
+
+/**
+ * @author spccold
+ * @version $Id: ReconnectTest.java, v 0.1 2016年12月11日 下午3:02:18 spccold Exp $
+ */
+public class ReconnectTest {
+	private static final int PORT = 13149;
+	private static DefaultServer server;
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ExchangeServerConfig serverConfig = new ExchangeServerConfig();
+		serverConfig.address(new Address("localhost", PORT));
+		serverConfig.setRequestProcessors(
+				Collections.<RequestProcessor> singletonList(new ClientServerNormalRequestTestRequestProcessor()));
+		server = Exchanger.bind(serverConfig);
+		server.start();
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (null != server) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testBackoff() {
+		int reconnectInterval = 100;
+		for (int attempts = 0; attempts < 40; attempts++) {
+			long expected = Math.min((long) reconnectInterval << Math.min(attempts, 20), 30000);
+			long delay = ReconnectManager.backoff(reconnectInterval, attempts);
+			Assert.assertTrue(delay >= expected / 2);
+			Assert.assertTrue(delay <= expected);
+		}
+	}
+
+	@Test
+	public void testConcurrentPerAddress() {
+		SocketAddress remoteAddress = InetSocketAddress.createUnresolved("reconnect.test", PORT);
+		ReconnectManager manager = ReconnectManager.INSTANCE;
+		// default maxConcurrentPerAddress is 2
+		Assert.assertTrue(manager.tryAcquire(remoteAddress));
+		Assert.assertTrue(manager.tryAcquire(remoteAddress));
+		Assert.assertFalse(manager.tryAcquire(remoteAddress));
+		manager.release(remoteAddress);
+		Assert.assertTrue(manager.connecting(remoteAddress));
+		manager.release(remoteAddress);
+		// no entry left behind once nothing is in flight
+		Assert.assertFalse(manager.connecting(remoteAddress));
+		Assert.assertTrue(manager.tryAcquire(remoteAddress));
+		manager.release(remoteAddress);
+		Assert.assertFalse(manager.connecting(remoteAddress));
+	}
+
+	@Test
+	public void testReconnect() throws Exception {
+		ExchangeClientConfig config = new ExchangeClientConfig();
+		config.address(new Address("localhost", PORT));
+		config.reconnectInterval(100);
+		ExchangeChannelGroup group = Exchanger.connect(config);
+		try {
+			ExchangeChannel child = group.next();
+			// break the connection
+			Channel broken = child.update(null);
+			broken.close().syncUninterruptibly();
+
+			// unavailable channel triggers reconnecting
+			Assert.assertFalse(group.isAvailable());
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!group.isAvailable() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertTrue(group.isAvailable());
+			Assert.assertNotEquals(broken.localAddress(), child.localAddress());
+
+			RequestControl control = new RequestControl();
+			control.opcode(ClientServerNormalRequestTestRequestProcessor.OPCODE);
+			byte[] data = ClientServerTest.data;
+			Assert.assertArrayEquals(data, group.request(data, control).get(2, TimeUnit.SECONDS));
+		} finally {
+			group.close();
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.netty.util.CharsetUtil;
+import sailfish.remoting.configuration.ExchangeClientConfig;
+import sailfish.remoting.configuration.ExchangeServerConfig;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.future.ResponseStream;
+import sailfish.remoting.processors.Request;
+import sailfish.remoting.processors.RequestProcessor;
+import sailfish.remoting.processors.Response;
+import sailfish.remoting.utils.Bytes;
+
+/**
+ * @author spccold
+ * @version $Id: ResponseStreamTest.java, v 0.1 2016年12月18日 下午5:12:09 spccold Exp $
+ */
+public class ResponseStreamTest {
+	private static final short OPCODE = 1;
+	private static final int originPort = 13151;
+	private static DefaultServer server;
+	private static volatile CountDownLatch refused = new CountDownLatch(1);
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		ExchangeServerConfig serverConfig = new ExchangeServerConfig();
+		serverConfig.address(new Address("localhost", originPort));
+		List<RequestProcessor> processors = new ArrayList<>(1);
+		processors.add(new StreamRequestProcessor());
+		serverConfig.setRequestProcessors(processors);
+		server = Exchanger.bind(serverConfig);
+		server.start();
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		if (null != server) {
+			server.close();
+		}
+	}
+
+	@Test
+	public void testStream() throws Exception {
+		ExchangeClientConfig config = new ExchangeClientConfig();
+		config.address(new Address("localhost", originPort));
+		config.connections((short) 3);
+		DefaultClient client = new DefaultClient(config);
+		RequestControl control = new RequestControl();
+		control.opcode(OPCODE);
+		control.timeout(10000);
+		// far less than the chunks
+		control.streamCredits(4);
+
+		for (int round = 0; round < 3; round++) {
+			int chunks = 100;
+			ResponseStream stream = client.requestStream(Bytes.int2bytes(chunks), control);
+			for (int i = 0; i < chunks; i++) {
+				Assert.assertArrayEquals(Bytes.int2bytes(i), stream.next(2, TimeUnit.SECONDS));
+			}
+			Assert.assertArrayEquals("end".getBytes(CharsetUtil.UTF_8), stream.next(2, TimeUnit.SECONDS));
+			Assert.assertNull(stream.next());
+			Assert.assertTrue(stream.isDone());
+		}
+
+		// chunks are refused without stream
+		try {
+			client.request(Bytes.int2bytes(1), control).get(2, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (SailfishException cause) {
+			Assert.assertTrue(true);
+		}
+		client.close();
+	}
+
+	@Test
+	public void testSubscribe() throws Exception {
+		ExchangeClientConfig config = new ExchangeClientConfig();
+		config.address(new Address("localhost", originPort));
+		DefaultClient client = new DefaultClient(config);
+		RequestControl control = new RequestControl();
+		control.opcode(OPCODE);
+		control.timeout(10000);
+		control.streamCredits(4);
+
+		int chunks = 100;
+		final List<byte[]> received = new ArrayList<>(chunks + 1);
+		final CountDownLatch ended = new CountDownLatch(1);
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		// not SimpleExecutor, producers of the in-process server wait for credits on it
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		ResponseStream stream = client.requestStream(Bytes.int2bytes(chunks), control);
+		stream.subscribe(new StreamCallback() {
+			@Override
+			public Executor getExecutor() {
+				return executor;
+			}
+
+			@Override
+			public void handleChunk(byte[] chunk) {
+				received.add(chunk);
+			}
+
+			@Override
+			public void handleEnd() {
+				ended.countDown();
+			}
+
+			@Override
+			public void handleException(Exception cause) {
+				failure.set(cause);
+				ended.countDown();
+			}
+		});
+		Assert.assertTrue(ended.await(5, TimeUnit.SECONDS));
+		Assert.assertNull(failure.get());
+		Assert.assertEquals(chunks + 1, received.size());
+		for (int i = 0; i < chunks; i++) {
+			Assert.assertArrayEquals(Bytes.int2bytes(i), received.get(i));
+		}
+		Assert.assertArrayEquals("end".getBytes(CharsetUtil.UTF_8), received.get(chunks));
+		executor.shutdown();
+		client.close();
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		ExchangeClientConfig config = new ExchangeClientConfig();
+		config.address(new Address("localhost", originPort));
+		DefaultClient client = new DefaultClient(config);
+		RequestControl control = new RequestControl();
+		control.opcode(OPCODE);
+		control.timeout(10000);
+		control.streamCredits(4);
+
+		refused = new CountDownLatch(1);
+		ResponseStream stream = client.requestStream(Bytes.int2bytes(100), control);
+		Assert.assertArrayEquals(Bytes.int2bytes(0), stream.next(2, TimeUnit.SECONDS));
+		stream.cancel();
+		// the producer stops at once instead of waiting credits until timeout
+		Assert.assertTrue(refused.await(5, TimeUnit.SECONDS));
+		try {
+			// chunks received before cancel come first
+			while (null != stream.next(2, TimeUnit.SECONDS)) {
+			}
+			Assert.fail();
+		} catch (SailfishException cause) {
+			Assert.assertTrue(stream.isDone());
+		}
+		client.close();
+	}
+
+	static final class StreamRequestProcessor implements RequestProcessor {
+		@Override
+		public Executor executor() {
+			return null;
+		}
+
+		@Override
+		public short opcode() {
+			return OPCODE;
+		}
+
+		@Override
+		public void handleRequest(Request request, Output output) {
+			int chunks = Bytes.bytes2int(request.getRequestData());
+			for (int i = 0; i < chunks; i++) {
+				if (!output.chunk(new Response(true, Bytes.int2bytes(i)))) {
+					refused.countDown();
+					output.response(new Response(false, "stream refused".getBytes(CharsetUtil.UTF_8)));
+					return;
+				}
+			}
+			output.response(new Response(true, "end".getBytes(CharsetUtil.UTF_8)));
+		}
+
+		@Override
+		public void onRejectedExecutionException(Request request, Output output) {
+		}
+	}
+}
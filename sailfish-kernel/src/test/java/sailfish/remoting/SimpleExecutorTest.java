@@ -0,0 +1,88 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.util.concurrent.FastThreadLocalThread;
+import sailfish.remoting.executor.SimpleExecutor;
+
+/**
+ * @author spccold
+ * @version $Id: SimpleExecutorTest.java, v 0.1 2016年12月15日 下午4:32:10 spccold Exp $
+ */
+public class SimpleExecutorTest {
+	private static final int PRODUCERS = 4;
+	private static final int TASKS = 100000;
+
+	/**
+	 * workers are picked round robin by default, tasks of one producer keep their order only with
+	 * {@code -Dsailfish.simpleExector.affinity=true}
+	 */
+	@Test
+	public void testManyProducers() throws Exception {
+		final CountDownLatch done = new CountDownLatch(PRODUCERS * TASKS);
+		final AtomicBoolean fastThreadLocalThread = new AtomicBoolean(true);
+		List<Thread> producers = new ArrayList<>(PRODUCERS);
+		for (int i = 0; i < PRODUCERS; i++) {
+			producers.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < TASKS; j++) {
+						SimpleExecutor.INSTANCE.execute(new Runnable() {
+							@Override
+							public void run() {
+								if (!(Thread.currentThread() instanceof FastThreadLocalThread)) {
+									fastThreadLocalThread.set(false);
+								}
+								done.countDown();
+							}
+						});
+					}
+				}
+			});
+		}
+		for (Thread producer : producers) {
+			producer.start();
+		}
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue(fastThreadLocalThread.get());
+	}
+
+	@Test
+	public void testWakeUpAfterIdle() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			final CountDownLatch done = new CountDownLatch(1);
+			SimpleExecutor.INSTANCE.execute(new Runnable() {
+				@Override
+				public void run() {
+					done.countDown();
+				}
+			});
+			Assert.assertTrue(done.await(1, TimeUnit.SECONDS));
+			Thread.sleep(10);
+		}
+	}
+}
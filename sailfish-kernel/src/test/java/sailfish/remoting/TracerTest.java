@@ -0,0 +1,84 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.EventExecutor;
+import sailfish.remoting.exceptions.ExceptionCode;
+import sailfish.remoting.exceptions.SailfishException;
+import sailfish.remoting.future.BytesResponseFuture;
+
+/**
+ * 
+ * @author spccold
+ * @version $Id: TracerTest.java, v 0.1 2016年12月19日 下午4:12:37 spccold Exp $
+ */
+public class TracerTest {
+
+	@Test
+	public void testFailWithoutLiveEventLoop() throws Exception {
+		Tracer tracer = new Tracer();
+		EventExecutor executor = new DefaultEventExecutor();
+		BytesResponseFuture future = new BytesResponseFuture(1, tracer);
+		tracer.trace(null, executor, 1, future, 10000);
+		executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+
+		assertCode(ExceptionCode.UNFINISHED_REQUEST, future);
+	}
+
+	@Test
+	public void testHandOverToLiveEventLoop() throws Exception {
+		Tracer tracer = new Tracer();
+		EventExecutor live = new DefaultEventExecutor();
+		EventExecutor dying = new DefaultEventExecutor();
+		try {
+			BytesResponseFuture liveFuture = new BytesResponseFuture(2, tracer);
+			tracer.trace(null, live, 2, liveFuture, 10000);
+			BytesResponseFuture future = new BytesResponseFuture(1, tracer);
+			tracer.trace(null, dying, 1, future, 100);
+			dying.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+
+			// still timed out by the sweep task of the live event loop
+			assertCode(ExceptionCode.RESPONSE_TIMEOUT, future);
+			Assert.assertFalse(liveFuture.isDone());
+			tracer.remove(2);
+		} finally {
+			live.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+		}
+	}
+
+	private static void assertCode(ExceptionCode expected, BytesResponseFuture future) throws InterruptedException {
+		// completed by the tracer, not by a timed get
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!future.isDone() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(future.isDone());
+		try {
+			future.get();
+			Assert.fail("should fail with " + expected);
+		} catch (SailfishException cause) {
+			Assert.assertEquals(expected, cause.code());
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ *
+ *	Copyright 2016-2016 spccold
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *   	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ *
+ */
+package sailfish.remoting;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sailfish.remoting.executor.VirtualThreadExecutor;
+
+/**
+ * @author spccold
+ * @version $Id: VirtualThreadExecutorTest.java, v 0.1 2016年12月16日 下午2:18:45 spccold Exp $
+ */
+public class VirtualThreadExecutorTest {
+
+	@Test
+	public void testBlockingTasksRunConcurrently() throws Exception {
+		boolean supported = true;
+		try {
+			Thread.class.getMethod("ofVirtual");
+		} catch (NoSuchMethodException cause) {
+			supported = false;
+		}
+		Assert.assertEquals(supported, VirtualThreadExecutor.INSTANCE.isVirtual());
+
+		// more blocking tasks than cpus, all of them must be running at the same time
+		int tasks = Runtime.getRuntime().availableProcessors() * 4;
+		final CountDownLatch started = new CountDownLatch(tasks);
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < tasks; i++) {
+			VirtualThreadExecutor.INSTANCE.execute(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException cause) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+		try {
+			Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+	}
+}